@@ -252,6 +252,66 @@ public class Configuration  {
         return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_TIMEOUT.getKey());
     }
 
+    public int getNetworkMaxConnections() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_MAX_CONNECTIONS.getKey());
+    }
+
+    public int getNetworkMaxConnectionsPerRoute() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_MAX_CONNECTIONS_PER_ROUTE.getKey());
+    }
+
+    public int getNetworkPeerProbeInterval() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_PEER_PROBE_INTERVAL.getKey());
+    }
+
+    public int getNetworkPeerMaxFailures() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_PEER_MAX_FAILURES.getKey());
+    }
+
+    public int getNetworkPeerEjectionTime() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_PEER_EJECTION_TIME.getKey());
+    }
+
+    public int getNetworkPeerMaxBlockLag() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_PEER_MAX_BLOCK_LAG.getKey());
+    }
+
+    public int getNetworkHedgePercentile() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_HEDGE_PERCENTILE.getKey());
+    }
+
+    public int getNetworkHedgeMinDelay() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_HEDGE_MIN_DELAY.getKey());
+    }
+
+    public int getNetworkConcurrencyInitialLimit() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_CONCURRENCY_INITIAL_LIMIT.getKey());
+    }
+
+    public int getNetworkCoalesceTtl() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_COALESCE_TTL.getKey());
+    }
+
+    public boolean isBlockCacheEnable() {
+        return applicationConfig.getOptionAsBoolean(ConfigurationOption.BLOCK_CACHE_ENABLE.getKey());
+    }
+
+    public boolean isBlockCacheCompress() {
+        return applicationConfig.getOptionAsBoolean(ConfigurationOption.BLOCK_CACHE_COMPRESS.getKey());
+    }
+
+    public int getBlockCacheMinConfirmations() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.BLOCK_CACHE_MIN_CONFIRMATIONS.getKey());
+    }
+
+    public int getNetworkKeepAlive() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_KEEP_ALIVE.getKey());
+    }
+
+    public int getNetworkIdleTimeout() {
+        return applicationConfig.getOptionAsInt(ConfigurationOption.NETWORK_IDLE_TIMEOUT.getKey());
+    }
+
     public int getNetworkCacheTimeInMillis() {
         return Integer.parseInt(ConfigurationOption.NETWORK_CACHE_TIME_IN_MILLIS.getDefaultValue());
     }
@@ -168,6 +168,111 @@ public enum ConfigurationOption implements ConfigOptionDef {
             Integer.class,
             false),
 
+    NETWORK_MAX_CONNECTIONS(
+            "duniter4j.network.maxConnections",
+            n("duniter4j.config.option.network.maxConnections.description"),
+            "100",
+            Integer.class,
+            false),
+
+    NETWORK_MAX_CONNECTIONS_PER_ROUTE(
+            "duniter4j.network.maxConnectionsPerRoute",
+            n("duniter4j.config.option.network.maxConnectionsPerRoute.description"),
+            "20",
+            Integer.class,
+            false),
+
+    NETWORK_KEEP_ALIVE(
+            "duniter4j.network.keepAlive",
+            n("duniter4j.config.option.network.keepAlive.description"),
+            "30000", // = 30 s
+            Integer.class,
+            false),
+
+    NETWORK_IDLE_TIMEOUT(
+            "duniter4j.network.idleTimeout",
+            n("duniter4j.config.option.network.idleTimeout.description"),
+            "60000", // = 1 min
+            Integer.class,
+            false),
+
+    NETWORK_PEER_PROBE_INTERVAL(
+            "duniter4j.network.peer.probeInterval",
+            n("duniter4j.config.option.network.peer.probeInterval.description"),
+            "30000", // = 30 s
+            Integer.class,
+            false),
+
+    NETWORK_PEER_MAX_FAILURES(
+            "duniter4j.network.peer.maxFailures",
+            n("duniter4j.config.option.network.peer.maxFailures.description"),
+            "3",
+            Integer.class,
+            false),
+
+    NETWORK_PEER_EJECTION_TIME(
+            "duniter4j.network.peer.ejectionTime",
+            n("duniter4j.config.option.network.peer.ejectionTime.description"),
+            "30000", // = 30 s
+            Integer.class,
+            false),
+
+    NETWORK_PEER_MAX_BLOCK_LAG(
+            "duniter4j.network.peer.maxBlockLag",
+            n("duniter4j.config.option.network.peer.maxBlockLag.description"),
+            "5",
+            Integer.class,
+            false),
+
+    NETWORK_HEDGE_PERCENTILE(
+            "duniter4j.network.hedge.percentile",
+            n("duniter4j.config.option.network.hedge.percentile.description"),
+            "95", // 0 = disable
+            Integer.class,
+            false),
+
+    NETWORK_HEDGE_MIN_DELAY(
+            "duniter4j.network.hedge.minDelay",
+            n("duniter4j.config.option.network.hedge.minDelay.description"),
+            "100", // = 100 ms
+            Integer.class,
+            false),
+
+    NETWORK_CONCURRENCY_INITIAL_LIMIT(
+            "duniter4j.network.concurrency.initialLimit",
+            n("duniter4j.config.option.network.concurrency.initialLimit.description"),
+            "4", // then adapted, up to maxConnectionsPerRoute
+            Integer.class,
+            false),
+
+    NETWORK_COALESCE_TTL(
+            "duniter4j.network.coalesce.ttl",
+            n("duniter4j.config.option.network.coalesce.ttl.description"),
+            "0", // in ms (0 = share only in-flight requests)
+            Integer.class,
+            false),
+
+    BLOCK_CACHE_ENABLE(
+            "duniter4j.cache.block.enable",
+            n("duniter4j.config.option.cache.block.enable.description"),
+            "true",
+            Boolean.class,
+            false),
+
+    BLOCK_CACHE_COMPRESS(
+            "duniter4j.cache.block.compress",
+            n("duniter4j.config.option.cache.block.compress.description"),
+            "false",
+            Boolean.class,
+            false),
+
+    BLOCK_CACHE_MIN_CONFIRMATIONS(
+            "duniter4j.cache.block.minConfirmations",
+            n("duniter4j.config.option.cache.block.minConfirmations.description"),
+            "100", // blocks below the head
+            Integer.class,
+            false),
+
     NETWORK_CACHE_TIME_IN_MILLIS (
             "ucoin.network.cacheTimeInMillis",
             "ucoin.config.option.network.cacheTimeInMillis.description",
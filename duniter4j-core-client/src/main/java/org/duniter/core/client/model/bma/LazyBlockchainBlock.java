@@ -0,0 +1,213 @@
+package org.duniter.core.client.model.bma;
+
+/*
+ * #%L
+ * UCoin Java Client :: Core API
+ * %%
+ * Copyright (C) 2014 - 2015 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import org.duniter.core.client.model.bma.gson.BlockchainBlockTypeAdapter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A block, read lazily from its JSON: header attributes (number, hash, medianTime, membersCount, dividend...)
+ * are read when created, but the body (identities, joiners, certifications, transactions...) is only parsed
+ * on first access. The JSON is then released.
+ */
+public class LazyBlockchainBlock extends BlockchainBlock {
+
+    private static final long serialVersionUID = 4619374627461046372L;
+
+    private static final BlockchainBlockTypeAdapter ADAPTER = new BlockchainBlockTypeAdapter();
+
+    // Block JSON, while the body is not parsed
+    private transient volatile byte[] json;
+
+    /**
+     * Create an empty block (body considered as loaded)
+     */
+    public LazyBlockchainBlock() {
+        super();
+    }
+
+    /**
+     * Create a block from JSON: only header attributes are read
+     * @param json block as JSON (UTF-8 bytes)
+     */
+    public LazyBlockchainBlock(byte[] json) {
+        super();
+        read(json, true, false);
+        this.json = json;
+    }
+
+    public boolean isBodyLoaded() {
+        return json == null;
+    }
+
+    @Override
+    public Identity[] getIdentities() {
+        loadBody();
+        return super.getIdentities();
+    }
+
+    @Override
+    public void setIdentities(Identity[] identities) {
+        loadBody();
+        super.setIdentities(identities);
+    }
+
+    @Override
+    public Joiner[] getJoiners() {
+        loadBody();
+        return super.getJoiners();
+    }
+
+    @Override
+    public void setJoiners(Joiner[] joiners) {
+        loadBody();
+        super.setJoiners(joiners);
+    }
+
+    @Override
+    public Joiner[] getLeavers() {
+        loadBody();
+        return super.getLeavers();
+    }
+
+    @Override
+    public void setLeavers(Joiner[] leavers) {
+        loadBody();
+        super.setLeavers(leavers);
+    }
+
+    @Override
+    public Joiner[] getActives() {
+        loadBody();
+        return super.getActives();
+    }
+
+    @Override
+    public void setActives(Joiner[] actives) {
+        loadBody();
+        super.setActives(actives);
+    }
+
+    @Override
+    public Revoked[] getRevoked() {
+        loadBody();
+        return super.getRevoked();
+    }
+
+    @Override
+    public void setRevoked(Revoked[] revoked) {
+        loadBody();
+        super.setRevoked(revoked);
+    }
+
+    @Override
+    public String[] getExcluded() {
+        loadBody();
+        return super.getExcluded();
+    }
+
+    @Override
+    public void setExcluded(String[] excluded) {
+        loadBody();
+        super.setExcluded(excluded);
+    }
+
+    @Override
+    public String[] getCertifications() {
+        loadBody();
+        return super.getCertifications();
+    }
+
+    @Override
+    public void setCertifications(String[] certifications) {
+        loadBody();
+        super.setCertifications(certifications);
+    }
+
+    @Override
+    public Transaction[] getTransactions() {
+        loadBody();
+        return super.getTransactions();
+    }
+
+    @Override
+    public void setTransactions(Transaction[] transactions) {
+        loadBody();
+        super.setTransactions(transactions);
+    }
+
+    @Override
+    public String toString() {
+        loadBody();
+        return super.toString();
+    }
+
+    /* -- internal methods -- */
+
+    protected void loadBody() {
+        if (json == null) return;
+        synchronized (this) {
+            byte[] bytes = json;
+            if (bytes == null) return;
+
+            // Read into a temporary block (setters of this class would call loadBody() again)
+            BlockchainBlock body = new BlockchainBlock();
+            read(bytes, body, false, true);
+            super.setIdentities(body.getIdentities());
+            super.setJoiners(body.getJoiners());
+            super.setLeavers(body.getLeavers());
+            super.setActives(body.getActives());
+            super.setRevoked(body.getRevoked());
+            super.setExcluded(body.getExcluded());
+            super.setCertifications(body.getCertifications());
+            super.setTransactions(body.getTransactions());
+            json = null;
+        }
+    }
+
+    private void read(byte[] bytes, boolean readHeader, boolean readBody) {
+        read(bytes, this, readHeader, readBody);
+    }
+
+    private static void read(byte[] bytes, BlockchainBlock block, boolean readHeader, boolean readBody) {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8))) {
+            ADAPTER.read(reader, block, readHeader, readBody);
+        }
+        catch (IOException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // The JSON is not serialized: load the body first
+        loadBody();
+        out.defaultWriteObject();
+    }
+}
@@ -0,0 +1,239 @@
+package org.duniter.core.client.model.bma.gson;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Base class of the streaming (reflection-free) type adapters of the BMA model.
+ * Values are read and written with the same rules as the Gson reflective adapters,
+ * so that the JSON result is unchanged (e.g. null attributes are skipped, numbers could be read from strings).
+ */
+public abstract class AbstractStreamTypeAdapter<T> extends TypeAdapter<T> {
+
+    @Override
+    public T read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return readValue(in);
+    }
+
+    @Override
+    public void write(JsonWriter out, T value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        writeValue(out, value);
+    }
+
+    /**
+     * Read a not null value
+     */
+    protected abstract T readValue(JsonReader in) throws IOException;
+
+    /**
+     * Write a not null value
+     */
+    protected abstract void writeValue(JsonWriter out, T value) throws IOException;
+
+    /* -- read helpers -- */
+
+    protected interface ElementReader<E> {
+        E read(JsonReader in) throws IOException;
+    }
+
+    protected interface ElementWriter<E> {
+        void write(JsonWriter out, E value) throws IOException;
+    }
+
+    protected static String readString(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        return in.nextString();
+    }
+
+    protected static Integer readInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        try {
+            return in.nextInt();
+        }
+        catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    protected static int readInt(JsonReader in, int defaultValue) throws IOException {
+        Integer value = readInteger(in);
+        return value != null ? value : defaultValue;
+    }
+
+    protected static Long readLongObject(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        try {
+            return in.nextLong();
+        }
+        catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    protected static long readLong(JsonReader in, long defaultValue) throws IOException {
+        Long value = readLongObject(in);
+        return value != null ? value : defaultValue;
+    }
+
+    protected static Boolean readBooleanObject(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.STRING) {
+            return Boolean.parseBoolean(in.nextString());
+        }
+        return in.nextBoolean();
+    }
+
+    protected static boolean readBoolean(JsonReader in, boolean defaultValue) throws IOException {
+        Boolean value = readBooleanObject(in);
+        return value != null ? value : defaultValue;
+    }
+
+    protected static BigInteger readBigInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        try {
+            return new BigInteger(in.nextString());
+        }
+        catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    protected static String[] readStringArray(JsonReader in) throws IOException {
+        return readArray(in, String[]::new, AbstractStreamTypeAdapter::readString);
+    }
+
+    protected static <E> E[] readArray(JsonReader in, IntFunction<E[]> arrayFactory, ElementReader<E> elementReader) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<E> result = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                result.add(null);
+            }
+            else {
+                result.add(elementReader.read(in));
+            }
+        }
+        in.endArray();
+        return result.toArray(arrayFactory.apply(result.size()));
+    }
+
+    /**
+     * Split a string on ':', without regex (same result as String.split(":"), trailing empty parts are removed)
+     * @param value the string to split
+     * @param expectedLength the expected number of parts
+     * @param typeName the type name, used in the error message
+     */
+    protected static String[] splitParts(String value, int expectedLength, String typeName) {
+        String[] parts = new String[expectedLength];
+        int count = 0;
+        int lastNotEmptyCount = 0;
+        int start = 0;
+        int length = value.length();
+        while (start <= length) {
+            int end = value.indexOf(':', start);
+            if (end == -1) end = length;
+            if (count < expectedLength) {
+                parts[count] = value.substring(start, end);
+            }
+            count++;
+            if (end > start) lastNotEmptyCount = count;
+            start = end + 1;
+        }
+        // Trailing empty parts are ignored
+        count = lastNotEmptyCount;
+        if (count != expectedLength) {
+            throw new JsonParseException(String.format("Bad format for %s. Should have %s parts, but found %s.", typeName, expectedLength, count));
+        }
+        return parts;
+    }
+
+    /* -- write helpers -- */
+
+    protected static void writeStringArray(JsonWriter out, String name, String[] values) throws IOException {
+        writeArray(out, name, values, JsonWriter::value);
+    }
+
+    protected static <E> void writeArray(JsonWriter out, String name, E[] values, ElementWriter<E> elementWriter) throws IOException {
+        out.name(name);
+        if (values == null) {
+            // Skipped, if nulls are not serialized
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (E value : values) {
+            if (value == null) {
+                out.nullValue();
+            }
+            else {
+                elementWriter.write(out, value);
+            }
+        }
+        out.endArray();
+    }
+}
@@ -0,0 +1,317 @@
+package org.duniter.core.client.model.bma.gson;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.apache.commons.lang3.StringUtils;
+import org.duniter.core.client.model.bma.BlockchainBlock;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Streaming adapter for {@link BlockchainBlock} (and its identities, joiners, revoked and transactions),
+ * without reflection. Produces the same JSON as the reflective adapter and
+ * {@link IdentityTypeAdapter}, {@link JoinerTypeAdapter} and {@link RevokedTypeAdapter}.
+ */
+public class BlockchainBlockTypeAdapter extends AbstractStreamTypeAdapter<BlockchainBlock> {
+
+    private final Supplier<? extends BlockchainBlock> blockFactory;
+
+    public BlockchainBlockTypeAdapter() {
+        this(BlockchainBlock::new);
+    }
+
+    public BlockchainBlockTypeAdapter(Supplier<? extends BlockchainBlock> blockFactory) {
+        this.blockFactory = blockFactory;
+    }
+
+    @Override
+    protected BlockchainBlock readValue(JsonReader in) throws IOException {
+        BlockchainBlock block = blockFactory.get();
+        read(in, block, true, true);
+        return block;
+    }
+
+    /**
+     * Read block attributes, into the given block
+     * @param in the JSON reader
+     * @param block the block to fill
+     * @param readHeader should read header attributes (all attributes except arrays) ?
+     * @param readBody should read body attributes (identities, joiners, leavers, actives, revoked, excluded, certifications and transactions) ?
+     */
+    public void read(JsonReader in, final BlockchainBlock block, boolean readHeader, boolean readBody) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (!(isBodyAttribute(name) ? readBody : readHeader)) {
+                in.skipValue();
+                continue;
+            }
+            switch (name) {
+                case "version":
+                    block.setVersion(readString(in));
+                    break;
+                case "nonce":
+                    block.setNonce(readInteger(in));
+                    break;
+                case "number":
+                    block.setNumber(readInteger(in));
+                    break;
+                case "powMin":
+                    block.setPowMin(readInteger(in));
+                    break;
+                case "time":
+                    block.setTime(readInteger(in));
+                    break;
+                case "medianTime":
+                    block.setMedianTime(readInteger(in));
+                    break;
+                case "membersCount":
+                    block.setMembersCount(readInteger(in));
+                    break;
+                case "monetaryMass":
+                    block.setMonetaryMass(readBigInteger(in));
+                    break;
+                case "unitBase":
+                    block.setUnitBase(readInteger(in));
+                    break;
+                case "currency":
+                    block.setCurrency(readString(in));
+                    break;
+                case "issuer":
+                    block.setIssuer(readString(in));
+                    break;
+                case "hash":
+                    block.setHash(readString(in));
+                    break;
+                case "parameters":
+                    block.setParameters(readString(in));
+                    break;
+                case "previousHash":
+                    block.setPreviousHash(readString(in));
+                    break;
+                case "previousIssuer":
+                    block.setPreviousIssuer(readString(in));
+                    break;
+                case "inner_hash":
+                    block.setInnerHash(readString(in));
+                    break;
+                case "dividend":
+                    block.setDividend(readBigInteger(in));
+                    break;
+                case "identities":
+                    block.setIdentities(readArray(in, BlockchainBlock.Identity[]::new, BlockchainBlockTypeAdapter::readIdentity));
+                    break;
+                case "joiners":
+                    block.setJoiners(readArray(in, BlockchainBlock.Joiner[]::new, BlockchainBlockTypeAdapter::readJoiner));
+                    break;
+                case "leavers":
+                    block.setLeavers(readArray(in, BlockchainBlock.Joiner[]::new, BlockchainBlockTypeAdapter::readJoiner));
+                    break;
+                case "actives":
+                    block.setActives(readArray(in, BlockchainBlock.Joiner[]::new, BlockchainBlockTypeAdapter::readJoiner));
+                    break;
+                case "revoked":
+                    block.setRevoked(readArray(in, BlockchainBlock.Revoked[]::new, BlockchainBlockTypeAdapter::readRevoked));
+                    break;
+                case "excluded":
+                    block.setExcluded(readStringArray(in));
+                    break;
+                case "certifications":
+                    block.setCertifications(readStringArray(in));
+                    break;
+                case "transactions":
+                    block.setTransactions(readArray(in, BlockchainBlock.Transaction[]::new, reader -> readTransaction(reader, block)));
+                    break;
+                case "signature":
+                    block.setSignature(readString(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    @Override
+    protected void writeValue(JsonWriter out, BlockchainBlock block) throws IOException {
+        out.beginObject();
+        out.name("version").value(block.getVersion());
+        out.name("nonce").value(block.getNonce());
+        out.name("number").value(block.getNumber());
+        out.name("powMin").value(block.getPowMin());
+        out.name("time").value(block.getTime());
+        out.name("medianTime").value(block.getMedianTime());
+        out.name("membersCount").value(block.getMembersCount());
+        out.name("monetaryMass").value(block.getMonetaryMass());
+        out.name("unitBase").value(block.getUnitBase());
+        out.name("currency").value(block.getCurrency());
+        out.name("issuer").value(block.getIssuer());
+        out.name("hash").value(block.getHash());
+        out.name("parameters").value(block.getParameters());
+        out.name("previousHash").value(block.getPreviousHash());
+        out.name("previousIssuer").value(block.getPreviousIssuer());
+        out.name("inner_hash").value(block.getInnerHash());
+        out.name("dividend").value(block.getDividend());
+        writeArray(out, "identities", block.getIdentities(), BlockchainBlockTypeAdapter::writeIdentity);
+        writeArray(out, "joiners", block.getJoiners(), BlockchainBlockTypeAdapter::writeJoiner);
+        writeArray(out, "leavers", block.getLeavers(), BlockchainBlockTypeAdapter::writeJoiner);
+        writeArray(out, "actives", block.getActives(), BlockchainBlockTypeAdapter::writeJoiner);
+        writeArray(out, "revoked", block.getRevoked(), BlockchainBlockTypeAdapter::writeRevoked);
+        writeStringArray(out, "excluded", block.getExcluded());
+        writeStringArray(out, "certifications", block.getCertifications());
+        writeArray(out, "transactions", block.getTransactions(), BlockchainBlockTypeAdapter::writeTransaction);
+        out.name("signature").value(block.getSignature());
+        out.endObject();
+    }
+
+    /* -- internal methods -- */
+
+    protected static boolean isBodyAttribute(String name) {
+        switch (name) {
+            case "identities":
+            case "joiners":
+            case "leavers":
+            case "actives":
+            case "revoked":
+            case "excluded":
+            case "certifications":
+            case "transactions":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    protected static BlockchainBlock.Identity readIdentity(JsonReader in) throws IOException {
+        String value = readString(in);
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        String[] parts = splitParts(value, 4, "BlockchainBlock.Identity");
+        BlockchainBlock.Identity result = new BlockchainBlock.Identity();
+        result.setPublicKey(parts[0]);
+        result.setSignature(parts[1]);
+        result.setBlockUid(parts[2]);
+        result.setUserId(parts[3]);
+        return result;
+    }
+
+    protected static void writeIdentity(JsonWriter out, BlockchainBlock.Identity identity) throws IOException {
+        out.value(new StringBuilder()
+                .append(identity.getPublicKey()).append(':')
+                .append(identity.getSignature()).append(':')
+                .append(identity.getBlockUid()).append(':')
+                .append(identity.getUserId()).toString());
+    }
+
+    protected static BlockchainBlock.Joiner readJoiner(JsonReader in) throws IOException {
+        String value = readString(in);
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        String[] parts = splitParts(value, 5, "BlockchainBlock.Identity");
+        BlockchainBlock.Joiner result = new BlockchainBlock.Joiner();
+        result.setPublicKey(parts[0]);
+        result.setSignature(parts[1]);
+        result.setMBlockUid(parts[2]);
+        result.setIBlockUid(parts[3]);
+        result.setUserId(parts[4]);
+        return result;
+    }
+
+    protected static void writeJoiner(JsonWriter out, BlockchainBlock.Joiner joiner) throws IOException {
+        out.value(new StringBuilder()
+                .append(joiner.getPublicKey()).append(':')
+                .append(joiner.getSignature()).append(':')
+                .append(joiner.getMBlockUid()).append(':')
+                .append(joiner.getIBlockUid()).append(':')
+                .append(joiner.getUserId()).toString());
+    }
+
+    protected static BlockchainBlock.Revoked readRevoked(JsonReader in) throws IOException {
+        String value = readString(in);
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        String[] parts = splitParts(value, 4, "BlockchainBlock.Revoked");
+        BlockchainBlock.Revoked result = new BlockchainBlock.Revoked();
+        result.setSignature(parts[0]);
+        result.setUserId(parts[1]);
+        return result;
+    }
+
+    protected static void writeRevoked(JsonWriter out, BlockchainBlock.Revoked revoked) throws IOException {
+        out.value(new StringBuilder()
+                .append(revoked.getSignature()).append(':')
+                .append(revoked.getUserId()).toString());
+    }
+
+    protected static BlockchainBlock.Transaction readTransaction(JsonReader in, BlockchainBlock block) throws IOException {
+        BlockchainBlock.Transaction tx = block.new Transaction();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "signatures":
+                    tx.setSignatures(readStringArray(in));
+                    break;
+                case "version":
+                    tx.setVersion(readString(in));
+                    break;
+                case "currency":
+                    tx.setCurrency(readString(in));
+                    break;
+                case "issuers":
+                    tx.setIssuers(readStringArray(in));
+                    break;
+                case "inputs":
+                    tx.setInputs(readStringArray(in));
+                    break;
+                case "unlocks":
+                    tx.setUnlocks(readStringArray(in));
+                    break;
+                case "outputs":
+                    tx.setOutputs(readStringArray(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return tx;
+    }
+
+    protected static void writeTransaction(JsonWriter out, BlockchainBlock.Transaction tx) throws IOException {
+        out.beginObject();
+        writeStringArray(out, "signatures", tx.getSignatures());
+        out.name("version").value(tx.getVersion());
+        out.name("currency").value(tx.getCurrency());
+        writeStringArray(out, "issuers", tx.getIssuers());
+        writeStringArray(out, "inputs", tx.getInputs());
+        writeStringArray(out, "unlocks", tx.getUnlocks());
+        writeStringArray(out, "outputs", tx.getOutputs());
+        out.endObject();
+    }
+}
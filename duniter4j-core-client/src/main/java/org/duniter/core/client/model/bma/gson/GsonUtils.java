@@ -24,9 +24,9 @@ package org.duniter.core.client.model.bma.gson;
 
 
 import com.google.common.collect.Multimap;
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import org.duniter.core.client.model.bma.BlockchainBlock;
-import org.duniter.core.client.model.bma.NetworkPeering;
+import org.duniter.core.client.model.bma.*;
 
 import java.util.List;
 
@@ -34,6 +34,16 @@ public class GsonUtils {
 
     public static final String DATE_PATTERN = "yyyy-MM-dd HH:mm:ss";
 
+    private static final Gson GSON = newBuilder().create();
+
+    /**
+     * Get the shared Gson instance (Gson is thread-safe). Prefer this to newBuilder().create(),
+     * that rebuild all type adapters
+     */
+    public static Gson getGson() {
+        return GSON;
+    }
+
     public static GsonBuilder newBuilder() {
         return new GsonBuilder()
                 // make sure date will be serialized
@@ -46,6 +56,13 @@ public class GsonUtils {
                 .registerTypeAdapter(BlockchainBlock.Revoked.class, new RevokedTypeAdapter())
                 // Register endpoint adapter
                 .registerTypeAdapter(NetworkPeering.Endpoint.class, new EndpointAdapter())
+                // Register streaming adapters (no reflection)
+                .registerTypeAdapter(BlockchainBlock.class, new BlockchainBlockTypeAdapter())
+                .registerTypeAdapter(LazyBlockchainBlock.class, new BlockchainBlockTypeAdapter(LazyBlockchainBlock::new))
+                .registerTypeAdapter(WotLookup.class, new WotLookupTypeAdapter())
+                .registerTypeAdapter(TxHistory.class, new TxHistoryTypeAdapter())
+                .registerTypeAdapter(TxSource.class, new TxSourceTypeAdapter())
+                .registerTypeAdapter(NetworkPeers.class, new NetworkPeersTypeAdapter())
                 ;
     }
 
@@ -51,40 +51,57 @@ public class JsonArrayParser {
     public List<String> getValuesAsList(String jsonArray) throws JsonParseException {
         ParserState state = ParserState.READING_ARRAY;
         List<String> result = new ArrayList<String>();
-        StringBuilder currentObject = null;
-        int i = 0;
+        int objectStart = -1;
         int parenthesisBalance = 0;
-        for (char c : jsonArray.toCharArray()) {
+        boolean inString = false;
+        boolean escaped = false;
+        int length = jsonArray.length();
+        for (int i = 0; i < length; i++) {
+            char c = jsonArray.charAt(i);
+
+            // Skip string content (could contains braces)
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                }
+                else if (c == '\\') {
+                    escaped = true;
+                }
+                else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+
             switch (c) {
+                case '"': {
+                    if (state == ParserState.READING_OBJECT) {
+                        inString = true;
+                    }
+                    break;
+                }
                 case '{': {
                     if (state == ParserState.READING_ARRAY) {
                         state = ParserState.READING_OBJECT;
-                        currentObject = new StringBuilder();
+                        objectStart = i;
                     }
                     parenthesisBalance++;
-                    currentObject.append(c);
                     break;
                 }
                 case '}': {
                     if (state == ParserState.READING_ARRAY) {
                         throw new JsonParseException("unexpected '}' at " + i);
                     } else {
-                        currentObject.append(c);
                         parenthesisBalance--;
                         if (parenthesisBalance == 0) {
                             state = ParserState.READING_ARRAY;
-                            result.add(currentObject.toString());
+                            result.add(jsonArray.substring(objectStart, i + 1));
                         }
                     }
                     break;
                 }
-                default: {
-                    if (state == ParserState.READING_OBJECT) {
-                        currentObject.append(c);
-                    }
-                }
+                default:
             }
-            i++;
         }
         return result;
     }
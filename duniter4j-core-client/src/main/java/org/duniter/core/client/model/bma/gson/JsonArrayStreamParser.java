@@ -0,0 +1,128 @@
+package org.duniter.core.client.model.bma.gson;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Parse JSON array content from a stream, without deserialize each item: each object of the array
+ * is sent (as raw UTF-8 bytes) to a consumer, as soon as it has been read.
+ * Only the current object is kept in memory. Braces inside string values (and escaped quotes) are ignored.
+ *
+ * This class is not thread-safe (internal buffers are reused).
+ */
+public class JsonArrayStreamParser {
+
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int DEFAULT_OBJECT_BUFFER_SIZE = 8192;
+
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+    private byte[] objectBuffer = new byte[DEFAULT_OBJECT_BUFFER_SIZE];
+
+    /**
+     * Read the stream, and send each array object to the consumer
+     * @param content a JSON array
+     * @param consumer called for each object, with its UTF-8 bytes
+     * @return the number of objects found
+     * @throws IOException
+     * @throws JsonParseException
+     */
+    public int parse(InputStream content, Consumer<byte[]> consumer) throws IOException, JsonParseException {
+        int count = 0;
+        int objectLength = 0;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        long position = 0;
+
+        int len;
+        while ((len = content.read(readBuffer)) != -1) {
+            for (int i = 0; i < len; i++, position++) {
+                byte b = readBuffer[i];
+
+                if (depth > 0) {
+                    // Append to the current object
+                    if (objectLength == objectBuffer.length) {
+                        objectBuffer = Arrays.copyOf(objectBuffer, objectBuffer.length * 2);
+                    }
+                    objectBuffer[objectLength++] = b;
+
+                    if (inString) {
+                        if (escaped) {
+                            escaped = false;
+                        }
+                        else if (b == '\\') {
+                            escaped = true;
+                        }
+                        else if (b == '"') {
+                            inString = false;
+                        }
+                    }
+                    else if (b == '"') {
+                        inString = true;
+                    }
+                    else if (b == '{') {
+                        depth++;
+                    }
+                    else if (b == '}') {
+                        depth--;
+                        if (depth == 0) {
+                            consumer.accept(Arrays.copyOf(objectBuffer, objectLength));
+                            count++;
+                            objectLength = 0;
+                        }
+                    }
+                }
+
+                // Outside an object (reading the array)
+                else if (b == '{') {
+                    depth = 1;
+                    objectBuffer[0] = b;
+                    objectLength = 1;
+                }
+                else if (b == '}') {
+                    throw new JsonParseException("unexpected '}' at " + position);
+                }
+            }
+        }
+
+        if (depth > 0) {
+            throw new JsonParseException("unexpected end of stream, inside an object");
+        }
+
+        return count;
+    }
+
+    public List<byte[]> getValuesAsList(InputStream content) throws IOException, JsonParseException {
+        List<byte[]> result = new ArrayList<>();
+        parse(content, result::add);
+        return result;
+    }
+}
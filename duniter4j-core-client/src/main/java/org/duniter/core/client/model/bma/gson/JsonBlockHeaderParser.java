@@ -0,0 +1,299 @@
+package org.duniter.core.client.model.bma.gson;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Extract block header fields (number, currency, hash, previousHash) from a block JSON, in a single pass.
+ * Only root attributes are read, and the scan stops as soon as all fields are found
+ * (header fields are written before the block content, by Duniter nodes).<br/>
+ * No object is allocated during the scan: the given header is reused, and string values are only
+ * created when asked.
+ *
+ * This class is thread-safe, but a Header instance is not.
+ */
+public class JsonBlockHeaderParser {
+
+    private static final int FIELD_NONE = -1;
+    private static final int FIELD_NUMBER = 0;
+    private static final int FIELD_CURRENCY = 1;
+    private static final int FIELD_HASH = 2;
+    private static final int FIELD_PREVIOUS_HASH = 3;
+
+    private static final byte[][] FIELD_NAMES = {
+            "number".getBytes(StandardCharsets.UTF_8),
+            "currency".getBytes(StandardCharsets.UTF_8),
+            "hash".getBytes(StandardCharsets.UTF_8),
+            "previousHash".getBytes(StandardCharsets.UTF_8)
+    };
+    private static final int ALL_FIELDS_MASK = (1 << FIELD_NAMES.length) - 1;
+
+    /**
+     * Parse a block JSON, into a new header
+     * @param json block as JSON (UTF-8 bytes)
+     * @return the header
+     */
+    public Header parse(byte[] json) {
+        Header header = new Header();
+        parse(json, header);
+        return header;
+    }
+
+    /**
+     * Parse a block JSON, into the given (reused) header
+     * @param json block as JSON (UTF-8 bytes)
+     * @param header the header to fill
+     * @return true if all fields has been found
+     */
+    public boolean parse(byte[] json, Header header) {
+        header.reset(json);
+
+        int foundMask = 0;
+        int depth = 0;
+        boolean expectKey = false;
+        int length = json.length;
+        int i = 0;
+        while (i < length) {
+            byte b = json[i];
+            switch (b) {
+                case '{':
+                    depth++;
+                    expectKey = (depth == 1);
+                    i++;
+                    break;
+                case '[':
+                    depth++;
+                    i++;
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    i++;
+                    break;
+                case ',':
+                    expectKey = (depth == 1);
+                    i++;
+                    break;
+                case '"': {
+                    int start = i + 1;
+                    int end = skipString(json, start);
+                    i = end + 1;
+                    if (expectKey) {
+                        expectKey = false;
+                        int field = getField(json, start, end);
+                        if (field != FIELD_NONE) {
+                            i = readValue(json, skipToValue(json, i), field, header);
+                            foundMask |= (1 << field);
+                            if (foundMask == ALL_FIELDS_MASK) {
+                                return true;
+                            }
+                        }
+                    }
+                    break;
+                }
+                default:
+                    i++;
+            }
+        }
+        return false;
+    }
+
+    /* -- internal methods -- */
+
+    /**
+     * @return the index of the closing quote
+     */
+    private int skipString(byte[] json, int start) {
+        int length = json.length;
+        for (int i = start; i < length; i++) {
+            byte b = json[i];
+            if (b == '\\') {
+                i++; // skip escaped char
+            }
+            else if (b == '"') {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private int getField(byte[] json, int start, int end) {
+        int keyLength = end - start;
+        for (int field = 0; field < FIELD_NAMES.length; field++) {
+            byte[] name = FIELD_NAMES[field];
+            if (name.length == keyLength && regionEquals(json, start, name)) {
+                return field;
+            }
+        }
+        return FIELD_NONE;
+    }
+
+    private int skipToValue(byte[] json, int i) {
+        int length = json.length;
+        while (i < length && (json[i] == ':' || json[i] == ' ' || json[i] == '\t' || json[i] == '\n' || json[i] == '\r')) {
+            i++;
+        }
+        return i;
+    }
+
+    private int readValue(byte[] json, int i, int field, Header header) {
+        int length = json.length;
+        if (i >= length) {
+            return i;
+        }
+
+        // String value
+        if (json[i] == '"') {
+            int start = i + 1;
+            int end = skipString(json, start);
+            switch (field) {
+                case FIELD_CURRENCY:
+                    header.currencyOffset = start;
+                    header.currencyLength = end - start;
+                    break;
+                case FIELD_HASH:
+                    header.hashOffset = start;
+                    header.hashLength = end - start;
+                    break;
+                case FIELD_PREVIOUS_HASH:
+                    header.previousHashOffset = start;
+                    header.previousHashLength = end - start;
+                    break;
+                default:
+            }
+            return end + 1;
+        }
+
+        // Numeric value
+        if (field == FIELD_NUMBER && (json[i] == '-' || (json[i] >= '0' && json[i] <= '9'))) {
+            boolean negative = json[i] == '-';
+            if (negative) i++;
+            long value = 0;
+            while (i < length && json[i] >= '0' && json[i] <= '9') {
+                value = value * 10 + (json[i] - '0');
+                i++;
+            }
+            header.number = (int) (negative ? -value : value);
+            return i;
+        }
+
+        // Other value (e.g. null): will be skipped by the main loop
+        return i;
+    }
+
+    private static boolean regionEquals(byte[] json, int offset, byte[] expected) {
+        for (int j = 0; j < expected.length; j++) {
+            if (json[offset + j] != expected[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Block header fields. String values are kept as offsets inside the source JSON,
+     * and only created when asked.
+     */
+    public static class Header {
+        private byte[] json;
+        private int number;
+        private int currencyOffset;
+        private int currencyLength;
+        private int hashOffset;
+        private int hashLength;
+        private int previousHashOffset;
+        private int previousHashLength;
+
+        void reset(byte[] json) {
+            this.json = json;
+            this.number = -1;
+            this.currencyOffset = -1;
+            this.hashOffset = -1;
+            this.previousHashOffset = -1;
+        }
+
+        /**
+         * @return the block number, or -1 if not found
+         */
+        public int getNumber() {
+            return number;
+        }
+
+        public String getCurrency() {
+            return toString(currencyOffset, currencyLength);
+        }
+
+        public String getHash() {
+            return toString(hashOffset, hashLength);
+        }
+
+        public String getPreviousHash() {
+            return toString(previousHashOffset, previousHashLength);
+        }
+
+        /**
+         * Compare the hash, without creating a string
+         */
+        public boolean isSameHash(String hash) {
+            return equals(hashOffset, hashLength, hash);
+        }
+
+        /**
+         * Compare the previous hash, without creating a string
+         */
+        public boolean isSamePreviousHash(String previousHash) {
+            return equals(previousHashOffset, previousHashLength, previousHash);
+        }
+
+        /**
+         * @return the source JSON
+         */
+        public byte[] getJson() {
+            return json;
+        }
+
+        private String toString(int offset, int length) {
+            if (offset == -1) {
+                return null;
+            }
+            return new String(json, offset, length, StandardCharsets.UTF_8);
+        }
+
+        private boolean equals(int offset, int length, String value) {
+            if (offset == -1 || value == null) {
+                return offset == -1 && value == null;
+            }
+            // Hash are ASCII only
+            if (value.length() != length) {
+                return false;
+            }
+            for (int j = 0; j < length; j++) {
+                if (json[offset + j] != value.charAt(j)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.duniter.core.client.model.bma.gson;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.duniter.core.client.model.bma.NetworkPeering;
+import org.duniter.core.client.model.bma.NetworkPeers;
+
+import java.io.IOException;
+
+/**
+ * Streaming adapter for {@link NetworkPeers}, without reflection. Endpoints are read by {@link EndpointAdapter}.
+ */
+public class NetworkPeersTypeAdapter extends AbstractStreamTypeAdapter<NetworkPeers> {
+
+    private final EndpointAdapter endpointAdapter = new EndpointAdapter();
+
+    @Override
+    protected NetworkPeers readValue(JsonReader in) throws IOException {
+        NetworkPeers result = new NetworkPeers();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "peers":
+                    result.peers = readArray(in, NetworkPeers.Peer[]::new, this::readPeer);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return result;
+    }
+
+    @Override
+    protected void writeValue(JsonWriter out, NetworkPeers value) throws IOException {
+        out.beginObject();
+        writeArray(out, "peers", value.peers, this::writePeer);
+        out.endObject();
+    }
+
+    /* -- internal methods -- */
+
+    protected NetworkPeers.Peer readPeer(JsonReader in) throws IOException {
+        NetworkPeers.Peer peer = new NetworkPeers.Peer();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "version":
+                    peer.version = readString(in);
+                    break;
+                case "currency":
+                    peer.currency = readString(in);
+                    break;
+                case "status":
+                    peer.status = readString(in);
+                    break;
+                case "block":
+                    peer.block = readString(in);
+                    break;
+                case "signature":
+                    peer.signature = readString(in);
+                    break;
+                case "pubkey":
+                    peer.pubkey = readString(in);
+                    break;
+                case "endpoints":
+                    peer.endpoints = readArray(in, NetworkPeering.Endpoint[]::new, endpointAdapter::read);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return peer;
+    }
+
+    protected void writePeer(JsonWriter out, NetworkPeers.Peer peer) throws IOException {
+        out.beginObject();
+        out.name("version").value(peer.version);
+        out.name("currency").value(peer.currency);
+        out.name("status").value(peer.status);
+        out.name("block").value(peer.block);
+        out.name("signature").value(peer.signature);
+        out.name("pubkey").value(peer.pubkey);
+        writeArray(out, "endpoints", peer.endpoints, endpointAdapter::write);
+        out.endObject();
+    }
+}
@@ -0,0 +1,167 @@
+package org.duniter.core.client.model.bma.gson;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.duniter.core.client.model.bma.TxHistory;
+
+import java.io.IOException;
+
+/**
+ * Streaming adapter for {@link TxHistory}, without reflection.
+ */
+public class TxHistoryTypeAdapter extends AbstractStreamTypeAdapter<TxHistory> {
+
+    @Override
+    protected TxHistory readValue(JsonReader in) throws IOException {
+        TxHistory txHistory = new TxHistory();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "currency":
+                    txHistory.setCurrency(readString(in));
+                    break;
+                case "pubkey":
+                    txHistory.setPubkey(readString(in));
+                    break;
+                case "history":
+                    txHistory.setHistory(readHistory(in, txHistory));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return txHistory;
+    }
+
+    @Override
+    protected void writeValue(JsonWriter out, TxHistory txHistory) throws IOException {
+        out.beginObject();
+        out.name("currency").value(txHistory.getCurrency());
+        out.name("pubkey").value(txHistory.getPubkey());
+        out.name("history");
+        writeHistory(out, txHistory.getHistory());
+        out.endObject();
+    }
+
+    /* -- internal methods -- */
+
+    protected static TxHistory.History readHistory(JsonReader in, TxHistory txHistory) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        TxHistory.History history = txHistory.new History();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "sent":
+                    history.setSent(readArray(in, TxHistory.Movement[]::new, TxHistoryTypeAdapter::readMovement));
+                    break;
+                case "received":
+                    history.setReceived(readArray(in, TxHistory.Movement[]::new, TxHistoryTypeAdapter::readMovement));
+                    break;
+                case "sending":
+                    history.setSending(readArray(in, TxHistory.Movement[]::new, TxHistoryTypeAdapter::readMovement));
+                    break;
+                case "receiving":
+                    history.setReceiving(readArray(in, TxHistory.Movement[]::new, TxHistoryTypeAdapter::readMovement));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return history;
+    }
+
+    protected static void writeHistory(JsonWriter out, TxHistory.History history) throws IOException {
+        if (history == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        writeArray(out, "sent", history.getSent(), TxHistoryTypeAdapter::writeMovement);
+        writeArray(out, "received", history.getReceived(), TxHistoryTypeAdapter::writeMovement);
+        writeArray(out, "sending", history.getSending(), TxHistoryTypeAdapter::writeMovement);
+        writeArray(out, "receiving", history.getReceiving(), TxHistoryTypeAdapter::writeMovement);
+        out.endObject();
+    }
+
+    protected static TxHistory.Movement readMovement(JsonReader in) throws IOException {
+        TxHistory.Movement movement = new TxHistory.Movement();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "version":
+                    movement.setVersion(readString(in));
+                    break;
+                case "issuers":
+                    movement.setIssuers(readStringArray(in));
+                    break;
+                case "inputs":
+                    movement.setInputs(readStringArray(in));
+                    break;
+                case "outputs":
+                    movement.setOutputs(readStringArray(in));
+                    break;
+                case "comment":
+                    movement.setComment(readString(in));
+                    break;
+                case "signatures":
+                    movement.setSignatures(readStringArray(in));
+                    break;
+                case "hash":
+                    movement.setHash(readString(in));
+                    break;
+                case "block_number":
+                    movement.setNumber(readInt(in, 0));
+                    break;
+                case "time":
+                    movement.setTime(readLong(in, 0));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return movement;
+    }
+
+    protected static void writeMovement(JsonWriter out, TxHistory.Movement movement) throws IOException {
+        out.beginObject();
+        out.name("version").value(movement.getVersion());
+        writeStringArray(out, "issuers", movement.getIssuers());
+        writeStringArray(out, "inputs", movement.getInputs());
+        writeStringArray(out, "outputs", movement.getOutputs());
+        out.name("comment").value(movement.getComment());
+        writeStringArray(out, "signatures", movement.getSignatures());
+        out.name("hash").value(movement.getHash());
+        out.name("block_number").value(movement.getBlockNumber());
+        out.name("time").value(movement.getTime());
+        out.endObject();
+    }
+}
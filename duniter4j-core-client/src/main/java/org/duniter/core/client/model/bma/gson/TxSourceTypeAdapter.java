@@ -0,0 +1,107 @@
+package org.duniter.core.client.model.bma.gson;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.duniter.core.client.model.bma.TxSource;
+
+import java.io.IOException;
+
+/**
+ * Streaming adapter for {@link TxSource}, without reflection.
+ */
+public class TxSourceTypeAdapter extends AbstractStreamTypeAdapter<TxSource> {
+
+    @Override
+    protected TxSource readValue(JsonReader in) throws IOException {
+        final TxSource txSource = new TxSource();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "currency":
+                    txSource.setCurrency(readString(in));
+                    break;
+                case "pubkey":
+                    txSource.setPubkey(readString(in));
+                    break;
+                case "sources":
+                    txSource.setSources(readArray(in, TxSource.Source[]::new, reader -> readSource(reader, txSource)));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return txSource;
+    }
+
+    @Override
+    protected void writeValue(JsonWriter out, TxSource txSource) throws IOException {
+        out.beginObject();
+        out.name("currency").value(txSource.getCurrency());
+        out.name("pubkey").value(txSource.getPubkey());
+        writeArray(out, "sources", txSource.getSources(), TxSourceTypeAdapter::writeSource);
+        out.endObject();
+    }
+
+    /* -- internal methods -- */
+
+    protected static TxSource.Source readSource(JsonReader in, TxSource txSource) throws IOException {
+        TxSource.Source source = txSource.new Source();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "type":
+                    source.setType(readString(in));
+                    break;
+                case "identifier":
+                    source.setIdentifier(readString(in));
+                    break;
+                case "noffset":
+                    source.setNoffset(readString(in));
+                    break;
+                case "amount":
+                    source.setAmount(readLong(in, 0));
+                    break;
+                case "base":
+                    source.setBase(readInt(in, 0));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return source;
+    }
+
+    protected static void writeSource(JsonWriter out, TxSource.Source source) throws IOException {
+        out.beginObject();
+        out.name("type").value(source.getType());
+        out.name("identifier").value(source.getIdentifier());
+        out.name("noffset").value(source.getNoffset());
+        out.name("amount").value(source.getAmount());
+        out.name("base").value(source.getBase());
+        out.endObject();
+    }
+}
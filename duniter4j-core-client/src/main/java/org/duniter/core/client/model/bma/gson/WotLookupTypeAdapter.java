@@ -0,0 +1,260 @@
+package org.duniter.core.client.model.bma.gson;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.duniter.core.client.model.bma.WotLookup;
+
+import java.io.IOException;
+
+/**
+ * Streaming adapter for {@link WotLookup} (results, uids and signatures), without reflection.
+ */
+public class WotLookupTypeAdapter extends AbstractStreamTypeAdapter<WotLookup> {
+
+    @Override
+    protected WotLookup readValue(JsonReader in) throws IOException {
+        final WotLookup lookup = new WotLookup();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "partial":
+                    lookup.partial = readBoolean(in, false);
+                    break;
+                case "results":
+                    lookup.results = readArray(in, WotLookup.Result[]::new, reader -> readResult(reader, lookup));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return lookup;
+    }
+
+    @Override
+    protected void writeValue(JsonWriter out, WotLookup lookup) throws IOException {
+        out.beginObject();
+        out.name("partial").value(lookup.partial);
+        writeArray(out, "results", lookup.results, WotLookupTypeAdapter::writeResult);
+        out.endObject();
+    }
+
+    /* -- internal methods -- */
+
+    protected static WotLookup.Result readResult(JsonReader in, final WotLookup lookup) throws IOException {
+        WotLookup.Result result = new WotLookup.Result();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "pubkey":
+                    result.pubkey = readString(in);
+                    break;
+                case "uids":
+                    result.uids = readArray(in, WotLookup.Uid[]::new, reader -> readUid(reader, lookup));
+                    break;
+                case "signed":
+                    result.signed = readArray(in, WotLookup.SignedSignature[]::new, reader -> readSignedSignature(reader, lookup));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return result;
+    }
+
+    protected static void writeResult(JsonWriter out, WotLookup.Result result) throws IOException {
+        out.beginObject();
+        out.name("pubkey").value(result.pubkey);
+        writeArray(out, "uids", result.uids, WotLookupTypeAdapter::writeUid);
+        writeArray(out, "signed", result.signed, WotLookupTypeAdapter::writeSignedSignature);
+        out.endObject();
+    }
+
+    protected static WotLookup.Uid readUid(JsonReader in, final WotLookup lookup) throws IOException {
+        WotLookup.Uid uid = lookup.new Uid();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "uid":
+                    uid.uid = readString(in);
+                    break;
+                case "meta":
+                    uid.meta = readMeta(in, lookup);
+                    break;
+                case "self":
+                    uid.self = readString(in);
+                    break;
+                case "revoked":
+                    uid.revoked = readBooleanObject(in);
+                    break;
+                case "revocation_sig":
+                    uid.revocation_sig = readString(in);
+                    break;
+                case "others":
+                    uid.others = readArray(in, WotLookup.OtherSignature[]::new, reader -> readOtherSignature(reader, lookup));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return uid;
+    }
+
+    protected static void writeUid(JsonWriter out, WotLookup.Uid uid) throws IOException {
+        out.beginObject();
+        out.name("uid").value(uid.uid);
+        out.name("meta");
+        writeMeta(out, uid.meta);
+        out.name("self").value(uid.self);
+        out.name("revoked");
+        if (uid.revoked == null) out.nullValue(); else out.value(uid.revoked);
+        out.name("revocation_sig").value(uid.revocation_sig);
+        writeArray(out, "others", uid.others, WotLookupTypeAdapter::writeOtherSignature);
+        out.endObject();
+    }
+
+    protected static WotLookup.Meta readMeta(JsonReader in, final WotLookup lookup) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        WotLookup.Meta meta = lookup.new Meta();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "timestamp":
+                    meta.timestamp = readString(in);
+                    break;
+                case "block_number":
+                    meta.block_number = readLongObject(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return meta;
+    }
+
+    protected static void writeMeta(JsonWriter out, WotLookup.Meta meta) throws IOException {
+        if (meta == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("timestamp").value(meta.timestamp);
+        out.name("block_number").value(meta.block_number);
+        out.endObject();
+    }
+
+    protected static WotLookup.OtherSignature readOtherSignature(JsonReader in, final WotLookup lookup) throws IOException {
+        WotLookup.OtherSignature other = lookup.new OtherSignature();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "pubkey":
+                    other.pubkey = readString(in);
+                    break;
+                case "meta":
+                    other.meta = readMeta(in, lookup);
+                    break;
+                case "signature":
+                    other.signature = readString(in);
+                    break;
+                case "uids":
+                    other.uids = readStringArray(in);
+                    break;
+                case "isMember":
+                    other.isMember = readBoolean(in, false);
+                    break;
+                case "wasMember":
+                    other.wasMember = readBoolean(in, false);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return other;
+    }
+
+    protected static void writeOtherSignature(JsonWriter out, WotLookup.OtherSignature other) throws IOException {
+        out.beginObject();
+        out.name("pubkey").value(other.pubkey);
+        out.name("meta");
+        writeMeta(out, other.meta);
+        out.name("signature").value(other.signature);
+        writeStringArray(out, "uids", other.uids);
+        out.name("isMember").value(other.isMember);
+        out.name("wasMember").value(other.wasMember);
+        out.endObject();
+    }
+
+    protected static WotLookup.SignedSignature readSignedSignature(JsonReader in, final WotLookup lookup) throws IOException {
+        WotLookup.SignedSignature signed = lookup.new SignedSignature();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "uid":
+                    signed.uid = readString(in);
+                    break;
+                case "pubkey":
+                    signed.pubkey = readString(in);
+                    break;
+                case "meta":
+                    signed.meta = readMeta(in, lookup);
+                    break;
+                case "signature":
+                    signed.signature = readString(in);
+                    break;
+                case "isMember":
+                    signed.isMember = readBoolean(in, false);
+                    break;
+                case "wasMember":
+                    signed.wasMember = readBoolean(in, false);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return signed;
+    }
+
+    protected static void writeSignedSignature(JsonWriter out, WotLookup.SignedSignature signed) throws IOException {
+        out.beginObject();
+        out.name("uid").value(signed.uid);
+        out.name("pubkey").value(signed.pubkey);
+        out.name("meta");
+        writeMeta(out, signed.meta);
+        out.name("signature").value(signed.signature);
+        out.name("isMember").value(signed.isMember);
+        out.name("wasMember").value(signed.wasMember);
+        out.endObject();
+    }
+}
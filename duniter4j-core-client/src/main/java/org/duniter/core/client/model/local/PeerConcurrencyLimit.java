@@ -0,0 +1,169 @@
+package org.duniter.core.client.model.local;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+/**
+ * Adaptive limit of concurrent requests sent to a peer (AIMD).
+ * <ul>
+ *     <li>additive increase (+1 per limit successful requests), while the limit is used and the latency is stable;</li>
+ *     <li>multiplicative decrease when a request fails (x0.5), or when the latency grows (x0.9):
+ *     the short term average latency becomes much higher than the long term average, meaning requests
+ *     are queued by the peer.</li>
+ * </ul>
+ * Requests started before the last decrease are not used to decrease again.
+ * Thread-safe.
+ */
+public class PeerConcurrencyLimit {
+
+    public static final double FAILURE_BACKOFF_RATIO = 0.5;
+    public static final double LATENCY_BACKOFF_RATIO = 0.9;
+    /** Max ratio between the short term and long term latency, before decreasing the limit */
+    public static final double LATENCY_TOLERANCE = 2.0;
+    /** Min latency growth (in millis), before decreasing the limit (ignore clock jitter on fast peers) */
+    public static final long LATENCY_MIN_GROWTH = 5;
+
+    private static final double SHORT_EWMA_ALPHA = 0.3;
+    private static final double LONG_EWMA_ALPHA = 0.02;
+    private static final int MIN_LIMIT = 1;
+
+    private final String url;
+    private final int maxLimit;
+    private double limit;
+    private int inFlight;
+    private double shortLatency = -1;
+    private double longLatency = -1;
+    private long lastDecreaseTime;
+
+    public PeerConcurrencyLimit(String url, int initialLimit, int maxLimit) {
+        this.url = url;
+        this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+        this.limit = Math.max(MIN_LIMIT, Math.min(initialLimit, this.maxLimit));
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Wait until a new request is allowed
+     * @param timeout max time to wait, in millis
+     * @return false if the timeout has elapsed
+     */
+    public synchronized boolean acquire(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (inFlight >= getLimit()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Should be called after a successful request (see acquire())
+     * @param startTime request start time
+     */
+    public synchronized void onSuccess(long startTime) {
+        long now = System.currentTimeMillis();
+        int previousInFlight = inFlight;
+        release();
+
+        long latency = now - startTime;
+        if (longLatency < 0) {
+            shortLatency = latency;
+            longLatency = latency;
+            return;
+        }
+        shortLatency = (1 - SHORT_EWMA_ALPHA) * shortLatency + SHORT_EWMA_ALPHA * latency;
+        longLatency = (1 - LONG_EWMA_ALPHA) * longLatency + LONG_EWMA_ALPHA * latency;
+
+        if (shortLatency > longLatency * LATENCY_TOLERANCE && shortLatency - longLatency > LATENCY_MIN_GROWTH) {
+            decrease(startTime, now, LATENCY_BACKOFF_RATIO);
+        }
+        else {
+            // After a congestion, let the long term latency recover faster
+            if (longLatency > shortLatency * LATENCY_TOLERANCE) {
+                longLatency = Math.max(shortLatency, longLatency * (1 - SHORT_EWMA_ALPHA));
+            }
+            // Increase only if the limit is used
+            if (previousInFlight * 2 >= getLimit()) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+    }
+
+    /**
+     * Should be called after a failed request (e.g. timeout, connection error)
+     * @param startTime request start time
+     */
+    public synchronized void onFailure(long startTime) {
+        release();
+        decrease(startTime, System.currentTimeMillis(), FAILURE_BACKOFF_RATIO);
+    }
+
+    /**
+     * @return the max allowed number of concurrent requests
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return the short term average latency (in millis), or -1 if unknown
+     */
+    public synchronized double getLatency() {
+        return shortLatency;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s [limit=%s/%s, inFlight=%s, latency=%.0fms/%.0fms]", url, getLimit(), maxLimit, inFlight, shortLatency, longLatency);
+    }
+
+    /* -- internal methods -- */
+
+    private void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    private void decrease(long startTime, long now, double ratio) {
+        // Ignore requests sent with the previous limit
+        if (startTime < lastDecreaseTime) {
+            return;
+        }
+        limit = Math.max(MIN_LIMIT, limit * ratio);
+        lastDecreaseTime = now;
+    }
+}
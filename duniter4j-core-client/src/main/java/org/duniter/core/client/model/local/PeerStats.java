@@ -0,0 +1,194 @@
+package org.duniter.core.client.model.local;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Health statistics of a peer: smoothed latency and error rate (EWMA), recent latencies, outstanding requests,
+ * consecutive failures and head block.
+ * <p>Also acts as a circuit breaker: the peer is ejected (open) after too many consecutive failures,
+ * for a jittered ejection time doubled on each new ejection. Once this time has elapsed (half-open),
+ * a single trial request is allowed: a success closes the circuit, a failure ejects the peer again.
+ * Thread-safe.
+ */
+public class PeerStats {
+
+    /** Weight of the last sample, in the moving averages */
+    public static final double EWMA_ALPHA = 0.2;
+
+    private static final int MAX_EJECTION_SHIFT = 5;
+    private static final int LATENCY_SAMPLE_SIZE = 64;
+    private static final int MIN_LATENCY_SAMPLES = 10;
+
+    private final String url;
+    private final int maxFailures;
+    private final long ejectionTime;
+
+    private final AtomicInteger outstandingRequests = new AtomicInteger();
+    private double latencyAvg = -1;
+    private double errorRate;
+    private int consecutiveFailures;
+    private int ejectionCount;
+    private long ejectedUntil;
+    private boolean trialInProgress;
+    private final long[] latencySamples = new long[LATENCY_SAMPLE_SIZE];
+    private int latencySampleCount;
+    private volatile int headBlockNumber = -1;
+
+    public PeerStats(String url, int maxFailures, long ejectionTime) {
+        this.url = url;
+        this.maxFailures = Math.max(1, maxFailures);
+        this.ejectionTime = ejectionTime;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Should be called before each request
+     * @return the start time, to pass to onSuccess() or onFailure()
+     */
+    public long onRequestStart() {
+        outstandingRequests.incrementAndGet();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (isHalfOpen(now)) {
+                trialInProgress = true;
+            }
+        }
+        return now;
+    }
+
+    public synchronized void onSuccess(long startTime) {
+        outstandingRequests.decrementAndGet();
+        updateLatency(System.currentTimeMillis() - startTime);
+        errorRate = (1 - EWMA_ALPHA) * errorRate;
+        consecutiveFailures = 0;
+        ejectionCount = 0;
+        ejectedUntil = 0;
+        trialInProgress = false;
+    }
+
+    public synchronized void onFailure(long startTime) {
+        outstandingRequests.decrementAndGet();
+        long now = System.currentTimeMillis();
+        updateLatency(now - startTime);
+        errorRate = (1 - EWMA_ALPHA) * errorRate + EWMA_ALPHA;
+        consecutiveFailures++;
+        if (consecutiveFailures >= maxFailures || trialInProgress) {
+            // Jittered backoff, between half and full ejection time
+            long duration = ejectionTime << Math.min(ejectionCount, MAX_EJECTION_SHIFT);
+            ejectedUntil = now + duration / 2 + ThreadLocalRandom.current().nextLong(duration / 2 + 1);
+            ejectionCount++;
+            consecutiveFailures = 0;
+            trialInProgress = false;
+        }
+    }
+
+    /**
+     * @return true if the peer is not ejected, or if its ejection time has elapsed and no trial request is running
+     */
+    public synchronized boolean isAvailable(long now) {
+        return now >= ejectedUntil && !trialInProgress;
+    }
+
+    /**
+     * @return true if the ejection time has elapsed, but no request has succeeded since
+     */
+    public synchronized boolean isHalfOpen(long now) {
+        return ejectionCount > 0 && now >= ejectedUntil;
+    }
+
+    public synchronized long getEjectedUntil() {
+        return ejectedUntil;
+    }
+
+    public int getOutstandingRequests() {
+        return outstandingRequests.get();
+    }
+
+    /**
+     * @return the smoothed latency (in ms), or -1 if no request has been done
+     */
+    public synchronized double getLatencyAvg() {
+        return latencyAvg;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency percentile (in ms) of the last requests, or -1 if not enough requests has been done
+     */
+    public synchronized long getLatencyPercentile(double percentile) {
+        int count = Math.min(latencySampleCount, LATENCY_SAMPLE_SIZE);
+        if (count < MIN_LATENCY_SAMPLES) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencySamples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return sorted[Math.max(0, Math.min(index, count - 1))];
+    }
+
+    public synchronized double getErrorRate() {
+        return errorRate;
+    }
+
+    public int getHeadBlockNumber() {
+        return headBlockNumber;
+    }
+
+    public void setHeadBlockNumber(int headBlockNumber) {
+        this.headBlockNumber = headBlockNumber;
+    }
+
+    /**
+     * Expected cost of a new request: lower is better.
+     * Least outstanding requests, weighted by latency and error rate.
+     * An unknown latency is considered as good, so that new peers get tried.
+     */
+    public synchronized double getScore() {
+        double latency = Math.max(latencyAvg, 1);
+        return (outstandingRequests.get() + 1) * latency * (1 + 10 * errorRate);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s {latency: %.0fms, errors: %.0f%%, outstanding: %s, head: %s%s}",
+                url, latencyAvg, errorRate * 100, outstandingRequests.get(), headBlockNumber,
+                ejectedUntil > System.currentTimeMillis() ? ", ejected" : "");
+    }
+
+    /* -- internal methods -- */
+
+    private void updateLatency(long elapsed) {
+        latencySamples[latencySampleCount++ % LATENCY_SAMPLE_SIZE] = elapsed;
+        if (latencySampleCount == 2 * LATENCY_SAMPLE_SIZE) {
+            latencySampleCount = LATENCY_SAMPLE_SIZE;
+        }
+        latencyAvg = latencyAvg < 0 ? elapsed : (1 - EWMA_ALPHA) * latencyAvg + EWMA_ALPHA * elapsed;
+    }
+}
@@ -0,0 +1,191 @@
+package org.duniter.core.client.model.local;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.core.util.ObjectUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Universal dividends of a currency, by block number.
+ * Stored as two sorted primitive arrays, to keep a large history compact, with a binary search lookup.
+ * Not thread-safe.
+ */
+public class UDHistory implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private int[] blockNumbers;
+    private long[] amounts;
+    private int size;
+
+    public UDHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public UDHistory(int capacity) {
+        blockNumbers = new int[Math.max(1, capacity)];
+        amounts = new long[blockNumbers.length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Add (or replace) the UD of a block. Appending in block order is the fast path.
+     */
+    public void put(int blockNumber, long amount) {
+        // Append
+        if (size == 0 || blockNumber > blockNumbers[size - 1]) {
+            ensureCapacity(size + 1);
+            blockNumbers[size] = blockNumber;
+            amounts[size] = amount;
+            size++;
+            return;
+        }
+
+        int index = Arrays.binarySearch(blockNumbers, 0, size, blockNumber);
+        // Replace
+        if (index >= 0) {
+            amounts[index] = amount;
+            return;
+        }
+
+        // Insert
+        index = -(index + 1);
+        ensureCapacity(size + 1);
+        System.arraycopy(blockNumbers, index, blockNumbers, index + 1, size - index);
+        System.arraycopy(amounts, index, amounts, index + 1, size - index);
+        blockNumbers[index] = blockNumber;
+        amounts[index] = amount;
+        size++;
+    }
+
+    /**
+     * @return the UD produced by the given block, or null if the block has no UD
+     */
+    public Long get(int blockNumber) {
+        int index = Arrays.binarySearch(blockNumbers, 0, size, blockNumber);
+        return index >= 0 ? amounts[index] : null;
+    }
+
+    /**
+     * @return the UD applicable at the given block (the last UD produced at or before it), or null if none
+     */
+    public Long getAt(int blockNumber) {
+        int index = floorIndex(blockNumber);
+        return index >= 0 ? amounts[index] : null;
+    }
+
+    /**
+     * @return the last block number with a UD, or -1 if empty
+     */
+    public int getLastBlockNumber() {
+        return size == 0 ? -1 : blockNumbers[size - 1];
+    }
+
+    public int getBlockNumber(int index) {
+        ObjectUtils.checkArgument(index >= 0 && index < size);
+        return blockNumbers[index];
+    }
+
+    public long getAmount(int index) {
+        ObjectUtils.checkArgument(index >= 0 && index < size);
+        return amounts[index];
+    }
+
+    /**
+     * Same result as BlockchainRemoteService.getUDs(): the last UD produced before <code>startOffset</code>,
+     * then all UDs produced from <code>startOffset</code>. Empty if no UD has been produced since <code>startOffset</code>.
+     */
+    public Map<Integer, Long> toMap(long startOffset) {
+        Map<Integer, Long> result = new LinkedHashMap<>();
+        int first = startOffset <= 0 ? 0 : floorIndex((int) Math.min(Integer.MAX_VALUE, startOffset - 1)) + 1;
+        if (first >= size) {
+            return result;
+        }
+        for (int i = Math.max(first - 1, 0); i < size; i++) {
+            result.put(blockNumbers[i], amounts[i]);
+        }
+        return result;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(blockNumbers[i]);
+            out.writeLong(amounts[i]);
+        }
+    }
+
+    public static UDHistory readFrom(DataInput in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException(String.format("Unsupported UD history format version [%s]", version));
+        }
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException(String.format("Invalid UD history size [%s]", size));
+        }
+        UDHistory result = new UDHistory(size);
+        for (int i = 0; i < size; i++) {
+            result.put(in.readInt(), in.readLong());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return toMap(0).toString();
+    }
+
+    /* -- internal methods -- */
+
+    private int floorIndex(int blockNumber) {
+        int index = Arrays.binarySearch(blockNumbers, 0, size, blockNumber);
+        return index >= 0 ? index : -(index + 1) - 1;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > blockNumbers.length) {
+            int newCapacity = Math.max(capacity, blockNumbers.length * 2);
+            blockNumbers = Arrays.copyOf(blockNumbers, newCapacity);
+            amounts = Arrays.copyOf(amounts, newCapacity);
+        }
+    }
+}
@@ -24,8 +24,16 @@ package org.duniter.core.client.service;
 
 import org.duniter.core.beans.Service;
 import org.duniter.core.client.model.local.Peer;
+import org.duniter.core.client.model.local.PeerConcurrencyLimit;
 import org.duniter.core.client.service.exception.PeerConnectionException;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.pool.PoolStats;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
  * Created by blavenie on 29/12/15.
@@ -40,9 +48,80 @@ public interface HttpService extends Service {
 
     <T> T executeRequest(String absolutePath, Class<? extends T> resultClass) ;
 
+    /**
+     * Execute a GET request on a peer. Concurrent identical requests (same peer, path and result class)
+     * are sent only once, and share the same result: the result must NOT be modified.
+     */
     <T> T executeRequest(Peer peer, String absolutePath, Class<? extends T> resultClass);
 
+    /**
+     * Execute a request, and read the response content as a stream (without buffering the full response)
+     * @param peer
+     * @param absolutePath
+     * @param contentHandler will read the content stream (the stream will be closed after)
+     * @return the handler result
+     */
+    <T> T executeRequestAsStream(Peer peer, String absolutePath, ContentHandler<T> contentHandler);
+
+    /**
+     * Execute a GET request on a peer, and return the raw response content. Concurrent identical requests
+     * are sent only once, and share the same array: the result must NOT be modified.
+     */
+    byte[] executeRequestAsBytes(Peer peer, String absolutePath);
+
+    <T> CompletableFuture<T> executeRequestAsync(HttpUriRequest request, Class<? extends T> resultClass);
+
+    <T> CompletableFuture<T> executeRequestAsync(Peer peer, String absolutePath, Class<? extends T> resultClass);
+
+    /**
+     * Execute a blocking remote call (e.g. a remote service method) asynchronously, using the HTTP executor.
+     * The executor is bounded by the max connections count, so requests will wait for a free connection
+     * without blocking the caller thread.
+     * @param supplier the remote call
+     * @return a future result
+     */
+    <T> CompletableFuture<T> executeAsync(Supplier<T> supplier);
+
     String getPath(Peer peer, String absolutePath);
 
     String getPath(String absolutePath);
+
+    /**
+     * Get statistics of the connection pool (leased, pending and available connections)
+     * @return pool statistics, or null if not connected
+     */
+    PoolStats getPoolStats();
+
+    /**
+     * Get statistics of the connection pool, for the given peer only
+     * @param peer
+     * @return pool statistics, or null if not connected
+     */
+    PoolStats getPoolStats(Peer peer);
+
+    /**
+     * Get the adaptive limit of concurrent requests, for the given peer
+     * @param peer
+     * @return the current limit (see PeerConcurrencyLimit.getLimit())
+     */
+    PeerConcurrencyLimit getConcurrencyLimit(Peer peer);
+
+    /**
+     * Get the adaptive limits of concurrent requests, for all peers already requested
+     */
+    Collection<PeerConcurrencyLimit> getConcurrencyLimits();
+
+    /**
+     * @return the count of GET requests that shared the result of an identical in-flight request
+     */
+    long getCoalescedRequestCount();
+
+    /**
+     * @return the count of GET requests that reused a recent result (see option 'duniter4j.network.coalesce.ttl')
+     */
+    long getCoalesceCacheHitCount();
+
+    interface ContentHandler<T> {
+        T handle(InputStream content) throws IOException;
+    }
 }
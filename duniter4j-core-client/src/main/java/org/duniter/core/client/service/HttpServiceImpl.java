@@ -22,17 +22,22 @@ package org.duniter.core.client.service;
  * #L%
  */
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import org.duniter.core.beans.InitializingBean;
 import org.duniter.core.client.config.Configuration;
 import org.duniter.core.client.model.bma.Error;
 import org.duniter.core.client.model.bma.gson.GsonUtils;
 import org.duniter.core.client.model.local.Peer;
+import org.duniter.core.client.model.local.PeerConcurrencyLimit;
+import org.duniter.core.client.model.local.PeerStats;
 import org.duniter.core.client.service.exception.HttpBadRequestException;
 import org.duniter.core.client.service.exception.HttpNotFoundException;
 import org.duniter.core.client.service.exception.JsonSyntaxException;
 import org.duniter.core.client.service.exception.PeerConnectionException;
+import org.duniter.core.client.service.local.PeerService;
 import org.duniter.core.exception.TechnicalException;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
@@ -40,8 +45,14 @@ import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
 import org.nuiton.i18n.I18n;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,7 +60,14 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.net.ConnectException;
 import java.net.SocketTimeoutException;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Created by eis on 05/02/15.
@@ -60,10 +78,21 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
 
     public static final String URL_PEER_ALIVE = "/blockchain/parameters";
 
+    private static final int MAX_SINGLE_FLIGHT_ENTRIES = 256;
+
     protected Integer baseTimeOut;
     protected Gson gson;
     protected HttpClient httpClient;
+    protected PoolingHttpClientConnectionManager connectionManager;
+    protected ScheduledExecutorService idleConnectionEvictor;
+    protected ExecutorService asyncExecutor;
     protected Peer defaultPeer;
+    protected PeerService peerService;
+    protected final Map<String, PeerConcurrencyLimit> concurrencyLimitsByUrl = new ConcurrentHashMap<>();
+    protected final ConcurrentMap<String, SingleFlight> singleFlights = new ConcurrentHashMap<>();
+    protected final AtomicLong coalescedRequestCount = new AtomicLong();
+    protected final AtomicLong coalesceCacheHitCount = new AtomicLong();
+    protected long coalesceTtl;
     private boolean debug;
 
     public HttpServiceImpl() {
@@ -74,9 +103,11 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
     @Override
     public void afterPropertiesSet() throws Exception {
         Configuration config = Configuration.instance();
-        this.gson = GsonUtils.newBuilder().create();
+        this.gson = GsonUtils.getGson();
         this.baseTimeOut = config.getNetworkTimeout();
+        this.coalesceTtl = config.getNetworkCoalesceTtl();
         this.httpClient = createHttpClient();
+        this.asyncExecutor = createAsyncExecutor(config);
     }
 
     public void connect(Peer peer) throws PeerConnectionException {
@@ -111,6 +142,15 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
 
     @Override
     public void close() throws IOException {
+        peerService = null;
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdownNow();
+            asyncExecutor = null;
+        }
+        if (idleConnectionEvictor != null) {
+            idleConnectionEvictor.shutdownNow();
+            idleConnectionEvictor = null;
+        }
         if (httpClient instanceof CloseableHttpClient) {
             ((CloseableHttpClient)httpClient).close();
         }
@@ -118,6 +158,9 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
             ((Closeable)httpClient).close();
         }
         httpClient = null;
+
+        // Closing the client also close the pool
+        connectionManager = null;
     }
 
     public <T> T executeRequest(HttpUriRequest request, Class<? extends T> resultClass)  {
@@ -130,8 +173,39 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
     }
 
     public <T> T executeRequest(Peer peer, String absolutePath, Class<? extends T> resultClass)  {
+        String url = getPath(peer, absolutePath);
+        return (T) executeSingleFlight(resultClass.getName() + '|' + url,
+                () -> executeRequest(peer, new HttpGet(url), response -> parseResponse(response, resultClass)));
+    }
+
+    public <T> T executeRequestAsStream(Peer peer, String absolutePath, ContentHandler<T> contentHandler) {
         HttpGet httpGet = new HttpGet(getPath(peer, absolutePath));
-        return executeRequest(httpClient, httpGet, resultClass);
+        return executeRequest(peer, httpGet, response -> {
+            try (InputStream content = response.getEntity().getContent()) {
+                return contentHandler.handle(content);
+            }
+        });
+    }
+
+    public byte[] executeRequestAsBytes(Peer peer, String absolutePath) {
+        String url = getPath(peer, absolutePath);
+        return (byte[]) executeSingleFlight("bytes|" + url,
+                () -> executeRequest(peer, new HttpGet(url), response -> EntityUtils.toByteArray(response.getEntity())));
+    }
+
+    public <T> CompletableFuture<T> executeRequestAsync(HttpUriRequest request, Class<? extends T> resultClass) {
+        return executeAsync(() -> executeRequest(request, resultClass));
+    }
+
+    public <T> CompletableFuture<T> executeRequestAsync(Peer peer, String absolutePath, Class<? extends T> resultClass) {
+        return executeAsync(() -> executeRequest(peer, absolutePath, resultClass));
+    }
+
+    public <T> CompletableFuture<T> executeAsync(Supplier<T> supplier) {
+        if (asyncExecutor == null) {
+            asyncExecutor = createAsyncExecutor(Configuration.instance());
+        }
+        return CompletableFuture.supplyAsync(supplier, asyncExecutor);
     }
 
     public String getPath(Peer peer, String absolutePath) {
@@ -144,6 +218,34 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
         return new StringBuilder().append(defaultPeer.getUrl()).append(absolutePath).toString();
     }
 
+    public PoolStats getPoolStats() {
+        PoolingHttpClientConnectionManager connectionManager = this.connectionManager;
+        return connectionManager != null ? connectionManager.getTotalStats() : null;
+    }
+
+    public PoolStats getPoolStats(Peer peer) {
+        PoolingHttpClientConnectionManager connectionManager = this.connectionManager;
+        return connectionManager != null ? connectionManager.getStats(getRoute(peer)) : null;
+    }
+
+    public PeerConcurrencyLimit getConcurrencyLimit(Peer peer) {
+        Configuration config = Configuration.instance();
+        return concurrencyLimitsByUrl.computeIfAbsent(peer.getUrl(),
+                url -> new PeerConcurrencyLimit(url, config.getNetworkConcurrencyInitialLimit(), config.getNetworkMaxConnectionsPerRoute()));
+    }
+
+    public Collection<PeerConcurrencyLimit> getConcurrencyLimits() {
+        return Collections.unmodifiableCollection(concurrencyLimitsByUrl.values());
+    }
+
+    public long getCoalescedRequestCount() {
+        return coalescedRequestCount.get();
+    }
+
+    public long getCoalesceCacheHitCount() {
+        return coalesceCacheHitCount.get();
+    }
+
 
     /* -- Internal methods -- */
 
@@ -154,19 +256,193 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
     }
 
     protected HttpClient createHttpClient() {
-        CloseableHttpClient httpClient = HttpClients.custom().setDefaultRequestConfig(getRequestConfig())
+        Configuration config = Configuration.instance();
+        connectionManager = createConnectionManager(config);
+
+        // Note: response compression (gzip, deflate) is enabled by default
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(createKeepAliveStrategy(config.getNetworkKeepAlive()))
+                .setDefaultRequestConfig(getRequestConfig())
                 // .setDefaultCredentialsProvider(getCredentialsProvider())
                 .build();
+
+        startIdleConnectionEvictor(connectionManager, config.getNetworkIdleTimeout());
+
         return httpClient;
     }
 
+    /**
+     * Create the executor used by async requests: one thread per pooled connection (at most),
+     * and an unbounded queue, so callers never block.
+     */
+    protected ExecutorService createAsyncExecutor(Configuration config) {
+        int maxThreads = config.getNetworkMaxConnections();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("duniter4j-http-async-%d").build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    protected PoolingHttpClientConnectionManager createConnectionManager(Configuration config) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(config.getNetworkMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getNetworkMaxConnectionsPerRoute());
+        return connectionManager;
+    }
+
+    /**
+     * Keep connections alive, using the duration sent by the peer (if any), or the given default duration
+     * @param defaultKeepAlive default keep alive duration, in millis
+     */
+    protected ConnectionKeepAliveStrategy createKeepAliveStrategy(final long defaultKeepAlive) {
+        return (response, context) -> {
+            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAlive > 0 ? keepAlive : defaultKeepAlive;
+        };
+    }
+
+    /**
+     * Close expired connections (see keep alive), and connections idle for too long
+     * @param connectionManager
+     * @param idleTimeout idle timeout, in millis
+     */
+    protected void startIdleConnectionEvictor(final PoolingHttpClientConnectionManager connectionManager, final long idleTimeout) {
+        if (idleConnectionEvictor != null) {
+            idleConnectionEvictor.shutdownNow();
+        }
+        idleConnectionEvictor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("duniter4j-http-evictor-%d").build());
+        long delay = Math.max(1000, idleTimeout / 2);
+        idleConnectionEvictor.scheduleWithFixedDelay(() -> {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+        }, delay, delay, TimeUnit.MILLISECONDS);
+    }
+
+    protected HttpRoute getRoute(Peer peer) {
+        URI uri = URI.create(peer.getUrl());
+        boolean secure = "https".equals(uri.getScheme());
+        int port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+        return new HttpRoute(new HttpHost(uri.getHost(), port, uri.getScheme()), null, secure);
+    }
+
     protected RequestConfig getRequestConfig() {
         // build request config for timeout
         return RequestConfig.custom().setSocketTimeout(baseTimeOut).setConnectTimeout(baseTimeOut).build();
     }
 
     @SuppressWarnings("unchecked")
+    /**
+     * Execute a request on a peer, and record its latency and errors (see PeerService.getPeerStats()).
+     * Concurrent requests on the same peer are limited (see getConcurrencyLimit()): if the limit is reached,
+     * wait until a request ends (at most the network timeout).
+     */
+    protected <T> T executeRequest(Peer peer, HttpUriRequest request, ResponseParser<T> responseParser)  {
+        PeerStats stats = getPeerStats(peer);
+        PeerConcurrencyLimit limit = getConcurrencyLimit(peer);
+        try {
+            if (!limit.acquire(baseTimeOut)) {
+                throw new TechnicalException(String.format("Too many requests in progress on peer [%s] (limit: %s)", peer, limit.getLimit()));
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TechnicalException(String.format("Interrupted while waiting for peer [%s]", peer), e);
+        }
+
+        long startTime = stats.onRequestStart();
+        boolean success = false;
+        try {
+            T result = executeRequest(httpClient, request, responseParser);
+            success = true;
+            return result;
+        }
+        catch (HttpNotFoundException | HttpBadRequestException e) {
+            // The peer has responded
+            success = true;
+            throw e;
+        }
+        finally {
+            if (success) {
+                stats.onSuccess(startTime);
+                limit.onSuccess(startTime);
+            }
+            else {
+                stats.onFailure(startTime);
+                limit.onFailure(startTime);
+            }
+        }
+    }
+
+    /**
+     * Execute a call once for all concurrent callers using the same key: other callers wait and share
+     * the result (or the error) of the first one. If a TTL is set (see Configuration.getNetworkCoalesceTtl()),
+     * the result is also reused by next callers, during this TTL.
+     */
+    protected Object executeSingleFlight(String key, Supplier<Object> call) {
+        SingleFlight singleFlight = new SingleFlight();
+        SingleFlight existing;
+        while ((existing = singleFlights.putIfAbsent(key, singleFlight)) != null) {
+            if (existing.isExpired(System.currentTimeMillis())) {
+                singleFlights.remove(key, existing);
+                continue;
+            }
+            if (existing.future.isDone()) {
+                coalesceCacheHitCount.incrementAndGet();
+            }
+            else {
+                coalescedRequestCount.incrementAndGet();
+            }
+            try {
+                return existing.future.join();
+            }
+            catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            Object result = call.get();
+            if (coalesceTtl > 0) {
+                singleFlight.expireTime = System.currentTimeMillis() + coalesceTtl;
+            }
+            else {
+                singleFlights.remove(key, singleFlight);
+            }
+            singleFlight.future.complete(result);
+            return result;
+        }
+        catch (Throwable e) {
+            singleFlights.remove(key, singleFlight);
+            singleFlight.future.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            // Remove expired results
+            if (coalesceTtl > 0 && singleFlights.size() > MAX_SINGLE_FLIGHT_ENTRIES) {
+                long now = System.currentTimeMillis();
+                singleFlights.values().removeIf(entry -> entry.isExpired(now));
+            }
+        }
+    }
+
+    protected PeerStats getPeerStats(Peer peer) {
+        if (peerService == null) {
+            peerService = ServiceLocator.instance().getPeerService();
+        }
+        return peerService.getPeerStats(peer);
+    }
+
     protected <T> T executeRequest(HttpClient httpClient, HttpUriRequest request, Class<? extends T> resultClass)  {
+        return executeRequest(httpClient, request, response -> (T) parseResponse(response, resultClass));
+    }
+
+    protected <T> T executeRequest(HttpClient httpClient, HttpUriRequest request, ResponseParser<T> responseParser)  {
         T result = null;
 
         if (log.isDebugEnabled()) {
@@ -183,7 +459,7 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
 
             switch (response.getStatusLine().getStatusCode()) {
                 case HttpStatus.SC_OK: {
-                    result = (T) parseResponse(response, resultClass);
+                    result = responseParser.parse(response);
 
                     response.getEntity().consumeContent();
                     break;
@@ -215,7 +491,10 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
             throw new TechnicalException(e.getMessage(), e);
         }
         finally {
-            // Close is need
+            // Close is need (consume the content first, to be able to reuse the connection)
+            if (response != null) {
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
             if (response instanceof CloseableHttpResponse) {
                 try {
                     ((CloseableHttpResponse) response).close();
@@ -310,8 +589,9 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
             log.debug("Executing request : " + request.getRequestLine());
         }
 
+        HttpResponse response = null;
         try {
-            HttpResponse response = httpClient.execute(request);
+            response = httpClient.execute(request);
 
             switch (response.getStatusLine().getStatusCode()) {
                 case HttpStatus.SC_OK: {
@@ -332,5 +612,32 @@ public class HttpServiceImpl implements HttpService, Closeable, InitializingBean
         catch (IOException e) {
             throw new TechnicalException(e.getMessage(), e);
         }
+        finally {
+            // Release the connection to the pool
+            if (response != null) {
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
+            if (response instanceof CloseableHttpResponse) {
+                try {
+                    ((CloseableHttpResponse) response).close();
+                }
+                catch(IOException e) {
+                    // Silent is gold
+                }
+            }
+        }
+    }
+
+    protected static class SingleFlight {
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        volatile long expireTime = Long.MAX_VALUE;
+
+        boolean isExpired(long now) {
+            return future.isDone() && expireTime <= now;
+        }
+    }
+
+    protected interface ResponseParser<T> {
+        T parse(HttpResponse response) throws IOException;
     }
 }
@@ -29,6 +29,8 @@ import org.duniter.core.client.service.bma.*;
 import org.duniter.core.client.service.elasticsearch.CurrencyRegistryRemoteService;
 import org.duniter.core.client.service.local.CurrencyService;
 import org.duniter.core.client.service.local.PeerService;
+import org.duniter.core.client.service.local.BlockCacheService;
+import org.duniter.core.client.service.local.UDHistoryService;
 import org.duniter.core.service.CryptoService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -124,6 +126,14 @@ public class ServiceLocator implements Closeable {
         return getBean(CurrencyService.class);
     }
 
+    public UDHistoryService getUDHistoryService() {
+        return getBean(UDHistoryService.class);
+    }
+
+    public BlockCacheService getBlockCacheService() {
+        return getBean(BlockCacheService.class);
+    }
+
     public DataContext getDataContext() {
         return getBean(DataContext.class);
     }
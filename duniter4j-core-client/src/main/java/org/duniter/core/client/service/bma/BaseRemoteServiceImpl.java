@@ -24,26 +24,42 @@ package org.duniter.core.client.service.bma;
 
 import org.duniter.core.beans.InitializingBean;
 import org.duniter.core.beans.Service;
+import org.duniter.core.client.config.Configuration;
 import org.duniter.core.client.model.local.Peer;
 import org.duniter.core.client.service.HttpService;
+import org.duniter.core.client.service.exception.HttpBadRequestException;
 import org.duniter.core.client.service.local.PeerService;
 import org.duniter.core.client.service.ServiceLocator;
+import org.duniter.core.exception.TechnicalException;
 import org.apache.http.client.methods.HttpUriRequest;
 
 import java.io.IOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Created by eis on 05/02/15.
  */
 public abstract class BaseRemoteServiceImpl implements Service, InitializingBean {
 
+    /** True when running inside executeAsync() */
+    private static final ThreadLocal<Boolean> IN_ASYNC_CALL = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
     protected HttpService httpService;
     protected PeerService peerService;
+    private int hedgePercentile;
+    private int hedgeMinDelay;
 
     @Override
     public void afterPropertiesSet() {
         httpService = ServiceLocator.instance().getHttpService();
         peerService = ServiceLocator.instance().getPeerService();
+        Configuration config = Configuration.instance();
+        hedgePercentile = config.getNetworkHedgePercentile();
+        hedgeMinDelay = config.getNetworkHedgeMinDelay();
     }
 
     @Override
@@ -57,14 +73,102 @@ public abstract class BaseRemoteServiceImpl implements Service, InitializingBean
     }
 
     public <T> T executeRequest(long currencyId, String absolutePath, Class<? extends T> resultClass)  {
-        Peer peer = peerService.getActivePeerByCurrencyId(currencyId);
-        return httpService.executeRequest(peer, absolutePath, resultClass);
+        return executeHedged(currencyId, peer -> httpService.executeRequest(peer, absolutePath, resultClass));
     }
 
     public <T> T executeRequest(HttpUriRequest request, Class<? extends T> resultClass)  {
         return httpService.executeRequest(request, resultClass);
     }
 
+    public <T> CompletableFuture<T> executeRequestAsync(Peer peer, String absolutePath, Class<? extends T> resultClass)  {
+        return httpService.executeRequestAsync(peer, absolutePath, resultClass);
+    }
+
+    public <T> CompletableFuture<T> executeRequestAsync(long currencyId, String absolutePath, Class<? extends T> resultClass)  {
+        Peer peer = peerService.getActivePeerByCurrencyId(currencyId);
+        return httpService.executeRequestAsync(peer, absolutePath, resultClass);
+    }
+
+    /**
+     * Execute a blocking call asynchronously (see HttpService.executeAsync())
+     */
+    protected <T> CompletableFuture<T> executeAsync(Supplier<T> supplier)  {
+        return httpService.executeAsync(() -> {
+            IN_ASYNC_CALL.set(Boolean.TRUE);
+            try {
+                return supplier.get();
+            }
+            finally {
+                IN_ASYNC_CALL.remove();
+            }
+        });
+    }
+
+    /**
+     * Execute an idempotent request on the active peer of a currency.
+     * If no response after a latency percentile of this peer (see option <code>duniter4j.network.hedge.percentile</code>),
+     * the same request is sent to another healthy peer, and the first response wins.
+     * If the first peer fails, the request is sent to another peer at once.
+     */
+    protected <T> T executeHedged(long currencyId, Function<Peer, T> request) {
+        Peer peer = peerService.getActivePeerByCurrencyId(currencyId);
+
+        // Never hedge from an async call, to avoid waiting on the async executor from one of its threads
+        long hedgeDelay = hedgePercentile > 0 && !IN_ASYNC_CALL.get()
+                ? peerService.getPeerStats(peer).getLatencyPercentile(hedgePercentile)
+                : -1;
+        if (hedgeDelay < 0) {
+            return executeWithFailover(currencyId, peer, request);
+        }
+
+        CompletableFuture<T> first = executeAsync(() -> request.apply(peer));
+        try {
+            return first.get(Math.max(hedgeDelay, hedgeMinDelay), TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e) {
+            // Too slow: hedge
+        }
+        catch (ExecutionException e) {
+            if (!isRetryable(e.getCause())) {
+                return waitResult(first);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TechnicalException(e);
+        }
+
+        Peer otherPeer = peerService.getActivePeerByCurrencyId(currencyId, peer);
+        if (otherPeer == null) {
+            return waitResult(first);
+        }
+        CompletableFuture<T> second = executeAsync(() -> request.apply(otherPeer));
+        return waitResult(anySuccess(first, second));
+    }
+
+    /**
+     * @return true if the error could not happen on another peer (network or server error)
+     */
+    protected boolean isRetryable(Throwable error) {
+        return error instanceof TechnicalException && !(error instanceof HttpBadRequestException);
+    }
+
+    /**
+     * Wait a future result. Unlike <code>future.join()</code>, the original exception is thrown,
+     * not a CompletionException.
+     */
+    protected <T> T waitResult(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     public String getPath(long currencyId, String aPath) {
         Peer peer = peerService.getActivePeerByCurrencyId(currencyId);
         return httpService.getPath(peer, aPath);
@@ -73,4 +177,40 @@ public abstract class BaseRemoteServiceImpl implements Service, InitializingBean
     public String getPath(Peer peer, String aPath) {
         return httpService.getPath(peer, aPath);
     }
+
+    /* -- internal methods -- */
+
+    private <T> T executeWithFailover(long currencyId, Peer peer, Function<Peer, T> request) {
+        try {
+            return request.apply(peer);
+        }
+        catch (RuntimeException e) {
+            Peer otherPeer = isRetryable(e) ? peerService.getActivePeerByCurrencyId(currencyId, peer) : null;
+            if (otherPeer == null) {
+                throw e;
+            }
+            return request.apply(otherPeer);
+        }
+    }
+
+    /**
+     * @return a future completed by the first success, or by the first non retryable error, or by the last error
+     */
+    private <T> CompletableFuture<T> anySuccess(CompletableFuture<T> first, CompletableFuture<T> second) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failureCount = new AtomicInteger();
+        BiConsumer<T, Throwable> handler = (value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (!isRetryable(cause) || failureCount.incrementAndGet() == 2) {
+                result.completeExceptionally(cause);
+            }
+        };
+        first.whenComplete(handler);
+        second.whenComplete(handler);
+        return result;
+    }
 }
@@ -37,6 +37,8 @@ import org.duniter.core.client.service.exception.UidMatchAnotherPubkeyException;
 import org.duniter.core.util.websocket.WebsocketClientEndpoint;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface BlockchainRemoteService extends Service {
 
@@ -84,6 +86,31 @@ public interface BlockchainRemoteService extends Service {
      */
     Long getBlockDividend(long currencyId, long number) throws BlockNotFoundException;
 
+    /**
+     * Same as getBlockDividend(), but asynchronous
+     * @param currencyId
+     * @param number
+     * @return a future dividend (or a BlockNotFoundException)
+     */
+    CompletableFuture<Long> getBlockDividendAsync(long currencyId, long number);
+
+    /**
+     * Retrieve the dividends of many blocks. Requests are sent concurrently, by batch.
+     *
+     * @param currencyId
+     * @param numbers block numbers (should all have a UD)
+     * @return dividends, in the same order as <code>numbers</code>
+     */
+    long[] getBlockDividends(long currencyId, int[] numbers);
+
+    /**
+     * Retrieve the numbers of all blocks with a UD
+     *
+     * @param currencyId
+     * @return block numbers (sorted), or null if no UD has been produced yet
+     */
+    int[] getBlocksWithUD(long currencyId);
+
     /**
      * Retrieve a block, by id (from 0 to current)
      *
@@ -111,6 +138,49 @@ public interface BlockchainRemoteService extends Service {
      */
     String[] getBlocksAsJson(Peer peer, int count, int from);
 
+    /**
+     * Retrieve a list of blocks, as JSON. Each block is sent to the handler (as UTF-8 bytes) as soon as read,
+     * without buffering the full response.
+     * @param peer the peer to use
+     * @param count the number of blocks to get
+     * @param from the first block number
+     * @param blockHandler called for each block
+     * @return the number of blocks received
+     */
+    int streamBlocksAsJson(Peer peer, int count, int from, Consumer<byte[]> blockHandler);
+
+    /**
+     * Same as getBlock(), but asynchronous
+     * @param currencyId
+     * @param number
+     * @return a future block (or a BlockNotFoundException)
+     */
+    CompletableFuture<BlockchainBlock> getBlockAsync(long currencyId, long number);
+
+    /**
+     * Same as getBlock(), but asynchronous
+     * @param peer
+     * @param number
+     * @return a future block (or a BlockNotFoundException)
+     */
+    CompletableFuture<BlockchainBlock> getBlockAsync(Peer peer, int number);
+
+    /**
+     * Same as getBlocksAsJson(), but asynchronous
+     * @param peer
+     * @param count
+     * @param from
+     * @return
+     */
+    CompletableFuture<String[]> getBlocksAsJsonAsync(Peer peer, int count, int from);
+
+    /**
+     * Same as getCurrentBlock(), but asynchronous
+     * @param peer
+     * @return
+     */
+    CompletableFuture<BlockchainBlock> getCurrentBlockAsync(Peer peer);
+
     /**
      * Retrieve the current block (with short cache)
      *
@@ -218,5 +288,15 @@ public interface BlockchainRemoteService extends Service {
 
     void addNewBlockListener(Peer peer, WebsocketClientEndpoint.MessageHandler messageHandler);
 
+    /**
+     * Listen new blocks of a peer. The websocket is reconnected automatically (with an exponential backoff):
+     * blocks sent while disconnected are lost, and should be recovered when <code>connectionListener</code> is notified.
+     * @param peer
+     * @param messageHandler called for each new block (as JSON), by the socket thread: should not block
+     * @param connectionListener notified after each reconnection
+     */
+    void addNewBlockListener(Peer peer, WebsocketClientEndpoint.MessageHandler messageHandler,
+                             WebsocketClientEndpoint.ConnectionListener connectionListener);
+
 
 }
\ No newline at end of file
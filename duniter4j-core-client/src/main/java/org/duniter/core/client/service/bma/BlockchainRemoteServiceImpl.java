@@ -26,25 +26,31 @@ import org.duniter.core.client.config.Configuration;
 import org.duniter.core.client.model.bma.BlockchainBlock;
 import org.duniter.core.client.model.bma.BlockchainMemberships;
 import org.duniter.core.client.model.bma.BlockchainParameters;
+import org.duniter.core.client.model.bma.LazyBlockchainBlock;
 import org.duniter.core.client.model.bma.Protocol;
-import org.duniter.core.client.model.bma.gson.JsonArrayParser;
+import org.duniter.core.client.model.bma.gson.JsonArrayStreamParser;
+import org.duniter.core.client.model.bma.gson.JsonBlockHeaderParser;
 import org.duniter.core.client.model.local.Identity;
 import org.duniter.core.client.model.local.Peer;
 import org.duniter.core.client.model.local.Wallet;
 import org.duniter.core.client.service.ServiceLocator;
 import org.duniter.core.client.service.exception.*;
+import org.duniter.core.client.service.local.BlockCacheService;
+import org.duniter.core.client.service.local.CurrencyService;
 import org.duniter.core.exception.TechnicalException;
 import org.duniter.core.service.CryptoService;
+import org.duniter.core.util.CollectionUtils;
 import org.duniter.core.util.ObjectUtils;
 import org.duniter.core.util.StringUtils;
 import org.duniter.core.util.cache.Cache;
-import org.duniter.core.util.cache.SimpleCache;
+import org.duniter.core.util.cache.ConcurrentCache;
 import org.duniter.core.util.crypto.CryptoUtils;
 import org.duniter.core.util.websocket.WebsocketClientEndpoint;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.message.BasicNameValuePair;
+import org.nuiton.i18n.I18n;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,7 +58,11 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implements BlockchainRemoteService {
 
@@ -90,6 +100,16 @@ public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implement
 
     private Map<URI, WebsocketClientEndpoint> blockWsEndPoints = new HashMap<>();
 
+    // Immutable blocks, stored on disk
+    private BlockCacheService blockCacheService;
+
+    private CurrencyService currencyService;
+
+    private final JsonBlockHeaderParser blockHeaderParser = new JsonBlockHeaderParser();
+
+    // Currency name, by peer URL (learned from received blocks)
+    private final Map<String, String> currencyNameByPeerUrl = new ConcurrentHashMap<>();
+
     public BlockchainRemoteServiceImpl() {
         super();
     }
@@ -98,6 +118,7 @@ public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implement
     public void afterPropertiesSet() {
         super.afterPropertiesSet();
         networkRemoteService = ServiceLocator.instance().getNetworkRemoteService();
+        blockCacheService = ServiceLocator.instance().getBlockCacheService();
         config = Configuration.instance();
 
         // Initialize caches
@@ -141,9 +162,18 @@ public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implement
 
     @Override
     public BlockchainBlock getBlock(long currencyId, long number) throws BlockNotFoundException  {
+        byte[] cachedJson = blockCacheService.getBlockAsJson(getCurrencyName(currencyId), (int) number);
+        if (cachedJson != null) {
+            return toBlock(cachedJson);
+        }
+
         String path = String.format(URL_BLOCK, number);
         try {
-            return executeRequest(currencyId, path, BlockchainBlock.class);
+            return executeHedged(currencyId, peer -> {
+                byte[] json = executeRequestAsBytes(peer, path);
+                cacheBlock(peer, json);
+                return toBlock(json);
+            });
         }
         catch(HttpNotFoundException e) {
             throw new BlockNotFoundException(String.format("Block #%s not found", number));
@@ -152,9 +182,15 @@ public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implement
 
     @Override
     public Long getBlockDividend(long currencyId, long number) throws BlockNotFoundException {
+        byte[] cachedJson = blockCacheService.getBlockAsJson(getCurrencyName(currencyId), (int) number);
+        if (cachedJson != null) {
+            return getDividendFromBlockJson(new String(cachedJson, StandardCharsets.UTF_8));
+        }
+
         String path = String.format(URL_BLOCK, number);
         try {
             String json = executeRequest(currencyId, path, String.class);
+            cacheBlock(null, json.getBytes(StandardCharsets.UTF_8));
             return getDividendFromBlockJson(json);
         }
         catch(HttpNotFoundException e) {
@@ -165,10 +201,17 @@ public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implement
 
     @Override
     public BlockchainBlock getBlock(Peer peer, int number) throws BlockNotFoundException {
+        byte[] cachedJson = blockCacheService.getBlockAsJson(getCurrencyName(peer), number);
+        if (cachedJson != null) {
+            return toBlock(cachedJson);
+        }
+
         // Get block from number
         String path = String.format(URL_BLOCK, number);
         try {
-            return executeRequest(peer, path, BlockchainBlock.class);
+            byte[] json = executeRequestAsBytes(peer, path);
+            cacheBlock(peer, json);
+            return toBlock(json);
         }
         catch(HttpNotFoundException e) {
             throw new BlockNotFoundException(String.format("Block #%s not found on peer [%s]", number, peer));
@@ -177,10 +220,17 @@ public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implement
 
     @Override
     public String getBlockAsJson(Peer peer, int number) {
+        byte[] cachedJson = blockCacheService.getBlockAsJson(getCurrencyName(peer), number);
+        if (cachedJson != null) {
+            return new String(cachedJson, StandardCharsets.UTF_8);
+        }
+
         // get blockchain parameter
         String path = String.format(URL_BLOCK, number);
         try {
-            return executeRequest(peer, path, String.class);
+            String json = executeRequest(peer, path, String.class);
+            cacheBlock(peer, json.getBytes(StandardCharsets.UTF_8));
+            return json;
         }
         catch(HttpNotFoundException e) {
             throw new BlockNotFoundException(String.format("Block #%s not found on peer [%s]", number, peer));
@@ -189,13 +239,56 @@ public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implement
 
     @Override
     public String[] getBlocksAsJson(Peer peer, int count, int from) {
-        // get blockchain parameter
-        String path = String.format(URL_BLOCKS_FROM, count, from);
-        String jsonBlocksStr = executeRequest(peer, path, String.class);
+        List<String> result = new ArrayList<>();
+        streamBlocksAsJson(peer, count, from, block -> result.add(new String(block, StandardCharsets.UTF_8)));
+        return CollectionUtils.isEmpty(result) ? null : result.toArray(new String[result.size()]);
+    }
+
+    @Override
+    public int streamBlocksAsJson(Peer peer, int count, int from, Consumer<byte[]> blockHandler) {
+        // Send first blocks from the block cache
+        int cachedCount = 0;
+        String currencyName = getCurrencyName(peer);
+        if (currencyName != null) {
+            byte[] cachedJson;
+            while (cachedCount < count
+                    && (cachedJson = blockCacheService.getBlockAsJson(currencyName, from + cachedCount)) != null) {
+                blockHandler.accept(cachedJson);
+                cachedCount++;
+            }
+            if (cachedCount == count) {
+                return count;
+            }
+        }
 
-        // Parse only array content, but deserialize array item
-        JsonArrayParser parser = new JsonArrayParser();
-        return parser.getValuesAsArray(jsonBlocksStr);
+        // Then get next blocks from the peer
+        // Parse only array content (from stream), but deserialize array item
+        String path = String.format(URL_BLOCKS_FROM, count - cachedCount, from + cachedCount);
+        return cachedCount + httpService.executeRequestAsStream(peer, path,
+                content -> new JsonArrayStreamParser().parse(content, json -> {
+                    cacheBlock(peer, json);
+                    blockHandler.accept(json);
+                }));
+    }
+
+    @Override
+    public CompletableFuture<BlockchainBlock> getBlockAsync(long currencyId, long number) {
+        return executeAsync(() -> getBlock(currencyId, number));
+    }
+
+    @Override
+    public CompletableFuture<BlockchainBlock> getBlockAsync(Peer peer, int number) {
+        return executeAsync(() -> getBlock(peer, number));
+    }
+
+    @Override
+    public CompletableFuture<String[]> getBlocksAsJsonAsync(Peer peer, int count, int from) {
+        return executeAsync(() -> getBlocksAsJson(peer, count, from));
+    }
+
+    @Override
+    public CompletableFuture<BlockchainBlock> getCurrentBlockAsync(Peer peer) {
+        return executeAsync(() -> getCurrentBlock(peer));
     }
 
     /**
@@ -214,14 +307,19 @@ public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implement
     @Override
     public BlockchainBlock getCurrentBlock(long currencyId) {
         // get blockchain parameter
-        BlockchainBlock result = executeRequest(currencyId, URL_BLOCK_CURRENT, BlockchainBlock.class);
+        BlockchainBlock result = executeHedged(currencyId, peer -> executeBlockRequest(peer, URL_BLOCK_CURRENT));
+        blockCacheService.setHeadBlockNumber(result.getCurrency(), result.getNumber());
         return result;
     }
 
     @Override
     public BlockchainBlock getCurrentBlock(Peer peer) {
         // get blockchain parameter
-        BlockchainBlock result = executeRequest(peer, URL_BLOCK_CURRENT, BlockchainBlock.class);
+        BlockchainBlock result = executeBlockRequest(peer, URL_BLOCK_CURRENT);
+        if (result.getCurrency() != null) {
+            currencyNameByPeerUrl.put(peer.getUrl(), result.getCurrency());
+            blockCacheService.setHeadBlockNumber(result.getCurrency(), result.getNumber());
+        }
         return result;
     }
 
@@ -493,48 +591,64 @@ public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implement
         int[] blockNumbersWithUD = getBlocksWithUD(currencyId);
 
         Map<Integer, Long> result = new LinkedHashMap<Integer,Long>();
+        if (blockNumbersWithUD == null || blockNumbersWithUD.length == 0) {
+            result.put(0, getParameters(currencyId, true/*with cache*/).getUd0());
+            return result;
+        }
 
-//         Insert the UD0 (if need)
-//        if (startOffset <= 0) {
-//            BlockchainParameters parameters = getParameters(currencyId, true/*with cache*/);
-//            result.put(0, parameters.getUd0());
-//        }
-
-        boolean previousBlockInsert = false;
-        if (blockNumbersWithUD != null && blockNumbersWithUD.length != 0) {
-            Integer previousBlockNumberWithUd = null;
-            for (Integer blockNumber : blockNumbersWithUD) {
-                if (blockNumber >= startOffset) {
-                    if(!previousBlockInsert){
-                        Long previousUd = getParameters(currencyId, true/*with cache*/).getUd0();
-                        Integer previousBlockNumber = 0;
-                        if(previousBlockNumberWithUd!=null){
-                            previousUd = getBlockDividend(currencyId, previousBlockNumberWithUd);
-                            if (previousUd == null) {
-                                throw new TechnicalException(
-                                        String.format("Unable to get UD from server block [%s]",
-                                                previousBlockNumberWithUd)
-                                );
-                            }
-                            previousBlockNumber = previousBlockNumberWithUd;
-                        }
-                        result.put(previousBlockNumber, previousUd);
-                        previousBlockInsert = true;
-                    }
-                    Long ud = getBlockDividend(currencyId, blockNumber);
-                    // Check not null (should never append)
-                    if (ud == null) {
-                        throw new TechnicalException(String.format("Unable to get UD from server block [%s]", blockNumber));
-                    }
-                    result.put(blockNumber, ud);
-                }else{
-                    previousBlockNumberWithUd = blockNumber;
-                }
-            }
-        }else{
+        // Find the first block to fetch (blocks are sorted)
+        int firstIndex = 0;
+        while (firstIndex < blockNumbersWithUD.length && blockNumbersWithUD[firstIndex] < startOffset) {
+            firstIndex++;
+        }
+        if (firstIndex == blockNumbersWithUD.length) {
+            return result;
+        }
+
+        // Include the previous UD (or UD0, if none)
+        int[] numbers;
+        if (firstIndex == 0) {
             result.put(0, getParameters(currencyId, true/*with cache*/).getUd0());
+            numbers = blockNumbersWithUD;
+        }
+        else {
+            numbers = Arrays.copyOfRange(blockNumbersWithUD, firstIndex - 1, blockNumbersWithUD.length);
         }
 
+        long[] dividends = getBlockDividends(currencyId, numbers);
+        for (int i = 0; i < numbers.length; i++) {
+            result.put(numbers[i], dividends[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<Long> getBlockDividendAsync(long currencyId, long number) {
+        return executeAsync(() -> getBlockDividend(currencyId, number));
+    }
+
+    @Override
+    public long[] getBlockDividends(long currencyId, int[] numbers) {
+        long[] result = new long[numbers.length];
+
+        // Keep at most one batch in flight, to avoid flooding the peer
+        int batchSize = Math.max(1, config.getNetworkMaxConnectionsPerRoute());
+        List<CompletableFuture<Long>> batch = new ArrayList<>(batchSize);
+        for (int offset = 0; offset < numbers.length; offset += batchSize) {
+            int end = Math.min(offset + batchSize, numbers.length);
+            batch.clear();
+            for (int i = offset; i < end; i++) {
+                batch.add(getBlockDividendAsync(currencyId, numbers[i]));
+            }
+            for (int i = offset; i < end; i++) {
+                Long ud = waitResult(batch.get(i - offset));
+                // Check not null (should never append)
+                if (ud == null) {
+                    throw new TechnicalException(String.format("Unable to get UD from server block [%s]", numbers[i]));
+                }
+                result[i] = ud;
+            }
+        }
         return result;
     }
 
@@ -546,6 +660,12 @@ public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implement
 
     @Override
     public void addNewBlockListener(Peer peer, WebsocketClientEndpoint.MessageHandler messageHandler) {
+        addNewBlockListener(peer, messageHandler, null);
+    }
+
+    @Override
+    public void addNewBlockListener(Peer peer, WebsocketClientEndpoint.MessageHandler messageHandler,
+                                    WebsocketClientEndpoint.ConnectionListener connectionListener) {
 
         try {
             URI wsBlockURI = new URI(String.format("ws://%s:%s/ws/block",
@@ -557,12 +677,15 @@ public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implement
             // Get the websocket, or open new one if not exists
             WebsocketClientEndpoint wsClientEndPoint = blockWsEndPoints.get(wsBlockURI);
             if (wsClientEndPoint == null || wsClientEndPoint.isClosed()) {
-                wsClientEndPoint = new WebsocketClientEndpoint(wsBlockURI);
+                wsClientEndPoint = new WebsocketClientEndpoint(wsBlockURI, true/*auto reconnect*/);
                 blockWsEndPoints.put(wsBlockURI, wsClientEndPoint);
             }
 
             // add listener
             wsClientEndPoint.addMessageHandler(messageHandler);
+            if (connectionListener != null) {
+                wsClientEndPoint.addConnectionListener(connectionListener);
+            }
 
         } catch (URISyntaxException | ServiceConfigurationError ex) {
             throw new TechnicalException("could not create URI need for web socket on block: " + ex.getMessage());
@@ -572,20 +695,95 @@ public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implement
 
     /* -- Internal methods -- */
 
+    /**
+     * Get a block, as a lazy block: only header attributes are parsed, the body is parsed on first access
+     */
+    protected BlockchainBlock executeBlockRequest(Peer peer, String path) {
+        return toBlock(executeRequestAsBytes(peer, path));
+    }
+
+    /**
+     * Get the raw response. Concurrent identical requests are coalesced: the array is shared, and must not be modified
+     */
+    protected byte[] executeRequestAsBytes(Peer peer, String path) {
+        return httpService.executeRequestAsBytes(peer, path);
+    }
+
+    /**
+     * Create a lazy block: only header attributes are parsed, the body is parsed on first access
+     */
+    protected BlockchainBlock toBlock(byte[] json) {
+        try {
+            return new LazyBlockchainBlock(json);
+        }
+        catch (com.google.gson.JsonSyntaxException e) {
+            throw new JsonSyntaxException(I18n.t("duniter4j.client.core.invalidResponse"), e);
+        }
+    }
+
+    /**
+     * Store a block received from the network into the block cache (only if immutable),
+     * and remember the currency of the peer
+     * @param peer the source peer, or null if unknown
+     */
+    protected void cacheBlock(Peer peer, byte[] json) {
+        if (!blockCacheService.isEnable()) {
+            return;
+        }
+        JsonBlockHeaderParser.Header header = blockHeaderParser.parse(json);
+        String currencyName = header.getCurrency();
+        if (currencyName == null || header.getNumber() < 0) {
+            return;
+        }
+        if (peer != null) {
+            currencyNameByPeerUrl.put(peer.getUrl(), currencyName);
+        }
+        blockCacheService.putBlockAsJson(currencyName, header.getNumber(), json);
+    }
+
+    /**
+     * @return the currency name of a peer, if already known (see cacheBlock()), or null
+     */
+    protected String getCurrencyName(Peer peer) {
+        if (!blockCacheService.isEnable()) {
+            return null;
+        }
+        String result = currencyNameByPeerUrl.get(peer.getUrl());
+        if (result == null && peer.getCurrencyId() != null) {
+            result = getCurrencyName(peer.getCurrencyId());
+        }
+        return result;
+    }
+
+    /**
+     * @return the currency name, if loaded by the currency service, or null
+     */
+    protected String getCurrencyName(long currencyId) {
+        if (!blockCacheService.isEnable()) {
+            return null;
+        }
+        if (currencyService == null) {
+            currencyService = ServiceLocator.instance().getCurrencyService();
+        }
+        return currencyService.getCurrencyNameById(currencyId);
+    }
+
     /**
      * Initialize caches
      */
     protected void initCaches() {
         int cacheTimeInMillis = config.getNetworkCacheTimeInMillis();
 
-        mCurrentBlockCache = new SimpleCache<Long, BlockchainBlock>(cacheTimeInMillis) {
+        // Current block is refreshed in background, after half of the cache time
+        long refreshTimeInMillis = cacheTimeInMillis >= 2 ? cacheTimeInMillis / 2 : ConcurrentCache.NO_REFRESH;
+        mCurrentBlockCache = new ConcurrentCache<Long, BlockchainBlock>(cacheTimeInMillis, ConcurrentCache.UNLIMITED_WEIGHT, refreshTimeInMillis) {
             @Override
             public BlockchainBlock load(Long currencyId) {
                 return getCurrentBlock(currencyId);
             }
         };
 
-        mParametersCache = new SimpleCache<Long, BlockchainParameters>(/*eternal cache*/) {
+        mParametersCache = new ConcurrentCache<Long, BlockchainParameters>(/*eternal cache*/) {
             @Override
             public BlockchainParameters load(Long currencyId) {
                 return getParameters(currencyId);
@@ -640,7 +838,8 @@ public class BlockchainRemoteServiceImpl extends BaseRemoteServiceImpl implement
 
     }
 
-    private int[] getBlocksWithUD(long currencyId) {
+    @Override
+    public int[] getBlocksWithUD(long currencyId) {
         log.debug("Getting blocks with UD");
 
         String json = executeRequest(currencyId, URL_BLOCK_WITH_UD, String.class);
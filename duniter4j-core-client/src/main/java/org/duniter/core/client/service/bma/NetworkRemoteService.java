@@ -25,9 +25,11 @@ package org.duniter.core.client.service.bma;
 import org.duniter.core.beans.Service;
 import org.duniter.core.client.model.bma.EndpointProtocol;
 import org.duniter.core.client.model.bma.NetworkPeering;
+import org.duniter.core.client.model.local.NetworkPeerInfo;
 import org.duniter.core.client.model.local.Peer;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by eis on 05/02/15.
@@ -38,5 +40,19 @@ public interface NetworkRemoteService extends Service {
 
     List<Peer> getPeers(Peer peer);
 
+    CompletableFuture<NetworkPeering> getPeeringAsync(Peer peer);
+
+    CompletableFuture<List<Peer>> getPeersAsync(Peer peer);
+
     List<Peer> findPeers(Peer peer, String status, EndpointProtocol endpointProtocol, Integer currentBlockNumber, String currentBlockHash);
+
+    /**
+     * Walk the network (breadth-first) from a peer, calling /network/peering and /network/peers on each reachable node,
+     * with at most <code>maxParallel</code> concurrent nodes: a new node is crawled as soon as another one ends.
+     * @param peer the first peer
+     * @param endpointProtocol the endpoint protocol to follow
+     * @param maxParallel max concurrent requests
+     * @return reachable nodes (one by pubkey), sorted by head block (desc), then latency
+     */
+    List<NetworkPeerInfo> crawlPeers(Peer peer, EndpointProtocol endpointProtocol, int maxParallel);
 }
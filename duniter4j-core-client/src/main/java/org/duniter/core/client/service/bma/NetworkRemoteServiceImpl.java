@@ -22,21 +22,28 @@ package org.duniter.core.client.service.bma;
  * #L%
  */
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import org.duniter.core.client.model.bma.EndpointProtocol;
 import org.duniter.core.client.model.bma.NetworkPeering;
 import org.duniter.core.client.model.bma.NetworkPeers;
+import org.duniter.core.client.model.local.NetworkPeerInfo;
 import org.duniter.core.client.model.local.Peer;
 import org.duniter.core.util.ObjectUtils;
 import org.duniter.core.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Created by eis on 05/02/15.
  */
 public class NetworkRemoteServiceImpl extends BaseRemoteServiceImpl implements NetworkRemoteService{
 
+    private static final Logger log = LoggerFactory.getLogger(NetworkRemoteServiceImpl.class);
 
     public static final String URL_BASE = "/network";
 
@@ -62,6 +69,16 @@ public class NetworkRemoteServiceImpl extends BaseRemoteServiceImpl implements N
         return findPeers(peer, null, null, null, null);
     }
 
+    @Override
+    public CompletableFuture<NetworkPeering> getPeeringAsync(Peer peer) {
+        return executeAsync(() -> getPeering(peer));
+    }
+
+    @Override
+    public CompletableFuture<List<Peer>> getPeersAsync(Peer peer) {
+        return executeAsync(() -> getPeers(peer));
+    }
+
     @Override
     public List<Peer> findPeers(Peer peer, String status, EndpointProtocol endpointProtocol, Integer currentBlockNumber, String currentBlockHash) {
         ObjectUtils.checkNotNull(peer);
@@ -95,8 +112,105 @@ public class NetworkRemoteServiceImpl extends BaseRemoteServiceImpl implements N
         return result;
     }
 
+    @Override
+    public List<NetworkPeerInfo> crawlPeers(Peer peer, EndpointProtocol endpointProtocol, int maxParallel) {
+        ObjectUtils.checkNotNull(peer);
+        ObjectUtils.checkArgument(maxParallel > 0);
+
+        Map<String, NetworkPeerInfo> result = new HashMap<>();
+        Set<String> visitedUrls = new HashSet<>();
+        Set<String> queuedPubkeys = new HashSet<>();
+        Deque<Peer> pendingPeers = new ArrayDeque<>();
+        pendingPeers.add(peer);
+        visitedUrls.add(peer.getUrl());
+
+        // Crawled peers, in completion order: a new crawl starts as soon as a slot is free
+        BlockingQueue<CrawlTask> completedTasks = new LinkedBlockingQueue<>();
+        int inFlight = 0;
+
+        while (!pendingPeers.isEmpty() || inFlight > 0) {
+            while (inFlight < maxParallel && !pendingPeers.isEmpty()) {
+                final Peer pendingPeer = pendingPeers.poll();
+                executeAsync(() -> crawlPeer(pendingPeer))
+                        .whenComplete((crawlResult, error) -> completedTasks.add(new CrawlTask(pendingPeer, crawlResult, error)));
+                inFlight++;
+            }
+
+            CrawlTask task;
+            try {
+                task = completedTasks.take();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            inFlight--;
+
+            if (task.error != null) {
+                if (log.isDebugEnabled()) {
+                    Throwable cause = task.error instanceof CompletionException && task.error.getCause() != null ? task.error.getCause() : task.error;
+                    log.debug(String.format("[%s] Skipping unreachable peer: %s", task.peer, cause.getMessage()));
+                }
+                continue;
+            }
+
+            // Same node already reached, from another endpoint
+            CrawlResult crawlResult = task.result;
+            String pubkey = crawlResult.info.getPubkey();
+            if (pubkey == null || result.containsKey(pubkey)) {
+                continue;
+            }
+            result.put(pubkey, crawlResult.info);
+            queuedPubkeys.add(pubkey);
+
+            // Queue endpoints of nodes not reached yet
+            for (NetworkPeers.Peer remotePeer: crawlResult.knownPeers) {
+                if (remotePeer.pubkey == null || remotePeer.endpoints == null || !queuedPubkeys.add(remotePeer.pubkey)) {
+                    continue;
+                }
+                for (NetworkPeering.Endpoint endpoint: remotePeer.endpoints) {
+                    if (endpointProtocol == null || endpointProtocol == endpoint.protocol) {
+                        Peer childPeer = toPeer(endpoint);
+                        if (childPeer != null && visitedUrls.add(childPeer.getUrl())) {
+                            pendingPeers.add(childPeer);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<NetworkPeerInfo> sortedResult = new ArrayList<>(result.values());
+        Collections.sort(sortedResult, Comparator
+                .comparing((NetworkPeerInfo info) -> info.getBlockNumber() != null ? info.getBlockNumber() : -1).reversed()
+                .thenComparingLong(NetworkPeerInfo::getLatency));
+        return sortedResult;
+    }
+
     /* -- Internal methods -- */
 
+    protected CrawlResult crawlPeer(Peer peer) {
+        long startTime = System.currentTimeMillis();
+        NetworkPeering peering = getPeering(peer);
+        long latency = System.currentTimeMillis() - startTime;
+
+        NetworkPeerInfo info = new NetworkPeerInfo();
+        info.setPubkey(peering.getPubkey());
+        info.setCurrency(peering.getCurrency());
+        info.setPeer(peer);
+        info.setBlockNumber(parseBlockNumber(peering.getBlock()));
+        info.setBlockHash(parseBlockHash(peering.getBlock()));
+        info.setLatency(latency);
+        info.setTime(startTime);
+
+        // Share the head block with the peer selection
+        if (info.getBlockNumber() != null) {
+            peerService.getPeerStats(peer).setHeadBlockNumber(info.getBlockNumber());
+        }
+
+        NetworkPeers knownPeers = httpService.executeRequest(peer, URL_PEERS, NetworkPeers.class);
+        return new CrawlResult(info, knownPeers != null && knownPeers.peers != null ? knownPeers.peers : new NetworkPeers.Peer[0]);
+    }
+
     protected Peer toPeer(NetworkPeering.Endpoint source) {
         Peer target = new Peer();
         if (StringUtils.isNotBlank(source.ipv4)) {
@@ -116,16 +230,19 @@ public class NetworkRemoteServiceImpl extends BaseRemoteServiceImpl implements N
 
     protected Integer parseBlockNumber(NetworkPeers.Peer remotePeer) {
         ObjectUtils.checkNotNull(remotePeer);
+        return parseBlockNumber(remotePeer.block);
+    }
 
-        if (remotePeer.block == null) {
+    protected Integer parseBlockNumber(String blockUid) {
+        if (blockUid == null) {
             return null;
         }
-        int index = remotePeer.block.indexOf("-");
+        int index = blockUid.indexOf("-");
         if (index == -1) {
             return null;
         }
 
-        String str = remotePeer.block.substring(0, index);
+        String str = blockUid.substring(0, index);
         try {
             return Integer.parseInt(str);
         } catch(NumberFormatException e) {
@@ -135,16 +252,41 @@ public class NetworkRemoteServiceImpl extends BaseRemoteServiceImpl implements N
 
     protected String parseBlockHash(NetworkPeers.Peer remotePeer) {
         ObjectUtils.checkNotNull(remotePeer);
+        return parseBlockHash(remotePeer.block);
+    }
 
-        if (remotePeer.block == null) {
+    protected String parseBlockHash(String blockUid) {
+        if (blockUid == null) {
             return null;
         }
-        int index = remotePeer.block.indexOf("-");
+        int index = blockUid.indexOf("-");
         if (index == -1) {
             return null;
         }
 
-        String hash = remotePeer.block.substring(index+1);
+        String hash = blockUid.substring(index+1);
         return hash;
     }
+
+    protected static class CrawlTask {
+        private final Peer peer;
+        private final CrawlResult result;
+        private final Throwable error;
+
+        protected CrawlTask(Peer peer, CrawlResult result, Throwable error) {
+            this.peer = peer;
+            this.result = result;
+            this.error = error;
+        }
+    }
+
+    protected static class CrawlResult {
+        private final NetworkPeerInfo info;
+        private final NetworkPeers.Peer[] knownPeers;
+
+        protected CrawlResult(NetworkPeerInfo info, NetworkPeers.Peer[] knownPeers) {
+            this.info = info;
+            this.knownPeers = knownPeers;
+        }
+    }
 }
@@ -47,6 +47,7 @@ import org.slf4j.LoggerFactory;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 public class TransactionRemoteServiceImpl extends BaseRemoteServiceImpl implements TransactionRemoteService {
@@ -137,6 +138,14 @@ public class TransactionRemoteServiceImpl extends BaseRemoteServiceImpl implemen
 		return result;
 	}
 
+	public CompletableFuture<TxSource> getSourcesAsync(long currencyId, String pubKey) {
+		return executeAsync(() -> getSources(currencyId, pubKey));
+	}
+
+	public CompletableFuture<TxSource> getSourcesAsync(Peer peer, String pubKey) {
+		return executeAsync(() -> getSources(peer, pubKey));
+	}
+
     public long getCreditOrZero(long currencyId, String pubKey) {
         Long credit = getCredit(currencyId, pubKey);
 
@@ -33,6 +33,7 @@ import org.duniter.core.client.model.local.Wallet;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public interface WotRemoteService extends Service {
 
@@ -62,6 +63,10 @@ public interface WotRemoteService extends Service {
     
     WotCertification getCertifiersOf(long currencyId, String uid);
 
+    CompletableFuture<WotCertification> getCertifiedByAsync(long currencyId, String uid);
+
+    CompletableFuture<WotCertification> getCertifiersOfAsync(long currencyId, String uid);
+
     String getSignedIdentity(String currency, byte[] pubKey, byte[] secKey, String uid, String blockUid);
 
     void sendIdentity(long currencyId, byte[] pubKey, byte[] secKey, String uid, String blockUid);
@@ -44,6 +44,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.UnsupportedEncodingException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class WotRemoteServiceImpl extends BaseRemoteServiceImpl implements WotRemoteService {
 
@@ -281,6 +282,13 @@ public class WotRemoteServiceImpl extends BaseRemoteServiceImpl implements WotRe
         return result;
     }
 
+    public CompletableFuture<WotCertification> getCertifiedByAsync(long currencyId, String uid) {
+        return executeAsync(() -> getCertifiedBy(currencyId, uid));
+    }
+
+    public CompletableFuture<WotCertification> getCertifiersOfAsync(long currencyId, String uid) {
+        return executeAsync(() -> getCertifiersOf(currencyId, uid));
+    }
 
     public void sendIdentity(long currencyId, byte[] pubKey, byte[] secKey, String userId, String blockUid) {
         // http post /wot/add
@@ -445,6 +453,10 @@ public class WotRemoteServiceImpl extends BaseRemoteServiceImpl implements WotRe
 
     protected Collection<Certification> getCertificationsByPubkeyForMember(long currencyId, String pubkey, boolean onlyCertifiersOf) {
 
+        // Send remote requests in parallel
+        CompletableFuture<WotCertification> certifiersOfFuture = getCertifiersOfAsync(currencyId, pubkey);
+        CompletableFuture<WotCertification> certifiedByFuture = onlyCertifiersOf ? null : getCertifiedByAsync(currencyId, pubkey);
+
         BlockchainParameters bcParameter = bcService.getParameters(currencyId, true);
         BlockchainBlock currentBlock = bcService.getCurrentBlock(currencyId, true);
         long medianTime = currentBlock.getMedianTime();
@@ -454,7 +466,7 @@ public class WotRemoteServiceImpl extends BaseRemoteServiceImpl implements WotRe
         Collection<Certification> result = new TreeSet<Certification>(ModelUtils.newWotCertificationComparatorByUid());
 
         // Certifiers of
-        WotCertification certifiersOfList = getCertifiersOf(currencyId, pubkey);
+        WotCertification certifiersOfList = waitResult(certifiersOfFuture);
         boolean certifiersOfIsEmpty = (certifiersOfList == null
                 || certifiersOfList.getCertifications() == null);
         int validWrittenCertifiersCount = 0;
@@ -493,7 +505,7 @@ public class WotRemoteServiceImpl extends BaseRemoteServiceImpl implements WotRe
         if (!onlyCertifiersOf) {
 
             // Certified by
-            WotCertification certifiedByList = getCertifiedBy(currencyId, pubkey);
+            WotCertification certifiedByList = waitResult(certifiedByFuture);
             boolean certifiedByIsEmpty = (certifiedByList == null
                     || certifiedByList.getCertifications() == null);
 
@@ -71,7 +71,7 @@ public class CurrencyRegistryRemoteServiceImpl extends BaseRemoteServiceImpl imp
         super.afterPropertiesSet();
         config = Configuration.instance();
         peer = new Peer(config.getNodeElasticSearchHost(), config.getNodeElasticSearchPort());
-        gson = GsonUtils.newBuilder().create();
+        gson = GsonUtils.getGson();
     }
 
     @Override
@@ -0,0 +1,82 @@
+package org.duniter.core.client.service.local;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.core.beans.Service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Persistent cache of immutable blocks (raw JSON), stored in the cache directory.
+ * Only blocks deep enough below the known head (see option 'duniter4j.cache.block.minConfirmations') are stored.
+ */
+public interface BlockCacheService extends Service {
+
+    /**
+     * @return false if the cache has been disabled (see option 'duniter4j.cache.block.enable')
+     */
+    boolean isEnable();
+
+    /**
+     * Get a cached block
+     * @param currencyName
+     * @param number
+     * @return the block JSON, or null if not cached
+     */
+    byte[] getBlockAsJson(String currencyName, int number);
+
+    /**
+     * Get a cached block, without copy (when not compressed)
+     * @param currencyName
+     * @param number
+     * @return the block JSON, as a read-only buffer, or null if not cached
+     */
+    ByteBuffer getBlockAsBuffer(String currencyName, int number);
+
+    /**
+     * Add a block into the cache, if immutable (enough confirmations). The known head is updated.
+     * @param currencyName
+     * @param number
+     * @param json
+     * @return true if the block has been stored
+     */
+    boolean putBlockAsJson(String currencyName, int number, byte[] json);
+
+    /**
+     * Update the known head block (e.g. after getting the current block). Lower values are ignored.
+     * @param currencyName
+     * @param number
+     */
+    void setHeadBlockNumber(String currencyName, int number);
+
+    /**
+     * @return true if the block has enough confirmations to be cached, from the known head
+     */
+    boolean isImmutable(String currencyName, int number);
+
+    /**
+     * Remove all cached blocks of a currency (from memory and disk)
+     * @param currencyName
+     */
+    void clear(String currencyName);
+}
@@ -0,0 +1,149 @@
+package org.duniter.core.client.service.local;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.core.beans.InitializingBean;
+import org.duniter.core.client.config.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Store immutable blocks in the cache directory, in one BlockSegmentStore by currency.
+ */
+public class BlockCacheServiceImpl implements BlockCacheService, InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(BlockCacheServiceImpl.class);
+
+    private static final String BLOCK_DIRECTORY = "block";
+
+    private final Map<String, BlockSegmentStore> storesByCurrency = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> headsByCurrency = new ConcurrentHashMap<>();
+
+    private File directory;
+    private boolean enable;
+    private boolean compress;
+    private int minConfirmations;
+
+    public BlockCacheServiceImpl() {
+        super();
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Configuration config = Configuration.instance();
+        directory = new File(config.getCacheDirectory(), BLOCK_DIRECTORY);
+        enable = config.isBlockCacheEnable();
+        compress = config.isBlockCacheCompress();
+        minConfirmations = Math.max(0, config.getBlockCacheMinConfirmations());
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (BlockSegmentStore store: storesByCurrency.values()) {
+            store.close();
+        }
+        storesByCurrency.clear();
+        headsByCurrency.clear();
+    }
+
+    @Override
+    public boolean isEnable() {
+        return enable;
+    }
+
+    @Override
+    public byte[] getBlockAsJson(String currencyName, int number) {
+        if (!enable || currencyName == null) {
+            return null;
+        }
+        return getStore(currencyName).get(number);
+    }
+
+    @Override
+    public ByteBuffer getBlockAsBuffer(String currencyName, int number) {
+        if (!enable || currencyName == null) {
+            return null;
+        }
+        return getStore(currencyName).getAsBuffer(number);
+    }
+
+    @Override
+    public boolean putBlockAsJson(String currencyName, int number, byte[] json) {
+        if (!enable || currencyName == null || json == null) {
+            return false;
+        }
+        setHeadBlockNumber(currencyName, number);
+        if (!isImmutable(currencyName, number)) {
+            return false;
+        }
+        return getStore(currencyName).append(number, json);
+    }
+
+    @Override
+    public void setHeadBlockNumber(String currencyName, int number) {
+        if (currencyName == null) {
+            return;
+        }
+        headsByCurrency.computeIfAbsent(currencyName, name -> new AtomicInteger(-1))
+                .accumulateAndGet(number, Math::max);
+    }
+
+    @Override
+    public boolean isImmutable(String currencyName, int number) {
+        AtomicInteger head = headsByCurrency.get(currencyName);
+        return head != null && number >= 0 && number <= head.get() - minConfirmations;
+    }
+
+    @Override
+    public void clear(String currencyName) {
+        BlockSegmentStore store = storesByCurrency.remove(currencyName);
+        if (store == null) {
+            store = new BlockSegmentStore(getDirectory(currencyName), compress);
+        }
+        store.delete();
+    }
+
+    /* -- internal methods -- */
+
+    private BlockSegmentStore getStore(String currencyName) {
+        return storesByCurrency.computeIfAbsent(currencyName, name -> {
+            BlockSegmentStore store = new BlockSegmentStore(getDirectory(name), compress);
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("[%s] Block cache opened: %s blocks", name, store.size()));
+            }
+            return store;
+        });
+    }
+
+    private File getDirectory(String currencyName) {
+        // Avoid path separators in the currency name
+        return new File(directory, currencyName.replaceAll("[^a-zA-Z0-9_.-]", "_"));
+    }
+}
@@ -0,0 +1,488 @@
+package org.duniter.core.client.service.local;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.core.exception.TechnicalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only store of blocks (raw JSON, optionally compressed), by block number.
+ * <p>Blocks are written in segment files (<code>blocks-NNNNN.seg</code>), as records: number (int), data length (int),
+ * flags (byte), CRC32 of data (int), then data. Segments are memory-mapped for reads: uncompressed blocks are read without copy.
+ * The mapping of the last segment grows geometrically; its unmapped tail is read from the file.
+ * The offset index (block number to segment and position) is kept in memory, and rebuilt when opening the store.
+ * An incomplete or corrupted record (e.g. after a crash) is truncated, with all next records of its segment.</p>
+ * Stored blocks are never updated. Thread-safe.
+ */
+public class BlockSegmentStore implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(BlockSegmentStore.class);
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024; // 64 MB
+
+    private static final String SEGMENT_PREFIX = "blocks-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int HEADER_SIZE = 13;
+    private static final long MIN_MAPPED_SIZE = 1024 * 1024; // 1 MB
+    private static final byte FLAG_DEFLATE = 1;
+    private static final int POSITION_BITS = 40;
+    private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+
+    private final File directory;
+    private final long segmentSize;
+    private final boolean compress;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Segment> segments = new ArrayList<>();
+    // Record location by block number: segment index (high bits) and position (low bits), or -1
+    private long[] offsets = new long[0];
+    private int count;
+
+    public BlockSegmentStore(File directory, boolean compress) {
+        this(directory, DEFAULT_SEGMENT_SIZE, compress);
+    }
+
+    public BlockSegmentStore(File directory, long segmentSize, boolean compress) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.compress = compress;
+        open();
+    }
+
+    /**
+     * Add a block. Ignored if a block with the same number already exists.
+     * @return false if the block already exists
+     */
+    public boolean append(int number, byte[] json) {
+        if (number < 0 || json == null) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            if (getOffset(number) != -1) {
+                return false;
+            }
+            byte flags = 0;
+            byte[] data = json;
+            if (compress) {
+                data = deflate(json);
+                flags = FLAG_DEFLATE;
+            }
+
+            int recordSize = HEADER_SIZE + data.length;
+            Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (segment == null || (segment.size > 0 && segment.size + recordSize > segmentSize)) {
+                if (segment != null) segment.seal();
+                segment = createSegment(segments.size());
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(recordSize);
+            record.putInt(number).putInt(data.length).put(flags).putInt(crc32(ByteBuffer.wrap(data))).put(data);
+            record.flip();
+            long position = segment.size;
+            while (record.hasRemaining()) {
+                segment.channel.write(record, position + record.position());
+            }
+            segment.size += recordSize;
+            setOffset(number, ((long) (segments.size() - 1) << POSITION_BITS) | position);
+            count++;
+            return true;
+        }
+        catch (IOException e) {
+            throw new TechnicalException(String.format("Unable to write block #%s into [%s]", number, directory.getAbsolutePath()), e);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(int number) {
+        lock.readLock().lock();
+        try {
+            return getOffset(number) != -1;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get a block, as a read-only buffer. Uncompressed blocks are not copied (view on the mapped segment).
+     * @return the block JSON, or null if not stored
+     */
+    public ByteBuffer getAsBuffer(int number) {
+        long offset;
+        lock.readLock().lock();
+        try {
+            offset = getOffset(number);
+            if (offset == -1) {
+                return null;
+            }
+            Segment segment = segments.get((int) (offset >>> POSITION_BITS));
+            long position = offset & POSITION_MASK;
+
+            ByteBuffer header = segment.read(position, HEADER_SIZE);
+            int length = header.getInt(4);
+            byte flags = header.get(8);
+            int crc = header.getInt(9);
+            ByteBuffer data = segment.read(position + HEADER_SIZE, length);
+
+            if (crc32(data.duplicate()) == crc) {
+                if ((flags & FLAG_DEFLATE) != 0) {
+                    return ByteBuffer.wrap(inflate(data)).asReadOnlyBuffer();
+                }
+                return data;
+            }
+        }
+        catch (IOException e) {
+            throw new TechnicalException(String.format("Unable to read block #%s from [%s]", number, directory.getAbsolutePath()), e);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+
+        // Corrupted record: never serve it
+        truncate(offset);
+        return null;
+    }
+
+    /**
+     * @return the block JSON, or null if not stored
+     */
+    public byte[] get(int number) {
+        ByteBuffer buffer = getAsBuffer(number);
+        if (buffer == null) {
+            return null;
+        }
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return result;
+    }
+
+    /**
+     * @return the count of stored blocks
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment: segments) {
+                segment.close();
+            }
+            segments.clear();
+            offsets = new long[0];
+            count = 0;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Close the store, then delete all segment files
+     */
+    public void delete() {
+        lock.writeLock().lock();
+        try {
+            close();
+            File[] files = listSegmentFiles();
+            for (File file: files) {
+                if (!file.delete()) {
+                    log.warn(String.format("Unable to delete block cache file [%s]", file.getAbsolutePath()));
+                }
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* -- internal methods -- */
+
+    private void open() {
+        File[] files = listSegmentFiles();
+        Arrays.sort(files);
+        try {
+            for (File file: files) {
+                Segment segment = new Segment(file);
+                if (!segments.isEmpty()) segments.get(segments.size() - 1).seal();
+                segments.add(segment);
+                scan(segment, segments.size() - 1);
+            }
+        }
+        catch (IOException e) {
+            close();
+            throw new TechnicalException(String.format("Unable to open block cache [%s]", directory.getAbsolutePath()), e);
+        }
+    }
+
+    /**
+     * Read all records of a segment, to fill the offset index. Truncate from the first incomplete or corrupted record.
+     */
+    private void scan(Segment segment, int segmentIndex) throws IOException {
+        long fileSize = segment.channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (position + HEADER_SIZE <= fileSize) {
+            readFully(segment.channel, header, position);
+            int number = header.getInt(0);
+            int length = header.getInt(4);
+            if (number < 0 || length < 0 || position + HEADER_SIZE + length > fileSize) {
+                break;
+            }
+            ByteBuffer data = ByteBuffer.allocate(length);
+            readFully(segment.channel, data, position + HEADER_SIZE);
+            if (crc32(data) != header.getInt(9)) {
+                break;
+            }
+            if (getOffset(number) == -1) {
+                count++;
+            }
+            setOffset(number, ((long) segmentIndex << POSITION_BITS) | position);
+            position += HEADER_SIZE + length;
+        }
+        if (position < fileSize) {
+            log.warn(String.format("Truncating incomplete block cache file [%s] at %s bytes", segment.file.getAbsolutePath(), position));
+            segment.channel.truncate(position);
+        }
+        segment.size = position;
+    }
+
+    /**
+     * Remove a corrupted record, and all next records of the same segment
+     * @param offset the record location
+     */
+    private void truncate(long offset) {
+        lock.writeLock().lock();
+        try {
+            int segmentIndex = (int) (offset >>> POSITION_BITS);
+            long position = offset & POSITION_MASK;
+            if (segmentIndex >= segments.size()) {
+                return;
+            }
+            Segment segment = segments.get(segmentIndex);
+            if (segment.size <= position) {
+                return; // already truncated
+            }
+            log.warn(String.format("Corrupted record in block cache file [%s]: truncating at %s bytes", segment.file.getAbsolutePath(), position));
+            for (int number = 0; number < offsets.length; number++) {
+                long recordOffset = offsets[number];
+                if (recordOffset != -1 && (int) (recordOffset >>> POSITION_BITS) == segmentIndex && (recordOffset & POSITION_MASK) >= position) {
+                    offsets[number] = -1;
+                    count--;
+                }
+            }
+            segment.truncate(position);
+        }
+        catch (IOException e) {
+            throw new TechnicalException(String.format("Unable to truncate block cache [%s]", directory.getAbsolutePath()), e);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Segment createSegment(int segmentIndex) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException(String.format("Unable to create directory [%s]", directory.getAbsolutePath()));
+        }
+        Segment segment = new Segment(new File(directory, String.format("%s%05d%s", SEGMENT_PREFIX, segmentIndex, SEGMENT_SUFFIX)));
+        segments.add(segment);
+        return segment;
+    }
+
+    private File[] listSegmentFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        return files != null ? files : new File[0];
+    }
+
+    private long getOffset(int number) {
+        return number >= 0 && number < offsets.length ? offsets[number] : -1;
+    }
+
+    private void setOffset(int number, long offset) {
+        if (number >= offsets.length) {
+            int oldLength = offsets.length;
+            offsets = Arrays.copyOf(offsets, Math.max(number + 1, Math.max(1024, oldLength * 2)));
+            Arrays.fill(offsets, oldLength, offsets.length, -1);
+        }
+        offsets[number] = offset;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static int crc32(ByteBuffer data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(ByteBuffer data) throws IOException {
+        byte[] input = new byte[data.remaining()];
+        data.get(input);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed block");
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Invalid compressed block", e);
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    private static class Segment {
+        final File file;
+        final FileChannel channel;
+        volatile long size;
+        // No more appends: the segment can be mapped once, with its final size
+        private volatile boolean sealed;
+        private MappedByteBuffer mapped;
+
+        Segment(File file) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        /**
+         * Read a part of the segment, as a read-only buffer. Uses the mapping when possible (no copy).
+         * The mapping is only extended when the segment is sealed, or when its size has doubled since the last mapping:
+         * otherwise the part is read from the file.
+         */
+        synchronized ByteBuffer read(long position, int length) throws IOException {
+            long end = position + length;
+            if (end > size) {
+                throw new IOException(String.format("Invalid record position %s in [%s]", position, file.getAbsolutePath()));
+            }
+            long mappedSize = mapped == null ? 0 : mapped.capacity();
+            if (end > mappedSize && (sealed ? size > mappedSize : size >= Math.max(MIN_MAPPED_SIZE, mappedSize * 2))) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                mappedSize = size;
+            }
+            if (end <= mappedSize) {
+                ByteBuffer buffer = mapped.duplicate();
+                buffer.position((int) position).limit((int) end);
+                return buffer.slice();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            readFully(channel, buffer, position);
+            return buffer.asReadOnlyBuffer();
+        }
+
+        /**
+         * Mark the segment as complete, and flush it to the disk
+         */
+        void seal() throws IOException {
+            if (!sealed) {
+                sealed = true;
+                channel.force(false);
+            }
+        }
+
+        synchronized void truncate(long position) throws IOException {
+            // Invalidate the mapping: it would contains removed records
+            mapped = null;
+            channel.truncate(position);
+            channel.force(false);
+            size = position;
+        }
+
+        void close() {
+            synchronized (this) {
+                mapped = null;
+            }
+            try {
+                if (channel.isOpen()) channel.force(false);
+                channel.close();
+            }
+            catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
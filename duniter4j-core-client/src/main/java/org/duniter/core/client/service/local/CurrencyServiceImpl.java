@@ -30,7 +30,7 @@ import org.duniter.core.client.service.bma.BlockchainRemoteService;
 import org.duniter.core.util.ObjectUtils;
 import org.duniter.core.util.StringUtils;
 import org.duniter.core.util.cache.Cache;
-import org.duniter.core.util.cache.SimpleCache;
+import org.duniter.core.util.cache.ConcurrentCache;
 
 import java.io.IOException;
 import java.util.List;
@@ -45,11 +45,13 @@ public class CurrencyServiceImpl implements CurrencyService, InitializingBean {
 
 
     private static final long UD_CACHE_TIME_MILLIS = 5 * 60 * 1000; // = 5 min
+    private static final long UD_REFRESH_TIME_MILLIS = 4 * 60 * 1000; // = 4 min (refresh in background)
 
     private Cache<Long, Currency> mCurrencyCache;
     private Cache<Long, Long> mUDCache;
 
     private BlockchainRemoteService blockchainRemoteService;
+    private UDHistoryService udHistoryService;
     private CurrencyDao currencyDao;
 
     public CurrencyServiceImpl() {
@@ -59,6 +61,7 @@ public class CurrencyServiceImpl implements CurrencyService, InitializingBean {
     @Override
     public void afterPropertiesSet() throws Exception {
         blockchainRemoteService = ServiceLocator.instance().getBlockchainRemoteService();
+        udHistoryService = ServiceLocator.instance().getUDHistoryService();
         currencyDao = ServiceLocator.instance().getBean(CurrencyDao.class);
 
         // Load cache from account
@@ -72,6 +75,7 @@ public class CurrencyServiceImpl implements CurrencyService, InitializingBean {
     public void close() throws IOException {
         currencyDao = null;
         blockchainRemoteService = null;
+        udHistoryService = null;
     }
 
     public Currency save(final Currency currency) {
@@ -175,7 +179,7 @@ public class CurrencyServiceImpl implements CurrencyService, InitializingBean {
             List<Currency> currencies = getCurrencies(accountId);
             if (mCurrencyCache == null) {
 
-                mCurrencyCache = new SimpleCache<Long, Currency>() {
+                mCurrencyCache = new ConcurrentCache<Long, Currency>() {
                     @Override
                     public Currency load(Long currencyId) {
                         return currencyDao.getById(currencyId);
@@ -191,7 +195,7 @@ public class CurrencyServiceImpl implements CurrencyService, InitializingBean {
             // Create the UD cache
             if (mUDCache == null) {
 
-                mUDCache = new SimpleCache<Long, Long>(UD_CACHE_TIME_MILLIS) {
+                mUDCache = new ConcurrentCache<Long, Long>(UD_CACHE_TIME_MILLIS, ConcurrentCache.UNLIMITED_WEIGHT, UD_REFRESH_TIME_MILLIS) {
                     @Override
                     public Long load(final Long currencyId) {
                         // Retrieve the last UD from the blockchain
@@ -226,8 +230,8 @@ public class CurrencyServiceImpl implements CurrencyService, InitializingBean {
      */
     public Map<Integer, Long> refreshAndGetUD(long currencyId, long lastSyncBlockNumber) {
 
-        // Retrieve new UDs from blockchain
-        Map<Integer, Long> newUDs = blockchainRemoteService.getUDs(currencyId, lastSyncBlockNumber + 1);
+        // Retrieve new UDs (from the local UD history, refreshed from the blockchain)
+        Map<Integer, Long> newUDs = udHistoryService.getUDs(currencyId, lastSyncBlockNumber + 1);
 
         // If any, insert new into DB
         if (newUDs != null && newUDs.size() > 0) {
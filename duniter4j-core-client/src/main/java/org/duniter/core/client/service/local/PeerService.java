@@ -24,6 +24,7 @@ package org.duniter.core.client.service.local;
 
 import org.duniter.core.beans.Service;
 import org.duniter.core.client.model.local.Peer;
+import org.duniter.core.client.model.local.PeerStats;
 
 import java.util.List;
 
@@ -37,12 +38,28 @@ public interface PeerService extends Service {
     Peer getPeerById(long peerId);
 
     /**
-     * Return a (cached) active peer, by currency id
+     * Return an active peer, by currency id. When many peers are known, the less loaded healthy peer is selected
+     * (see getPeerStats())
      * @param currencyId
      * @return
      */
     Peer getActivePeerByCurrencyId(long currencyId);
 
+    /**
+     * Return another healthy peer, by currency id (e.g. to hedge or retry a request)
+     * @param currencyId
+     * @param excludedPeer the peer to exclude
+     * @return a peer, or null if no other healthy peer
+     */
+    Peer getActivePeerByCurrencyId(long currencyId, Peer excludedPeer);
+
+    /**
+     * Return the health statistics of a peer (created if not exists)
+     * @param peer
+     * @return
+     */
+    PeerStats getPeerStats(Peer peer);
+
     /**
      * Return a (cached) peer list, by currency id
      * @param currencyId
@@ -23,31 +23,52 @@ package org.duniter.core.client.service.local;
  */
 
 import org.duniter.core.beans.InitializingBean;
+import org.duniter.core.client.config.Configuration;
 import org.duniter.core.client.dao.PeerDao;
+import org.duniter.core.client.model.bma.BlockchainBlock;
 import org.duniter.core.client.model.local.Currency;
 import org.duniter.core.client.model.local.Peer;
+import org.duniter.core.client.model.local.PeerStats;
+import org.duniter.core.client.service.HttpService;
 import org.duniter.core.client.service.ServiceLocator;
 import org.duniter.core.exception.TechnicalException;
 import org.duniter.core.util.CollectionUtils;
 import org.duniter.core.util.ObjectUtils;
 import org.duniter.core.util.StringUtils;
 import org.duniter.core.util.cache.Cache;
-import org.duniter.core.util.cache.SimpleCache;
+import org.duniter.core.util.cache.ConcurrentCache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by eis on 07/02/15.
  */
 public class PeerServiceImpl implements PeerService, InitializingBean {
 
+    private static final Logger log = LoggerFactory.getLogger(PeerServiceImpl.class);
+
+    private static final String URL_BLOCK_CURRENT = "/blockchain/current";
+
     private Cache<Long, List<Peer>> peersByCurrencyIdCache;
-    private Cache<Long, Peer> activePeerByCurrencyIdCache;
+    private final Map<String, PeerStats> statsByUrl = new ConcurrentHashMap<>();
+    private ScheduledExecutorService healthProber;
 
     private CurrencyService currencyService;
     private PeerDao peerDao;
+    private Configuration config;
 
     public PeerServiceImpl() {
         super();
@@ -57,14 +78,19 @@ public class PeerServiceImpl implements PeerService, InitializingBean {
     public void afterPropertiesSet() throws Exception {
         currencyService = ServiceLocator.instance().getCurrencyService();
         peerDao = ServiceLocator.instance().getBean(PeerDao.class);
+        config = Configuration.instance();
     }
 
     @Override
     public void close() throws IOException {
+        if (healthProber != null) {
+            healthProber.shutdownNow();
+            healthProber = null;
+        }
         currencyService = null;
         peerDao = null;
         peersByCurrencyIdCache = null;
-        activePeerByCurrencyIdCache = null;
+        statsByUrl.clear();
     }
 
     public Peer save(final Peer peer) {
@@ -85,16 +111,16 @@ public class PeerServiceImpl implements PeerService, InitializingBean {
             result = peer;
         }
 
-        // update cache (if already loaded)
+        // update cache (if already loaded). Cached lists are copy-on-write: they can be iterated while updated
         if (peersByCurrencyIdCache != null) {
-            List<Peer> peers = peersByCurrencyIdCache.get(peer.getCurrencyId());
-            if (peers == null) {
-                peers = new ArrayList<Peer>();
-                peersByCurrencyIdCache.put(peer.getCurrencyId(), peers);
-                peers.add(peer);
-            }
-            else if (!peers.contains(peer)) {
-                peers.add(peer);
+            synchronized (peersByCurrencyIdCache) {
+                List<Peer> peers = peersByCurrencyIdCache.get(peer.getCurrencyId());
+                if (peers == null) {
+                    peersByCurrencyIdCache.put(peer.getCurrencyId(), new CopyOnWriteArrayList<>(Collections.singletonList(peer)));
+                }
+                else if (!peers.contains(peer)) {
+                    peers.add(peer);
+                }
             }
         }
 
@@ -107,33 +133,57 @@ public class PeerServiceImpl implements PeerService, InitializingBean {
     }
 
     /**
-     * Return a (cached) active peer, by currency id
+     * Return an active peer, by currency id.
+     * Choose the best of two random healthy peers (power of two choices), to spread the load
+     * without always hitting the fastest peer. If no healthy peer, return the peer that will be re-admitted first.
      * @param currencyId
      * @return
      */
     public Peer getActivePeerByCurrencyId(long currencyId) {
-        // Check if cache as been loaded
-        if (activePeerByCurrencyIdCache == null) {
+        List<Peer> peers = getPeersCache().get(currencyId);
+        if (CollectionUtils.isEmpty(peers)) {
+            String currencyName = currencyService.getCurrencyNameById(currencyId);
+            throw new TechnicalException(String.format(
+                    "No peers configure for currency [%s]",
+                    currencyName != null ? currencyName : currencyId));
+        }
+        if (peers.size() == 1) {
+            return peers.get(0);
+        }
 
-            activePeerByCurrencyIdCache = new SimpleCache<Long, Peer>() {
-                @Override
-                public Peer load(Long currencyId) {
-                    List<Peer> peers = peerDao.getPeersByCurrencyId(currencyId);
-                    if (CollectionUtils.isEmpty(peers)) {
-                        String currencyName = currencyService.getCurrencyNameById(currencyId);
-                        throw new TechnicalException(String.format(
-                                "No peers configure for currency [%s]",
-                                currencyName != null ? currencyName : currencyId));
-                    }
-
-                    return peers.get(0);
-                }
-            };
+        startHealthProber();
+
+        Peer result = selectHealthyPeer(peers, null);
+        if (result != null) {
+            return result;
+        }
+
+        // No healthy peer: fallback to the peer that will be re-admitted first
+        Peer leastEjectedPeer = peers.get(0);
+        for (Peer peer: peers) {
+            if (getPeerStats(peer).getEjectedUntil() < getPeerStats(leastEjectedPeer).getEjectedUntil()) {
+                leastEjectedPeer = peer;
+            }
+        }
+        return leastEjectedPeer;
+    }
+
+    public Peer getActivePeerByCurrencyId(long currencyId, Peer excludedPeer) {
+        List<Peer> peers = getPeersCache().get(currencyId);
+        if (CollectionUtils.isEmpty(peers) || peers.size() == 1) {
+            return null;
         }
+        return selectHealthyPeer(peers, excludedPeer);
+    }
 
-        return activePeerByCurrencyIdCache.get(currencyId);
+    public PeerStats getPeerStats(Peer peer) {
+        ObjectUtils.checkNotNull(peer);
+        return statsByUrl.computeIfAbsent(peer.getUrl(),
+                url -> new PeerStats(url, config.getNetworkPeerMaxFailures(), config.getNetworkPeerEjectionTime()));
     }
 
+    /**
+     * Return a (cached) peer list, by currency id
     /**
      * Return a (cached) peer list, by currency id
      * @param currencyId
@@ -157,12 +207,7 @@ public class PeerServiceImpl implements PeerService, InitializingBean {
             return;
         }
 
-        peersByCurrencyIdCache = new SimpleCache<Long, List<Peer>>() {
-            @Override
-            public List<Peer> load(Long currencyId) {
-                return peerDao.getPeersByCurrencyId(currencyId);
-            }
-        };
+        getPeersCache();
 
         List<Currency> currencies = ServiceLocator.instance().getCurrencyService().getCurrencies(accountId);
 
@@ -177,4 +222,106 @@ public class PeerServiceImpl implements PeerService, InitializingBean {
         }
     }
 
+    /* -- internal methods -- */
+
+    private synchronized Cache<Long, List<Peer>> getPeersCache() {
+        if (peersByCurrencyIdCache == null) {
+            peersByCurrencyIdCache = new ConcurrentCache<Long, List<Peer>>() {
+                @Override
+                public List<Peer> load(Long currencyId) {
+                    List<Peer> peers = peerDao.getPeersByCurrencyId(currencyId);
+                    return peers != null ? new CopyOnWriteArrayList<>(peers) : null;
+                }
+            };
+        }
+        return peersByCurrencyIdCache;
+    }
+
+    /**
+     * Choose the best of two random healthy peers (not ejected, and not lagging behind the network)
+     * @return a peer, or null if no healthy peer
+     */
+    private Peer selectHealthyPeer(List<Peer> peers, Peer excludedPeer) {
+        long now = System.currentTimeMillis();
+        int networkHead = getNetworkHeadBlockNumber(peers);
+        int maxBlockLag = config.getNetworkPeerMaxBlockLag();
+        String excludedUrl = excludedPeer != null ? excludedPeer.getUrl() : null;
+        List<Peer> candidates = new ArrayList<>(peers.size());
+        for (Peer peer: peers) {
+            PeerStats stats = getPeerStats(peer);
+            if (stats.isAvailable(now)
+                    && !stats.getUrl().equals(excludedUrl)
+                    && (stats.getHeadBlockNumber() == -1 || networkHead - stats.getHeadBlockNumber() <= maxBlockLag)) {
+                candidates.add(peer);
+            }
+        }
+
+        if (candidates.size() <= 1) {
+            return candidates.isEmpty() ? null : candidates.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        Peer peer1 = candidates.get(first);
+        Peer peer2 = candidates.get(second);
+        return getPeerStats(peer1).getScore() <= getPeerStats(peer2).getScore() ? peer1 : peer2;
+    }
+
+    private int getNetworkHeadBlockNumber(List<Peer> peers) {
+        int result = -1;
+        for (Peer peer: peers) {
+            result = Math.max(result, getPeerStats(peer).getHeadBlockNumber());
+        }
+        return result;
+    }
+
+    private synchronized void startHealthProber() {
+        if (healthProber != null) {
+            return;
+        }
+        long interval = config.getNetworkPeerProbeInterval();
+        if (interval <= 0) {
+            return;
+        }
+        healthProber = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "peer-health-prober");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthProber.scheduleWithFixedDelay(this::probePeers, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Probe all known peers (including ejected ones, so that they can be re-admitted).
+     * Latency and errors are recorded by the HTTP service; only the head block is stored here.
+     */
+    private void probePeers() {
+        Cache<Long, List<Peer>> peersCache = peersByCurrencyIdCache;
+        if (peersCache == null) {
+            return;
+        }
+        HttpService httpService = ServiceLocator.instance().getHttpService();
+        for (Map.Entry<Long, List<Peer>> entry: peersCache.entrySet()) {
+            List<Peer> peers = entry.getValue();
+            if (peers == null || peers.size() <= 1) {
+                continue;
+            }
+            for (Peer peer: peers) {
+                httpService.executeRequestAsync(peer, URL_BLOCK_CURRENT, BlockchainBlock.class)
+                    .whenComplete((block, error) -> {
+                        PeerStats stats = getPeerStats(peer);
+                        if (block != null && block.getNumber() != null) {
+                            stats.setHeadBlockNumber(block.getNumber());
+                        }
+                        else if (log.isDebugEnabled()) {
+                            log.debug(String.format("Peer probe failed: %s", stats));
+                        }
+                    });
+            }
+        }
+    }
 }
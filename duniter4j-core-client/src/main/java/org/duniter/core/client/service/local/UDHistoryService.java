@@ -0,0 +1,55 @@
+package org.duniter.core.client.service.local;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.core.beans.Service;
+import org.duniter.core.client.model.local.UDHistory;
+
+import java.util.Map;
+
+/**
+ * Universal dividends history, stored locally and refreshed incrementally from the network.
+ */
+public interface UDHistoryService extends Service {
+
+    /**
+     * Return the UD history of a currency, refreshed from the last known block with UD
+     * @param currencyId
+     * @return a copy of the history
+     */
+    UDHistory getUDHistory(long currencyId);
+
+    /**
+     * Same as BlockchainRemoteService.getUDs(), but using the local UD history
+     * @param currencyId
+     * @param startOffset
+     * @return UD, by block number
+     */
+    Map<Integer, Long> getUDs(long currencyId, long startOffset);
+
+    /**
+     * Remove the UD history of a currency (from memory and disk)
+     * @param currencyId
+     */
+    void clear(long currencyId);
+}
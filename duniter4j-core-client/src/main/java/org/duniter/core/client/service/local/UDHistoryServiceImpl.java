@@ -0,0 +1,209 @@
+package org.duniter.core.client.service.local;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.core.beans.InitializingBean;
+import org.duniter.core.client.config.Configuration;
+import org.duniter.core.client.model.local.UDHistory;
+import org.duniter.core.client.service.ServiceLocator;
+import org.duniter.core.client.service.bma.BlockchainRemoteService;
+import org.duniter.core.exception.TechnicalException;
+import org.duniter.core.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keep UD history in memory, and persist it as a file (one by currency) in the cache directory.
+ * Files are named by currency name: currency ids are local, and could change after a restart.
+ */
+public class UDHistoryServiceImpl implements UDHistoryService, InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(UDHistoryServiceImpl.class);
+
+    private static final String UD_DIRECTORY = "ud";
+
+    private final Map<Long, UDHistory> historyByCurrencyId = new ConcurrentHashMap<>();
+    private final Map<Long, Object> locksByCurrencyId = new ConcurrentHashMap<>();
+
+    private BlockchainRemoteService blockchainRemoteService;
+    private CurrencyService currencyService;
+    private File directory;
+
+    public UDHistoryServiceImpl() {
+        super();
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        blockchainRemoteService = ServiceLocator.instance().getBlockchainRemoteService();
+        currencyService = ServiceLocator.instance().getCurrencyService();
+        directory = new File(Configuration.instance().getCacheDirectory(), UD_DIRECTORY);
+    }
+
+    @Override
+    public void close() throws IOException {
+        blockchainRemoteService = null;
+        currencyService = null;
+        historyByCurrencyId.clear();
+    }
+
+    @Override
+    public UDHistory getUDHistory(long currencyId) {
+        synchronized (getLock(currencyId)) {
+            UDHistory history = refresh(currencyId);
+            UDHistory result = new UDHistory(history.size());
+            for (int i = 0; i < history.size(); i++) {
+                result.put(history.getBlockNumber(i), history.getAmount(i));
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> getUDs(long currencyId, long startOffset) {
+        synchronized (getLock(currencyId)) {
+            UDHistory history = refresh(currencyId);
+
+            // No UD yet: only UD0 (same as BlockchainRemoteService.getUDs())
+            if (history.size() == 1) {
+                Map<Integer, Long> result = new LinkedHashMap<>();
+                result.put(history.getBlockNumber(0), history.getAmount(0));
+                return result;
+            }
+            return history.toMap(startOffset);
+        }
+    }
+
+    @Override
+    public void clear(long currencyId) {
+        synchronized (getLock(currencyId)) {
+            historyByCurrencyId.remove(currencyId);
+            File file = getFile(currencyId);
+            if (file != null && file.exists() && !file.delete()) {
+                log.warn(String.format("Unable to delete UD history file [%s]", file.getAbsolutePath()));
+            }
+        }
+    }
+
+    /* -- internal methods -- */
+
+    private Object getLock(long currencyId) {
+        return locksByCurrencyId.computeIfAbsent(currencyId, id -> new Object());
+    }
+
+    private UDHistory refresh(long currencyId) {
+        UDHistory history = historyByCurrencyId.get(currencyId);
+        if (history == null) {
+            history = load(currencyId);
+        }
+
+        int lastBlockNumber = history.getLastBlockNumber();
+        int[] blockNumbersWithUD = blockchainRemoteService.getBlocksWithUD(currencyId);
+        int[] newBlockNumbers = getBlockNumbersAfter(blockNumbersWithUD, lastBlockNumber);
+
+        boolean changed = history.isEmpty() || newBlockNumbers.length > 0;
+        if (history.isEmpty()) {
+            // Start with UD0, applicable from the first block
+            history.put(0, blockchainRemoteService.getParameters(currencyId, true/*with cache*/).getUd0());
+        }
+        if (newBlockNumbers.length > 0) {
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Getting %s new UD from block [%s]", newBlockNumbers.length, newBlockNumbers[0]));
+            }
+            long[] dividends = blockchainRemoteService.getBlockDividends(currencyId, newBlockNumbers);
+            for (int i = 0; i < newBlockNumbers.length; i++) {
+                history.put(newBlockNumbers[i], dividends[i]);
+            }
+        }
+
+        historyByCurrencyId.put(currencyId, history);
+        if (changed) {
+            save(currencyId, history);
+        }
+        return history;
+    }
+
+    private int[] getBlockNumbersAfter(int[] blockNumbers, int lastBlockNumber) {
+        if (blockNumbers == null || blockNumbers.length == 0) {
+            return new int[0];
+        }
+        int index = Arrays.binarySearch(blockNumbers, lastBlockNumber);
+        int from = index >= 0 ? index + 1 : -(index + 1);
+        return Arrays.copyOfRange(blockNumbers, from, blockNumbers.length);
+    }
+
+    /**
+     * @return the history file, or null if the currency name is unknown (history is then only kept in memory)
+     */
+    private File getFile(long currencyId) {
+        String currencyName = currencyService.getCurrencyNameById(currencyId);
+        if (StringUtils.isBlank(currencyName)) {
+            return null;
+        }
+        // Avoid path separators in the currency name
+        return new File(directory, currencyName.replaceAll("[^a-zA-Z0-9_.-]", "_") + ".dat");
+    }
+
+    private UDHistory load(long currencyId) {
+        File file = getFile(currencyId);
+        if (file == null || !file.exists()) {
+            return new UDHistory();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return UDHistory.readFrom(in);
+        }
+        catch (IOException e) {
+            // Corrupted or old file: will be fully reloaded from network
+            log.warn(String.format("Unable to read UD history file [%s]: %s", file.getAbsolutePath(), e.getMessage()));
+            return new UDHistory();
+        }
+    }
+
+    private void save(long currencyId, UDHistory history) {
+        File file = getFile(currencyId);
+        if (file == null) {
+            return;
+        }
+        File tempFile = new File(directory, file.getName() + ".tmp");
+        try {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException(String.format("Unable to create directory [%s]", directory.getAbsolutePath()));
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                history.writeTo(out);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            throw new TechnicalException(String.format("Unable to write UD history file [%s]", file.getAbsolutePath()), e);
+        }
+    }
+}
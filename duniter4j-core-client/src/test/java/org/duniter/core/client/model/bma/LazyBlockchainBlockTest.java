@@ -0,0 +1,65 @@
+package org.duniter.core.client.model.bma;
+
+/*
+ * #%L
+ * UCoin Java Client :: Core API
+ * %%
+ * Copyright (C) 2014 - 2015 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.core.client.model.bma.gson.GsonUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class LazyBlockchainBlockTest {
+
+    private static final String BLOCK = ("{'version':2,'number':1234,'medianTime':1469999000,'membersCount':59,'dividend':1000," +
+            "'currency':'meta_brouzouf','hash':'000007722B243094269E548F600BD34D73449F7578C05BD370A6D301D20B5F10'," +
+            "'identities':['PUB1:SIG1:0-E3B0:alice'],'joiners':['PUB1:SIG2:0-E3B0:12-000A:alice'],'certifications':['PUB1:PUB3:12:SIG4']," +
+            "'transactions':[{'signatures':['TXSIG'],'version':2,'issuers':['PUB1'],'inputs':['1000:0:D:PUB1:12']}]," +
+            "'signature':'BLOCKSIG'}").replace("'", "\"");
+
+    @Test
+    public void readHeaderThenBody() throws Exception {
+        LazyBlockchainBlock block = new LazyBlockchainBlock(BLOCK.getBytes(StandardCharsets.UTF_8));
+
+        // Header read, body not parsed
+        Assert.assertEquals(1234, block.getNumber().intValue());
+        Assert.assertEquals(59, block.getMembersCount().intValue());
+        Assert.assertEquals(1000, block.getDividend().intValue());
+        Assert.assertEquals("BLOCKSIG", block.getSignature());
+        Assert.assertFalse(block.isBodyLoaded());
+
+        // Body parsed on first access
+        Assert.assertEquals("alice", block.getIdentities()[0].getUserId());
+        Assert.assertTrue(block.isBodyLoaded());
+        Assert.assertEquals("12-000A", block.getJoiners()[0].getIBlockUid());
+        Assert.assertEquals("1000:0:D:PUB1:12", block.getTransactions()[0].getInputs()[0]);
+    }
+
+    @Test
+    public void toJson() throws Exception {
+        BlockchainBlock expected = GsonUtils.getGson().fromJson(BLOCK, BlockchainBlock.class);
+        LazyBlockchainBlock block = new LazyBlockchainBlock(BLOCK.getBytes(StandardCharsets.UTF_8));
+
+        // Same JSON as an eager block
+        Assert.assertEquals(GsonUtils.getGson().toJson(expected), GsonUtils.getGson().toJson(block));
+    }
+}
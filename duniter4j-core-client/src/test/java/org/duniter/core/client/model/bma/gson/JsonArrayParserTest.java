@@ -45,4 +45,17 @@ public class JsonArrayParserTest {
         result = parser.getValuesAsArray("[]");
         Assert.assertNull(result);
     }
+
+    @Test
+    public void getValuesWithBracesInStrings() {
+        String obj = "{'comment':'a } and a { and an escaped \\' quote }','tx':[{'a':1}]}".replace("'", "\"");
+        String string = String.format("[%s,%s]", obj, obj);
+
+        JsonArrayParser parser = new JsonArrayParser();
+        String[] result = parser.getValuesAsArray(string);
+
+        Assert.assertNotNull(result);
+        Assert.assertEquals(2, result.length);
+        Assert.assertEquals(obj, result[1]);
+    }
 }
@@ -0,0 +1,67 @@
+package org.duniter.core.client.model.bma.gson;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class JsonArrayStreamParserTest {
+
+    @Test
+    public void parse() throws Exception {
+        String obj = "{'id':'joe','foo':{'bar':{'v1':50019820,'b':true}},'comment':'a } and a { and an escaped \\' quote }','utf8':'éà'}".replace("'", "\"");
+        String string = String.format("[%s,\n%s,%s]", obj, obj, obj);
+
+        JsonArrayStreamParser parser = new JsonArrayStreamParser();
+        List<byte[]> result = parser.getValuesAsList(new ByteArrayInputStream(string.getBytes(StandardCharsets.UTF_8)));
+
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(obj, new String(result.get(0), StandardCharsets.UTF_8));
+        Assert.assertEquals(obj, new String(result.get(2), StandardCharsets.UTF_8));
+
+        // Empty array
+        int count = parser.parse(new ByteArrayInputStream("[]".getBytes(StandardCharsets.UTF_8)), block -> Assert.fail());
+        Assert.assertEquals(0, count);
+    }
+
+    @Test
+    public void parseLargeObject() throws Exception {
+        // Object larger than internal buffers
+        StringBuilder sb = new StringBuilder("{\"values\":[");
+        for (int i = 0; i < 10000; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"v\":\"").append(i).append("\"}");
+        }
+        String obj = sb.append("]}").toString();
+
+        JsonArrayStreamParser parser = new JsonArrayStreamParser();
+        List<byte[]> result = parser.getValuesAsList(new ByteArrayInputStream(("[" + obj + "]").getBytes(StandardCharsets.UTF_8)));
+
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals(obj, new String(result.get(0), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,96 @@
+package org.duniter.core.client.model.bma.gson;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class JsonBlockHeaderParserTest {
+
+    private static final String BLOCK = ("{'version':2,'nonce':1,'number':1234,'currency':'meta_brouzouf'," +
+            "'issuer':'HnFcSms8jzwngtVomTTnzudZx7SHUQY8sVE1y8yBmULk','comment':'a \\' quote, and a \"hash\":\"X\"'," +
+            "'transactions':[{'hash':'TXHASH','number':99,'inputs':[]}]," +
+            "'hash':'000007722B243094269E548F600BD34D73449F7578C05BD370A6D301D20B5F10'," +
+            "'previousHash':'00000A6F2B243094269E548F600BD34D73449F7578C05BD370A6D301D20B5F10'}").replace("'", "\"");
+
+    @Test
+    public void parse() throws Exception {
+        JsonBlockHeaderParser parser = new JsonBlockHeaderParser();
+        JsonBlockHeaderParser.Header header = new JsonBlockHeaderParser.Header();
+
+        Assert.assertTrue(parser.parse(BLOCK.getBytes(StandardCharsets.UTF_8), header));
+        Assert.assertEquals(1234, header.getNumber());
+        Assert.assertEquals("meta_brouzouf", header.getCurrency());
+        Assert.assertEquals("000007722B243094269E548F600BD34D73449F7578C05BD370A6D301D20B5F10", header.getHash());
+        Assert.assertEquals("00000A6F2B243094269E548F600BD34D73449F7578C05BD370A6D301D20B5F10", header.getPreviousHash());
+        Assert.assertTrue(header.isSameHash("000007722B243094269E548F600BD34D73449F7578C05BD370A6D301D20B5F10"));
+        Assert.assertFalse(header.isSamePreviousHash("000007722B243094269E548F600BD34D73449F7578C05BD370A6D301D20B5F10"));
+    }
+
+    @Test
+    public void parseFirstBlock() throws Exception {
+        // Block #0 has no previous hash
+        String json = "{ \"number\" : 0, \"currency\" : \"test_net\", \"hash\" : \"ABC\" }";
+
+        JsonBlockHeaderParser.Header header = new JsonBlockHeaderParser().parse(json.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(0, header.getNumber());
+        Assert.assertEquals("test_net", header.getCurrency());
+        Assert.assertEquals("ABC", header.getHash());
+        Assert.assertNull(header.getPreviousHash());
+        Assert.assertTrue(header.isSamePreviousHash(null));
+    }
+
+    @Test
+    @Ignore("benchmark")
+    public void benchmark() throws Exception {
+        byte[] bytes = BLOCK.getBytes(StandardCharsets.UTF_8);
+        JsonBlockHeaderParser parser = new JsonBlockHeaderParser();
+        JsonBlockHeaderParser.Header header = new JsonBlockHeaderParser.Header();
+        JsonAttributeParser numberParser = new JsonAttributeParser("number");
+        JsonAttributeParser hashParser = new JsonAttributeParser("hash");
+        int iterations = 200000;
+
+        for (int warmup = 0; warmup < 2; warmup++) {
+            long start = System.nanoTime();
+            long checksum = 0;
+            for (int i = 0; i < iterations; i++) {
+                String json = new String(bytes, StandardCharsets.UTF_8);
+                checksum += numberParser.getValueAsInt(json) + hashParser.getValueAsString(json).length();
+            }
+            long regexTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                parser.parse(bytes, header);
+                checksum += header.getNumber() + header.getHash().length();
+            }
+            long scanTime = System.nanoTime() - start;
+
+            System.out.println(String.format("regex: %d ns/op, scan: %d ns/op (checksum %d)",
+                    regexTime / iterations, scanTime / iterations, checksum));
+        }
+    }
+}
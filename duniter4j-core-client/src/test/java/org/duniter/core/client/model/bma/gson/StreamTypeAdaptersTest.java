@@ -0,0 +1,162 @@
+package org.duniter.core.client.model.bma.gson;
+
+/*
+ * #%L
+ * UCoin Java :: Core Client API
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.common.collect.Multimap;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.duniter.core.client.model.bma.*;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+public class StreamTypeAdaptersTest {
+
+    private static final String BLOCK = ("{'version':2,'nonce':10,'number':1234,'powMin':70,'time':1470000000,'medianTime':1469999000," +
+            "'membersCount':59,'monetaryMass':'12345678901234','unitBase':0,'currency':'meta_brouzouf'," +
+            "'issuer':'HnFcSms8jzwngtVomTTnzudZx7SHUQY8sVE1y8yBmULk','hash':'000007722B243094269E548F600BD34D73449F7578C05BD370A6D301D20B5F10'," +
+            "'parameters':'','previousHash':'00000A6F2B243094269E548F600BD34D73449F7578C05BD370A6D301D20B5F10'," +
+            "'previousIssuer':'HnFcSms8jzwngtVomTTnzudZx7SHUQY8sVE1y8yBmULk','inner_hash':'ABCDEF','dividend':null," +
+            "'identities':['PUB1:SIG1:0-E3B0C44298FC1C149AFBF4C8996FB92427AE41E4649B934CA495991B7852B855:alice']," +
+            "'joiners':['PUB1:SIG2:0-E3B0C44298FC1C149AFBF4C8996FB92427AE41E4649B934CA495991B7852B855:12-000A:alice','']," +
+            "'leavers':[],'actives':[],'revoked':['SIG3:bob:0:0'],'excluded':['PUB2'],'certifications':['PUB1:PUB3:12:SIG4']," +
+            "'transactions':[{'signatures':['TXSIG'],'version':2,'currency':'meta_brouzouf','issuers':['PUB1']," +
+            "'inputs':['1000:0:D:PUB1:12'],'unlocks':['0:SIG(0)'],'outputs':['1000:0:SIG(PUB3)'],'comment':'ignored'}]," +
+            "'signature':'BLOCKSIG','unknownField':{'a':[1,2]}}").replace("'", "\"");
+
+    private static final String WOT_LOOKUP = ("{'partial':false,'results':[{'pubkey':'PUB1','uids':[{'uid':'alice'," +
+            "'meta':{'timestamp':'0-E3B0','block_number':12},'self':'SELFSIG','revoked':false,'revocation_sig':null," +
+            "'others':[{'pubkey':'PUB2','meta':{'block_number':13},'signature':'SIG','uids':['bob'],'isMember':true,'wasMember':true}]}]," +
+            "'signed':[{'uid':'bob','pubkey':'PUB2','meta':{'timestamp':'1-AAAA'},'signature':'SIG2','isMember':true,'wasMember':false}]}]}")
+            .replace("'", "\"");
+
+    private static final String TX_HISTORY = ("{'currency':'meta_brouzouf','pubkey':'PUB1','history':{'sent':[{'version':2," +
+            "'issuers':['PUB1'],'inputs':['1000:0:D:PUB1:12'],'outputs':['1000:0:SIG(PUB3)'],'comment':'hello'," +
+            "'signatures':['SIG'],'hash':'TXHASH','block_number':12,'time':1470000000}],'received':[],'sending':[]}}")
+            .replace("'", "\"");
+
+    private static final String TX_SOURCE = ("{'currency':'meta_brouzouf','pubkey':'PUB1','sources':[{'type':'D'," +
+            "'noffset':12,'identifier':'PUB1','amount':1000,'base':0},{'type':'T','noffset':0,'identifier':'TXHASH','amount':'25'}]}")
+            .replace("'", "\"");
+
+    private static final String NETWORK_PEERS = ("{'peers':[{'version':'2','currency':'meta_brouzouf','status':'UP','block':'12-000A'," +
+            "'signature':'SIG','pubkey':'PUB1','endpoints':['BASIC_MERKLED_API metab.ucoin.io 88.174.120.187 9201']}]}")
+            .replace("'", "\"");
+
+    @Test
+    public void blockchainBlock() throws Exception {
+        assertSameAsReflection(BLOCK, BlockchainBlock.class);
+
+        BlockchainBlock block = GsonUtils.getGson().fromJson(BLOCK, BlockchainBlock.class);
+        Assert.assertEquals(1234, block.getNumber().intValue());
+        Assert.assertEquals("alice", block.getIdentities()[0].getUserId());
+        Assert.assertEquals("12-000A", block.getJoiners()[0].getIBlockUid());
+        Assert.assertNull(block.getJoiners()[1]);
+        Assert.assertEquals("bob", block.getRevoked()[0].getUserId());
+        Assert.assertEquals("0:SIG(0)", block.getTransactions()[0].getUnlocks()[0]);
+    }
+
+    @Test
+    public void wotLookup() throws Exception {
+        assertSameAsReflection(WOT_LOOKUP, WotLookup.class);
+    }
+
+    @Test
+    public void txHistory() throws Exception {
+        assertSameAsReflection(TX_HISTORY, TxHistory.class);
+    }
+
+    @Test
+    public void txSource() throws Exception {
+        assertSameAsReflection(TX_SOURCE, TxSource.class);
+    }
+
+    @Test
+    public void networkPeers() throws Exception {
+        assertSameAsReflection(NETWORK_PEERS, NetworkPeers.class);
+    }
+
+    @Test
+    @Ignore("benchmark")
+    public void benchmark() throws Exception {
+        Gson reflectionGson = newReflectionGson();
+        Gson streamingGson = GsonUtils.getGson();
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int iterations = 100000;
+
+        for (int warmup = 0; warmup < 3; warmup++) {
+            long checksum = 0;
+            long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                checksum += reflectionGson.fromJson(BLOCK, BlockchainBlock.class).getNumber();
+            }
+            long reflectionTime = System.nanoTime() - start;
+            long reflectionBytes = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+
+            startBytes = threadBean.getThreadAllocatedBytes(threadId);
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                checksum += streamingGson.fromJson(BLOCK, BlockchainBlock.class).getNumber();
+            }
+            long streamingTime = System.nanoTime() - start;
+            long streamingBytes = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+
+            System.out.println(String.format("reflection: %d ns/op, %d B/op - streaming: %d ns/op, %d B/op (checksum %d)",
+                    reflectionTime / iterations, reflectionBytes / iterations,
+                    streamingTime / iterations, streamingBytes / iterations,
+                    checksum));
+        }
+    }
+
+    /* -- internal methods -- */
+
+    private <T> void assertSameAsReflection(String json, Class<T> type) {
+        Gson reflectionGson = newReflectionGson();
+        Gson streamingGson = GsonUtils.getGson();
+
+        T expected = reflectionGson.fromJson(json, type);
+        T actual = streamingGson.fromJson(json, type);
+
+        // Same read, and same write
+        Assert.assertEquals(reflectionGson.toJson(expected), reflectionGson.toJson(actual));
+        Assert.assertEquals(reflectionGson.toJson(expected), streamingGson.toJson(actual));
+    }
+
+    /**
+     * Gson configuration, before the streaming adapters
+     */
+    private Gson newReflectionGson() {
+        return new GsonBuilder()
+                .setDateFormat(GsonUtils.DATE_PATTERN)
+                .registerTypeAdapter(Multimap.class, new MultimapTypeAdapter())
+                .registerTypeAdapter(BlockchainBlock.Identity.class, new IdentityTypeAdapter())
+                .registerTypeAdapter(BlockchainBlock.Joiner.class, new JoinerTypeAdapter())
+                .registerTypeAdapter(BlockchainBlock.Revoked.class, new RevokedTypeAdapter())
+                .registerTypeAdapter(NetworkPeering.Endpoint.class, new EndpointAdapter())
+                .create();
+    }
+}
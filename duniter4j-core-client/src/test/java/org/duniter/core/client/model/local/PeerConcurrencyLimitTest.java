@@ -0,0 +1,93 @@
+package org.duniter.core.client.model.local;
+
+/*
+ * #%L
+ * UCoin Java Client :: Core API
+ * %%
+ * Copyright (C) 2014 - 2015 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PeerConcurrencyLimitTest {
+
+    @Test
+    public void increaseUpToMax() throws InterruptedException {
+        PeerConcurrencyLimit limit = new PeerConcurrencyLimit("http://localhost:9201", 2, 10);
+        Assert.assertEquals(2, limit.getLimit());
+
+        for (int i = 0; i < 200; i++) {
+            int count = limit.getLimit();
+            for (int j = 0; j < count; j++) {
+                Assert.assertTrue(limit.acquire(0));
+            }
+            long now = System.currentTimeMillis();
+            for (int j = 0; j < count; j++) {
+                limit.onSuccess(now);
+            }
+        }
+        Assert.assertEquals(10, limit.getLimit());
+        Assert.assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    public void decreaseOnFailure() throws InterruptedException {
+        PeerConcurrencyLimit limit = new PeerConcurrencyLimit("http://localhost:9201", 8, 10);
+        long startTime = System.currentTimeMillis() - 1000;
+
+        Assert.assertTrue(limit.acquire(0));
+        Assert.assertTrue(limit.acquire(0));
+        limit.onFailure(System.currentTimeMillis());
+        Assert.assertEquals(4, limit.getLimit());
+
+        // Request started before the decrease: ignored
+        limit.onFailure(startTime);
+        Assert.assertEquals(4, limit.getLimit());
+        Assert.assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    public void decreaseOnLatency() throws InterruptedException {
+        PeerConcurrencyLimit limit = new PeerConcurrencyLimit("http://localhost:9201", 8, 10);
+
+        // Stable latency (~10ms), limit not used: no change
+        for (int i = 0; i < 10; i++) {
+            limit.acquire(0);
+            limit.onSuccess(System.currentTimeMillis() - 10);
+        }
+        Assert.assertEquals(8, limit.getLimit());
+
+        // Latency grows: the peer is overloaded
+        for (int i = 0; i < 10; i++) {
+            limit.acquire(0);
+            limit.onSuccess(System.currentTimeMillis() - 100);
+        }
+        Assert.assertTrue(limit.getLimit() < 8);
+    }
+
+    @Test
+    public void acquireTimeout() throws InterruptedException {
+        PeerConcurrencyLimit limit = new PeerConcurrencyLimit("http://localhost:9201", 1, 10);
+        Assert.assertTrue(limit.acquire(0));
+        Assert.assertFalse(limit.acquire(10));
+
+        limit.onSuccess(System.currentTimeMillis());
+        Assert.assertTrue(limit.acquire(0));
+    }
+}
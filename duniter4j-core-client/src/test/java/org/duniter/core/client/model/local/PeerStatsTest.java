@@ -0,0 +1,117 @@
+package org.duniter.core.client.model.local;
+
+/*
+ * #%L
+ * UCoin Java Client :: Core API
+ * %%
+ * Copyright (C) 2014 - 2015 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PeerStatsTest {
+
+    @Test
+    public void ejectAndReadmit() {
+        PeerStats stats = new PeerStats("http://localhost:9201", 2, 60000);
+        long now = System.currentTimeMillis();
+        Assert.assertTrue(stats.isAvailable(now));
+
+        stats.onFailure(stats.onRequestStart());
+        Assert.assertTrue(stats.isAvailable(now));
+
+        // Second consecutive failure: ejected
+        stats.onFailure(stats.onRequestStart());
+        Assert.assertFalse(stats.isAvailable(System.currentTimeMillis()));
+        Assert.assertTrue(stats.isAvailable(stats.getEjectedUntil()));
+        Assert.assertEquals(0, stats.getOutstandingRequests());
+
+        // Jittered ejection time, doubled on next ejection
+        long firstEjectionTime = stats.getEjectedUntil() - now;
+        Assert.assertTrue(firstEjectionTime >= 30000 - 1000 && firstEjectionTime <= 60000 + 1000);
+        stats.onFailure(stats.onRequestStart());
+        stats.onFailure(stats.onRequestStart());
+        long secondEjectionTime = stats.getEjectedUntil() - System.currentTimeMillis();
+        Assert.assertTrue(secondEjectionTime >= 60000 - 1000 && secondEjectionTime <= 120000 + 1000);
+
+        // A success (e.g. from a health probe) re-admits the peer
+        stats.onSuccess(stats.onRequestStart());
+        Assert.assertTrue(stats.isAvailable(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void halfOpen() {
+        PeerStats stats = new PeerStats("http://localhost:9201", 1, 0);
+        stats.onFailure(stats.onRequestStart());
+        long now = System.currentTimeMillis();
+
+        // Ejection time elapsed: only one trial request allowed
+        Assert.assertTrue(stats.isHalfOpen(now));
+        Assert.assertTrue(stats.isAvailable(now));
+        long trialStart = stats.onRequestStart();
+        Assert.assertFalse(stats.isAvailable(now));
+
+        // Trial failed: ejected again, without waiting for maxFailures
+        stats.onFailure(trialStart);
+        Assert.assertTrue(stats.isHalfOpen(System.currentTimeMillis()));
+        trialStart = stats.onRequestStart();
+
+        // Trial succeed: circuit closed
+        stats.onSuccess(trialStart);
+        Assert.assertFalse(stats.isHalfOpen(System.currentTimeMillis()));
+        Assert.assertTrue(stats.isAvailable(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void latencyPercentile() {
+        PeerStats stats = new PeerStats("http://localhost:9201", 3, 1000);
+        for (int i = 1; i < 10; i++) {
+            stats.onSuccess(stats.onRequestStart() - i * 10);
+        }
+        Assert.assertEquals(-1, stats.getLatencyPercentile(95));
+
+        for (int i = 10; i <= 200; i++) {
+            stats.onSuccess(stats.onRequestStart() - i * 10);
+        }
+        // Only the last 64 samples are kept (1370ms to 2000ms)
+        long p50 = stats.getLatencyPercentile(50);
+        Assert.assertTrue(p50 >= 1680 && p50 <= 1700 + 50);
+        Assert.assertTrue(stats.getLatencyPercentile(100) >= 2000);
+    }
+
+    @Test
+    public void score() {
+        PeerStats fast = new PeerStats("http://fast", 3, 1000);
+        PeerStats slow = new PeerStats("http://slow", 3, 1000);
+        fast.onSuccess(fast.onRequestStart() - 10);
+        slow.onSuccess(slow.onRequestStart() - 200);
+        Assert.assertTrue(fast.getScore() < slow.getScore());
+
+        // Outstanding requests increase the score
+        double idleScore = fast.getScore();
+        fast.onRequestStart();
+        Assert.assertEquals(2 * idleScore, fast.getScore(), 0.001);
+
+        // Errors too
+        double errorFreeScore = slow.getScore();
+        slow.onFailure(slow.onRequestStart() - 200);
+        Assert.assertTrue(slow.getErrorRate() > 0);
+        Assert.assertTrue(slow.getScore() > errorFreeScore);
+    }
+}
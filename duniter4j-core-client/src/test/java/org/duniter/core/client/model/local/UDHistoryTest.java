@@ -0,0 +1,86 @@
+package org.duniter.core.client.model.local;
+
+/*
+ * #%L
+ * UCoin Java Client :: Core API
+ * %%
+ * Copyright (C) 2014 - 2015 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Map;
+
+public class UDHistoryTest {
+
+    @Test
+    public void putAndGet() {
+        UDHistory history = new UDHistory(2);
+        history.put(0, 100);
+        history.put(20, 120);
+        history.put(10, 110); // insert
+        history.put(30, 130); // grow
+        history.put(20, 121); // replace
+
+        Assert.assertEquals(4, history.size());
+        Assert.assertEquals(30, history.getLastBlockNumber());
+        Assert.assertEquals(110L, history.get(10).longValue());
+        Assert.assertEquals(121L, history.get(20).longValue());
+        Assert.assertNull(history.get(15));
+
+        Assert.assertEquals(110L, history.getAt(15).longValue());
+        Assert.assertEquals(130L, history.getAt(1000).longValue());
+        Assert.assertEquals(100L, history.getAt(0).longValue());
+        Assert.assertNull(history.getAt(-1));
+    }
+
+    @Test
+    public void toMap() {
+        UDHistory history = new UDHistory();
+        history.put(0, 100);
+        history.put(10, 110);
+        history.put(20, 120);
+
+        Assert.assertArrayEquals(new Object[]{0, 10, 20}, history.toMap(0).keySet().toArray());
+        // UD produced before the start offset is included
+        Assert.assertArrayEquals(new Object[]{0, 10, 20}, history.toMap(10).keySet().toArray());
+        Assert.assertArrayEquals(new Object[]{10, 20}, history.toMap(15).keySet().toArray());
+        Assert.assertArrayEquals(new Object[]{10, 20}, history.toMap(20).keySet().toArray());
+        // No UD since start offset
+        Assert.assertTrue(history.toMap(21).isEmpty());
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        UDHistory history = new UDHistory();
+        for (int i = 0; i < 1000; i++) {
+            history.put(i * 288, 1000L + i);
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        history.writeTo(new DataOutputStream(bos));
+        Assert.assertEquals(8 + 1000 * 12, bos.size());
+
+        UDHistory copy = UDHistory.readFrom(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())));
+        Assert.assertEquals(history.size(), copy.size());
+        Map<Integer, Long> expected = history.toMap(0);
+        Assert.assertEquals(expected, copy.toMap(0));
+    }
+}
@@ -0,0 +1,104 @@
+package org.duniter.core.client.service;
+
+/*
+ * #%L
+ * UCoin Java Client :: Core API
+ * %%
+ * Copyright (C) 2014 - 2015 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.core.exception.TechnicalException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HttpServiceImplTest {
+
+    @Test
+    public void executeSingleFlight() throws Exception {
+        HttpServiceImpl service = new HttpServiceImpl();
+        AtomicInteger callCount = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                futures.add(executor.submit(() -> service.executeSingleFlight("key", () -> {
+                    callCount.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "result";
+                })));
+            }
+
+            // Wait all callers to be queued on the same request
+            long deadline = System.currentTimeMillis() + 5000;
+            while (service.getCoalescedRequestCount() < 4 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            for (Future<Object> future: futures) {
+                Assert.assertEquals("result", future.get(5, TimeUnit.SECONDS));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, callCount.get());
+        Assert.assertEquals(4, service.getCoalescedRequestCount());
+
+        // No TTL: next call is executed again
+        service.executeSingleFlight("key", () -> callCount.incrementAndGet());
+        Assert.assertEquals(2, callCount.get());
+    }
+
+    @Test
+    public void executeSingleFlightWithTtl() {
+        HttpServiceImpl service = new HttpServiceImpl();
+        service.coalesceTtl = 60000;
+        AtomicInteger callCount = new AtomicInteger();
+
+        Assert.assertEquals(1, service.executeSingleFlight("key", () -> callCount.incrementAndGet()));
+        Assert.assertEquals(1, service.executeSingleFlight("key", () -> callCount.incrementAndGet()));
+        Assert.assertEquals(1, service.getCoalesceCacheHitCount());
+
+        // Other key
+        Assert.assertEquals(2, service.executeSingleFlight("otherKey", () -> callCount.incrementAndGet()));
+
+        // Errors are never reused
+        try {
+            service.executeSingleFlight("error", () -> {
+                throw new TechnicalException("error");
+            });
+            Assert.fail();
+        }
+        catch (TechnicalException e) {
+            // OK
+        }
+        Assert.assertEquals(3, service.executeSingleFlight("error", () -> callCount.incrementAndGet()));
+    }
+}
@@ -0,0 +1,156 @@
+package org.duniter.core.client.service.local;
+
+/*
+ * #%L
+ * UCoin Java Client :: Core API
+ * %%
+ * Copyright (C) 2014 - 2015 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class BlockSegmentStoreTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("block-cache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file: files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void appendAndGet() {
+        BlockSegmentStore store = new BlockSegmentStore(directory, 1024, false);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(store.append(i, blockJson(i)));
+        }
+        // Never updated
+        Assert.assertFalse(store.append(5, blockJson(6)));
+
+        Assert.assertEquals(100, store.size());
+        Assert.assertTrue(store.contains(99));
+        Assert.assertFalse(store.contains(100));
+        Assert.assertNull(store.get(100));
+        Assert.assertArrayEquals(blockJson(5), store.get(5));
+        Assert.assertArrayEquals(blockJson(99), store.get(99));
+
+        // Read without copy
+        ByteBuffer buffer = store.getAsBuffer(42);
+        Assert.assertTrue(buffer.isReadOnly());
+        Assert.assertEquals(blockJson(42).length, buffer.remaining());
+
+        // Many segments (small segment size)
+        Assert.assertTrue(directory.listFiles().length > 1);
+        store.close();
+    }
+
+    @Test
+    public void compress() {
+        BlockSegmentStore store = new BlockSegmentStore(directory, true);
+        store.append(1, blockJson(1));
+        Assert.assertArrayEquals(blockJson(1), store.get(1));
+        store.close();
+    }
+
+    @Test
+    public void reopen() throws IOException {
+        BlockSegmentStore store = new BlockSegmentStore(directory, 1024, false);
+        for (int i = 0; i < 50; i++) {
+            store.append(i, blockJson(i));
+        }
+        store.close();
+
+        // Simulate an incomplete last write
+        File[] files = directory.listFiles();
+        Arrays.sort(files);
+        File lastFile = files[files.length - 1];
+        long validLength = lastFile.length();
+        try (RandomAccessFile file = new RandomAccessFile(lastFile, "rw")) {
+            file.seek(validLength);
+            file.writeInt(50);
+            file.writeInt(1000);
+        }
+
+        store = new BlockSegmentStore(directory, 1024, false);
+        Assert.assertEquals(50, store.size());
+        Assert.assertEquals(validLength, lastFile.length());
+        Assert.assertArrayEquals(blockJson(49), store.get(49));
+
+        Assert.assertTrue(store.append(50, blockJson(50)));
+        Assert.assertArrayEquals(blockJson(50), store.get(50));
+        store.close();
+    }
+
+    @Test
+    public void corruptedRecord() throws IOException {
+        BlockSegmentStore store = new BlockSegmentStore(directory, false);
+        for (int i = 0; i < 10; i++) {
+            store.append(i, blockJson(i));
+        }
+        store.close();
+
+        // Corrupt the data of the last record (header stays valid)
+        File file = directory.listFiles()[0];
+        long validLength = file.length() - (13 + blockJson(9).length);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(file.length() - 2);
+            raf.write('X');
+        }
+
+        store = new BlockSegmentStore(directory, false);
+        Assert.assertEquals(9, store.size());
+        Assert.assertFalse(store.contains(9));
+        Assert.assertEquals(validLength, file.length());
+
+        // Corruption detected on read
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(file.length() - 2);
+            raf.write('X');
+        }
+        Assert.assertNull(store.get(8));
+        Assert.assertFalse(store.contains(8));
+        Assert.assertArrayEquals(blockJson(7), store.get(7));
+        store.close();
+    }
+
+    private static byte[] blockJson(int number) {
+        return String.format("{\"number\":%s,\"currency\":\"test_net\",\"dividend\":null}", number).getBytes(StandardCharsets.UTF_8);
+    }
+}
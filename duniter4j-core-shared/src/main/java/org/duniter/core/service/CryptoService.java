@@ -25,6 +25,9 @@ package org.duniter.core.service;
 
 import org.duniter.core.beans.Bean;
 import org.duniter.core.util.crypto.KeyPair;
+import org.duniter.core.util.crypto.SignedMessage;
+
+import java.util.List;
 
 
 /**
@@ -59,6 +62,15 @@ public interface CryptoService extends Bean {
 
     boolean verify(String message, String signature, String publicKey);
 
+    /**
+     * Verify many signatures at once (e.g. on bulk import), using all available processors.
+     * An invalid signature or public key does not fail the batch.
+     *
+     * @param messages messages to verify
+     * @return for each message (same order), true if the signature is valid
+     */
+    boolean[] verifyBatch(List<SignedMessage> messages);
+
     /**
      * Do a SHA256 then a hexa convert
      * @param message
@@ -23,16 +23,25 @@ package org.duniter.core.service;
  */
 
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.lambdaworks.crypto.SCrypt;
 import org.duniter.core.exception.TechnicalException;
+import org.duniter.core.util.cache.ConcurrentCache;
 import org.duniter.core.util.crypto.CryptoUtils;
 import org.duniter.core.util.crypto.KeyPair;
+import org.duniter.core.util.crypto.SignedMessage;
 import jnr.ffi.byref.LongLongByReference;
 import org.abstractj.kalium.NaCl;
 import org.abstractj.kalium.NaCl.Sodium;
 import org.abstractj.kalium.crypto.Util;
 
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
@@ -60,10 +69,29 @@ public class Ed25519CryptoServiceImpl implements CryptoService {
     // Hash
     private static int HASH_BYTES = 256;
 
+    // Max decoded public keys kept in cache
+    private static int PUBLICKEY_CACHE_MAX_SIZE = 10000;
+
+    // Under this size, a batch is verified in the caller thread
+    private static int VERIFY_BATCH_MIN_PARALLEL_SIZE = 16;
+
     private final Sodium naCl;
 
+    private final ConcurrentCache<String, byte[]> publicKeyCache;
+
+    // Reusable buffers, one per thread (signature + message, and output)
+    private final ThreadLocal<VerifyBuffers> verifyBuffers = ThreadLocal.withInitial(VerifyBuffers::new);
+
+    private ExecutorService verifyExecutor;
+
     public Ed25519CryptoServiceImpl() {
         naCl = NaCl.sodium();
+        publicKeyCache = new ConcurrentCache<String, byte[]>(ConcurrentCache.ETERNAL_TIME, PUBLICKEY_CACHE_MAX_SIZE) {
+            @Override
+            public byte[] load(String publicKey) {
+                return CryptoUtils.decodeBase58(publicKey);
+            }
+        };
     }
 
     @Override
@@ -118,10 +146,45 @@ public class Ed25519CryptoServiceImpl implements CryptoService {
     public boolean verify(String message, String signature, String publicKey) {
         byte[] messageBinary = CryptoUtils.decodeUTF8(message);
         byte[] signatureBinary = CryptoUtils.decodeBase64(signature);
-        byte[] publicKeyBinary = CryptoUtils.decodeBase58(publicKey);
+        byte[] publicKeyBinary = publicKeyCache.get(publicKey);
         return verify(messageBinary, signatureBinary, publicKeyBinary);
     }
 
+    @Override
+    public boolean[] verifyBatch(final List<SignedMessage> messages) {
+        final boolean[] result = new boolean[messages.size()];
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        if (messages.size() < VERIFY_BATCH_MIN_PARALLEL_SIZE || parallelism == 1) {
+            verifyRange(messages, result, 0, messages.size());
+            return result;
+        }
+
+        // Split into chunks: the last one is verified by the caller thread
+        int chunkSize = (messages.size() + parallelism - 1) / parallelism;
+        List<Future<?>> futures = new ArrayList<>(parallelism);
+        int from = 0;
+        for (; from + chunkSize < messages.size(); from += chunkSize) {
+            final int chunkFrom = from;
+            final int chunkTo = from + chunkSize;
+            futures.add(getVerifyExecutor().submit(() -> verifyRange(messages, result, chunkFrom, chunkTo)));
+        }
+        verifyRange(messages, result, from, messages.size());
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TechnicalException("Interrupted while verifying signatures", e);
+        }
+        catch (ExecutionException e) {
+            throw new TechnicalException("Error while verifying signatures: " + e.getCause().getMessage(), e.getCause());
+        }
+        return result;
+    }
+
     @Override
     public String hash(String message) {
         byte[] hash = new byte[Sodium.SHA256BYTES];
@@ -143,19 +206,44 @@ public class Ed25519CryptoServiceImpl implements CryptoService {
     }
 
     protected boolean verify(byte[] message, byte[] signature, byte[] publicKey) {
-        byte[] sigAndMsg = new byte[SIGNATURE_BYTES + message.length];
-        for (int i = 0; i < SIGNATURE_BYTES; i++) sigAndMsg[i] = signature[i];
-        for (int i = 0; i < message.length; i++) sigAndMsg[i+SIGNATURE_BYTES] = message[i];
+        if (signature.length != SIGNATURE_BYTES || publicKey.length != PUBLICKEY_BYTES) {
+            return false;
+        }
+        int length = SIGNATURE_BYTES + message.length;
+        VerifyBuffers buffers = verifyBuffers.get();
+        buffers.ensureCapacity(length);
 
-        byte[] buffer = new byte[SIGNATURE_BYTES + message.length];
-        LongLongByReference bufferLength = new LongLongByReference(0);
+        byte[] sigAndMsg = buffers.sigAndMsg;
+        System.arraycopy(signature, 0, sigAndMsg, 0, SIGNATURE_BYTES);
+        System.arraycopy(message, 0, sigAndMsg, SIGNATURE_BYTES, message.length);
 
-        int result = naCl.crypto_sign_ed25519_open(buffer, bufferLength, sigAndMsg, sigAndMsg.length, publicKey);
+        int result = naCl.crypto_sign_ed25519_open(buffers.output, buffers.outputLength, sigAndMsg, length, publicKey);
         boolean validSignature = (result == 0);
 
         return validSignature;
     }
 
+    protected void verifyRange(List<SignedMessage> messages, boolean[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            SignedMessage item = messages.get(i);
+            try {
+                result[i] = verify(item.getMessage(), item.getSignature(), item.getPublicKey());
+            }
+            catch (RuntimeException e) {
+                // Invalid base58/base64 format
+                result[i] = false;
+            }
+        }
+    }
+
+    protected synchronized ExecutorService getVerifyExecutor() {
+        if (verifyExecutor == null) {
+            verifyExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("duniter4j-crypto-verify-%d").build());
+        }
+        return verifyExecutor;
+    }
+
     protected static String bytesToHex(byte[] bytes) {
         char[] hexChars = new char[bytes.length * 2];
         for ( int j = 0; j < bytes.length; j++ ) {
@@ -166,4 +254,20 @@ public class Ed25519CryptoServiceImpl implements CryptoService {
         return new String(hexChars);
     }
 
+    private static class VerifyBuffers {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        byte[] sigAndMsg = new byte[INITIAL_CAPACITY];
+        byte[] output = new byte[INITIAL_CAPACITY];
+        final LongLongByReference outputLength = new LongLongByReference(0);
+
+        void ensureCapacity(int length) {
+            if (sigAndMsg.length < length) {
+                int capacity = Integer.highestOneBit(length - 1) << 1;
+                sigAndMsg = new byte[capacity];
+                output = new byte[capacity];
+            }
+        }
+    }
+
 }
@@ -0,0 +1,101 @@
+package org.duniter.core.util.cache;
+
+/*
+ * #%L
+ * UCoin Java :: Core Shared
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+/**
+ * Statistics of a cache (immutable snapshot).
+ * @see ConcurrentCache#getStats()
+ */
+public class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTimeNanos;
+    private final long evictionCount;
+
+    public CacheStats(long hitCount, long missCount,
+                      long loadSuccessCount, long loadFailureCount,
+                      long totalLoadTimeNanos, long evictionCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTimeNanos = totalLoadTimeNanos;
+        this.evictionCount = evictionCount;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    public double getHitRate() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    public long getTotalLoadTimeNanos() {
+        return totalLoadTimeNanos;
+    }
+
+    /**
+     * @return the average time spent loading a value, in nanoseconds
+     */
+    public double getAverageLoadPenalty() {
+        long loadCount = loadSuccessCount + loadFailureCount;
+        return loadCount == 0 ? 0.0 : (double) totalLoadTimeNanos / loadCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("hitCount=").append(hitCount)
+                .append(", missCount=").append(missCount)
+                .append(", loadSuccessCount=").append(loadSuccessCount)
+                .append(", loadFailureCount=").append(loadFailureCount)
+                .append(", totalLoadTimeNanos=").append(totalLoadTimeNanos)
+                .append(", evictionCount=").append(evictionCount)
+                .toString();
+    }
+}
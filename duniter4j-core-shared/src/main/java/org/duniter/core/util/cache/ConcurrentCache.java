@@ -0,0 +1,495 @@
+package org.duniter.core.util.cache;
+
+/*
+ * #%L
+ * UCoin Java :: Core Shared
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.duniter.core.exception.TechnicalException;
+import org.duniter.core.util.ObjectUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent cache, to use instead of {@link SimpleCache}:
+ * <ul>
+ *     <li>reads never lock, and each key is loaded separately (only one <code>load()</code> per key at the same time);</li>
+ *     <li>items are evicted in O(1), when too old (time to live after write), or by LRU when the max weight is reached;</li>
+ *     <li>when a refresh time is set, an old item is reloaded in the background, while still returning the old value;</li>
+ *     <li>hit/miss/load time statistics are available, using <code>getStats()</code>.</li>
+ * </ul>
+ */
+public abstract class ConcurrentCache<K, V> implements Cache<K, V> {
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrentCache.class);
+
+    public static final long ETERNAL_TIME = -1l;
+    public static final long UNLIMITED_WEIGHT = -1l;
+    public static final long NO_REFRESH = -1l;
+
+    private final ConcurrentHashMap<K, Node<K, V>> mCachedNodes;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> mLoadingValues;
+    private final long mCacheTimeInMillis;
+    private final long mCacheMaxWeight;
+    private final long mRefreshTimeInMillis;
+    private final Executor mRefreshExecutor;
+
+    // Eviction lists (access order, and write order), guarded by evictionLock
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final Node<K, V> accessHead = new Node<>(null, null, 0, 0);
+    private final Node<K, V> writeHead = new Node<>(null, null, 0, 0);
+    private long totalWeight = 0;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadTimeNanos = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    public ConcurrentCache() {
+        this(ETERNAL_TIME, UNLIMITED_WEIGHT, NO_REFRESH);
+    }
+
+    public ConcurrentCache(long cacheTimeInMillis) {
+        this(cacheTimeInMillis, UNLIMITED_WEIGHT, NO_REFRESH);
+    }
+
+    public ConcurrentCache(long cacheTimeInMillis, long cacheMaxWeight) {
+        this(cacheTimeInMillis, cacheMaxWeight, NO_REFRESH);
+    }
+
+    public ConcurrentCache(long cacheTimeInMillis, long cacheMaxWeight, long refreshTimeInMillis) {
+        this(cacheTimeInMillis, cacheMaxWeight, refreshTimeInMillis, null);
+    }
+
+    public ConcurrentCache(long cacheTimeInMillis, long cacheMaxWeight, long refreshTimeInMillis, Executor refreshExecutor) {
+        ObjectUtils.checkArgument(cacheTimeInMillis == ETERNAL_TIME || cacheTimeInMillis > 0, "Invalid cache time");
+        ObjectUtils.checkArgument(cacheMaxWeight == UNLIMITED_WEIGHT || cacheMaxWeight > 0, "Invalid cache max weight");
+        ObjectUtils.checkArgument(refreshTimeInMillis == NO_REFRESH || refreshTimeInMillis > 0, "Invalid refresh time");
+        this.mCachedNodes = new ConcurrentHashMap<>();
+        this.mLoadingValues = new ConcurrentHashMap<>();
+        this.mCacheTimeInMillis = cacheTimeInMillis;
+        this.mCacheMaxWeight = cacheMaxWeight;
+        this.mRefreshTimeInMillis = refreshTimeInMillis;
+        this.mRefreshExecutor = (refreshExecutor != null || refreshTimeInMillis == NO_REFRESH)
+                ? refreshExecutor
+                : DefaultRefreshExecutorHolder.INSTANCE;
+        accessHead.prevAccess = accessHead.nextAccess = accessHead;
+        writeHead.prevWrite = writeHead.nextWrite = writeHead;
+    }
+
+    public V getIfPresent(K key) {
+        Node<K, V> node = mCachedNodes.get(key);
+        if (node != null) {
+            if (!isExpired(node, System.currentTimeMillis())) {
+                hitCount.increment();
+                recordAccess(node);
+                return node.value;
+            }
+            removeNode(node);
+        }
+        missCount.increment();
+        return null;
+    }
+
+    /**
+     * Get the cached value. If not already loaded, <code>load()</code>
+     * will be called (only once, even if many threads ask the same key).
+     * @param key
+     * @return
+     */
+    public V get(K key) {
+        Node<K, V> node = mCachedNodes.get(key);
+        if (node != null) {
+            long now = System.currentTimeMillis();
+            if (!isExpired(node, now)) {
+                hitCount.increment();
+                recordAccess(node);
+                refreshIfNeed(node, now);
+                return node.value;
+            }
+            removeNode(node);
+        }
+        missCount.increment();
+        return loadAndPut(key);
+    }
+
+    /**
+     * Set a value into the cache
+     * @param key
+     * @param value (if null, the key is removed)
+     */
+    public void put(K key, V value) {
+        ObjectUtils.checkNotNull(key);
+        if (value == null) {
+            invalidate(key);
+            return;
+        }
+        Node<K, V> node = new Node<>(key, value, System.currentTimeMillis(), weigh(key, value));
+        evictionLock.lock();
+        try {
+            Node<K, V> oldNode = mCachedNodes.put(key, node);
+            if (oldNode != null) {
+                unlink(oldNode);
+            }
+            link(node);
+            evict(node.writeTime);
+        }
+        finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Remove a cached value
+     * @param key
+     */
+    public void invalidate(K key) {
+        Node<K, V> node = mCachedNodes.get(key);
+        if (node != null) {
+            removeNode(node);
+        }
+    }
+
+    /**
+     * @see Map#keySet()
+     */
+    public Set<K> keySet() {
+        return getValuesSnapshot().keySet();
+    }
+
+    /**
+     * @see Map#entrySet()
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        return getValuesSnapshot().entrySet();
+    }
+
+    /**
+     * Clear cached values
+     */
+    public void clear() {
+        evictionLock.lock();
+        try {
+            mCachedNodes.clear();
+
+            // Unlink all nodes: a node read just before, could then never be linked again (see recordAccess)
+            Node<K, V> node = writeHead.nextWrite;
+            while (node != writeHead) {
+                Node<K, V> next = node.nextWrite;
+                node.prevAccess = node.nextAccess = null;
+                node.prevWrite = node.nextWrite = null;
+                node = next;
+            }
+            accessHead.prevAccess = accessHead.nextAccess = accessHead;
+            writeHead.prevWrite = writeHead.nextWrite = writeHead;
+            totalWeight = 0;
+        }
+        finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of cached items (expired items included, until they are evicted)
+     */
+    public int size() {
+        return mCachedNodes.size();
+    }
+
+    /**
+     * @return the sum of cached items weight
+     */
+    public long getWeight() {
+        evictionLock.lock();
+        try {
+            return totalWeight;
+        }
+        finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(),
+                loadSuccessCount.sum(), loadFailureCount.sum(),
+                totalLoadTimeNanos.sum(), evictionCount.sum());
+    }
+
+    public abstract V load(K key);
+
+    /* -- protected methods -- */
+
+    /**
+     * Compute the weight of an item, used when a max weight has been set. Default weight is 1 (= items count)
+     * @param key
+     * @param value
+     * @return a positive weight
+     */
+    protected long weigh(K key, V value) {
+        return 1;
+    }
+
+    protected boolean isExpired(Node<K, V> node, long now) {
+        return mCacheTimeInMillis != ETERNAL_TIME && now - node.writeTime >= mCacheTimeInMillis;
+    }
+
+    /* -- internal methods -- */
+
+    private V loadAndPut(K key) {
+        CompletableFuture<V> loading = new CompletableFuture<>();
+        CompletableFuture<V> existingLoading = mLoadingValues.putIfAbsent(key, loading);
+
+        // Already loading by another thread: wait its result
+        if (existingLoading != null) {
+            return waitLoading(existingLoading);
+        }
+
+        try {
+            // Another thread could have put the value, just before
+            Node<K, V> node = mCachedNodes.get(key);
+            if (node != null && !isExpired(node, System.currentTimeMillis())) {
+                loading.complete(node.value);
+                return node.value;
+            }
+
+            long startTime = System.nanoTime();
+            V value;
+            try {
+                value = load(key);
+            }
+            catch (RuntimeException | Error e) {
+                loadFailureCount.increment();
+                totalLoadTimeNanos.add(System.nanoTime() - startTime);
+                loading.completeExceptionally(e);
+                throw e;
+            }
+            loadSuccessCount.increment();
+            totalLoadTimeNanos.add(System.nanoTime() - startTime);
+
+            if (value != null) {
+                put(key, value);
+            }
+            loading.complete(value);
+            return value;
+        }
+        finally {
+            mLoadingValues.remove(key, loading);
+        }
+    }
+
+    private V waitLoading(CompletableFuture<V> loading) {
+        try {
+            return loading.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TechnicalException(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new TechnicalException(cause);
+        }
+    }
+
+    private void refreshIfNeed(final Node<K, V> node, long now) {
+        if (mRefreshTimeInMillis == NO_REFRESH
+                || now - node.writeTime < mRefreshTimeInMillis
+                || !node.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            mRefreshExecutor.execute(() -> {
+                long startTime = System.nanoTime();
+                try {
+                    V value = load(node.key);
+                    loadSuccessCount.increment();
+                    totalLoadTimeNanos.add(System.nanoTime() - startTime);
+
+                    // Update, only if not already replaced
+                    if (value != null && mCachedNodes.get(node.key) == node) {
+                        put(node.key, value);
+                    }
+                }
+                catch (RuntimeException e) {
+                    loadFailureCount.increment();
+                    totalLoadTimeNanos.add(System.nanoTime() - startTime);
+                    if (log.isDebugEnabled()) {
+                        log.debug(String.format("Could not refresh cached value [%s]: %s", node.key, e.getMessage()));
+                    }
+                }
+                finally {
+                    node.refreshing.set(false);
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            node.refreshing.set(false);
+        }
+    }
+
+    private void recordAccess(Node<K, V> node) {
+        // Access order is useless without max weight
+        if (mCacheMaxWeight == UNLIMITED_WEIGHT) {
+            return;
+        }
+        // Never wait the lock, on read: access order is then approximative under contention
+        if (evictionLock.tryLock()) {
+            try {
+                if (node.nextAccess != null) {
+                    unlinkAccess(node);
+                    linkAccess(node);
+                }
+            }
+            finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void removeNode(Node<K, V> node) {
+        evictionLock.lock();
+        try {
+            if (mCachedNodes.remove(node.key, node)) {
+                unlink(node);
+            }
+        }
+        finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Evict expired items (the oldest written first), then least recently used items,
+     * until the max weight is respected. Must be called under the eviction lock.
+     */
+    private void evict(long now) {
+        if (mCacheTimeInMillis != ETERNAL_TIME) {
+            while (writeHead.nextWrite != writeHead && isExpired(writeHead.nextWrite, now)) {
+                evictNode(writeHead.nextWrite);
+            }
+        }
+        if (mCacheMaxWeight != UNLIMITED_WEIGHT) {
+            while (totalWeight > mCacheMaxWeight && accessHead.nextAccess != accessHead) {
+                evictNode(accessHead.nextAccess);
+            }
+        }
+    }
+
+    private void evictNode(Node<K, V> node) {
+        mCachedNodes.remove(node.key, node);
+        unlink(node);
+        evictionCount.increment();
+    }
+
+    private void link(Node<K, V> node) {
+        linkAccess(node);
+        node.prevWrite = writeHead.prevWrite;
+        node.nextWrite = writeHead;
+        writeHead.prevWrite.nextWrite = node;
+        writeHead.prevWrite = node;
+        totalWeight += node.weight;
+    }
+
+    private void unlink(Node<K, V> node) {
+        if (node.nextWrite == null) {
+            return; // already unlinked
+        }
+        unlinkAccess(node);
+        node.prevWrite.nextWrite = node.nextWrite;
+        node.nextWrite.prevWrite = node.prevWrite;
+        node.prevWrite = node.nextWrite = null;
+        totalWeight -= node.weight;
+    }
+
+    private void linkAccess(Node<K, V> node) {
+        node.prevAccess = accessHead.prevAccess;
+        node.nextAccess = accessHead;
+        accessHead.prevAccess.nextAccess = node;
+        accessHead.prevAccess = node;
+    }
+
+    private void unlinkAccess(Node<K, V> node) {
+        node.prevAccess.nextAccess = node.nextAccess;
+        node.nextAccess.prevAccess = node.prevAccess;
+        node.prevAccess = node.nextAccess = null;
+    }
+
+    private Map<K, V> getValuesSnapshot() {
+        long now = System.currentTimeMillis();
+        Map<K, V> result = new HashMap<>(mCachedNodes.size());
+        for (Node<K, V> node : mCachedNodes.values()) {
+            if (!isExpired(node, now)) {
+                result.put(node.key, node.value);
+            }
+        }
+        return result;
+    }
+
+    protected static class Node<K, V> {
+        final K key;
+        final V value;
+        final long writeTime;
+        final long weight;
+        final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+        // Guarded by the eviction lock
+        Node<K, V> prevAccess;
+        Node<K, V> nextAccess;
+        Node<K, V> prevWrite;
+        Node<K, V> nextWrite;
+
+        Node(K key, V value, long writeTime, long weight) {
+            this.key = key;
+            this.value = value;
+            this.writeTime = writeTime;
+            this.weight = weight;
+        }
+    }
+
+    private static class DefaultRefreshExecutorHolder {
+        static final Executor INSTANCE = createRefreshExecutor();
+
+        private static Executor createRefreshExecutor() {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("duniter4j-cache-refresh-%d").build());
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+}
@@ -27,7 +27,9 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by eis on 30/03/15.
+ * @deprecated use {@link ConcurrentCache} instead (no global lock, O(1) eviction)
  */
+@Deprecated
 public abstract class SimpleCache<K, V> implements Cache<K, V> {
 
     private static final long ETERNAL_TIME = -1l;
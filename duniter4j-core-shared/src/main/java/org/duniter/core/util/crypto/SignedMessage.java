@@ -0,0 +1,52 @@
+package org.duniter.core.util.crypto;
+
+/*
+ * #%L
+ * UCoin Java Client :: Core API
+ * %%
+ * Copyright (C) 2014 - 2015 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+
+/**
+ * A message, with its signature and the issuer public key, to verify.
+ */
+public class SignedMessage {
+
+    private final String message;
+    private final String signature;
+    private final String publicKey;
+
+    public SignedMessage(String message, String signature, String publicKey) {
+        this.message = message;
+        this.signature = signature;
+        this.publicKey = publicKey;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    public String getPublicKey() {
+        return publicKey;
+    }
+}
@@ -22,8 +22,7 @@ package org.duniter.core.util.websocket;
  * #L%
  */
 
-import com.google.common.collect.Lists;
-import org.duniter.core.util.CollectionUtils;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,9 +31,13 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.*;
 
 /**
  * ChatServer Client
+ * <p>When auto reconnect is enable, the connection is opened again after each unexpected close,
+ * with an exponential backoff. Connection listeners are notified after each reconnection,
+ * so that missed messages can be recovered.</p>
  *
  * @author Jiji_Sasidharan
  */
@@ -43,17 +46,40 @@ public class WebsocketClientEndpoint implements Closeable {
 
     private static final Logger log = LoggerFactory.getLogger(WebsocketClientEndpoint.class);
 
-    private Session userSession = null;
-    private List<MessageHandler> messageHandlers = Lists.newArrayList();
+    private static final long RECONNECT_MIN_DELAY = 1000; // 1s
+    private static final long RECONNECT_MAX_DELAY = 60000; // 1 min
+
+    private static final ScheduledExecutorService reconnectScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("websocket-reconnect-%d").build());
+
+    private volatile Session userSession = null;
+    private final List<MessageHandler> messageHandlers = new CopyOnWriteArrayList<>();
+    private final List<ConnectionListener> connectionListeners = new CopyOnWriteArrayList<>();
     private final URI endpointURI;
+    private final boolean autoReconnect;
+    private volatile boolean closed = false;
+    private int reconnectAttempt = 0;
+    private ScheduledFuture<?> reconnectFuture;
 
     public WebsocketClientEndpoint(URI endpointURI) {
+        this(endpointURI, false);
+    }
+
+    /**
+     * @param endpointURI
+     * @param autoReconnect if true, reconnect after each unexpected close (or if the first connection failed)
+     */
+    public WebsocketClientEndpoint(URI endpointURI, boolean autoReconnect) {
         this.endpointURI = endpointURI;
+        this.autoReconnect = autoReconnect;
         try {
-            WebSocketContainer container = ContainerProvider.getWebSocketContainer();
-            container.connectToServer(this, endpointURI);
+            connect();
         } catch (Exception e) {
-            throw new RuntimeException(e);
+            if (!autoReconnect) {
+                throw new RuntimeException(e);
+            }
+            log.warn(String.format("[%s] Unable to open WebSocket: %s", endpointURI, e.getMessage()));
+            scheduleReconnect();
         }
     }
 
@@ -62,8 +88,18 @@ public class WebsocketClientEndpoint implements Closeable {
         if (log.isDebugEnabled()) {
             log.debug(String.format("[%s] Closing WebSocket session...", endpointURI));
         }
-        userSession.close();
+        closed = true;
+        synchronized (this) {
+            if (reconnectFuture != null) {
+                reconnectFuture.cancel(false);
+                reconnectFuture = null;
+            }
+        }
+        Session session = userSession;
         userSession = null;
+        if (session != null) {
+            session.close();
+        }
     }
 
     /**
@@ -91,28 +127,37 @@ public class WebsocketClientEndpoint implements Closeable {
             log.debug(String.format("Closing WebSocket... [%s]", endpointURI));
         }
         this.userSession = null;
+        if (autoReconnect && !closed) {
+            log.warn(String.format("[%s] WebSocket closed (%s). Will reconnect...", endpointURI, reason));
+            scheduleReconnect();
+        }
+    }
+
+    @OnError
+    public void onError(Session userSession, Throwable error) {
+        log.warn(String.format("[%s] WebSocket error: %s", endpointURI, error.getMessage()));
     }
 
     /**
      * Callback hook for Message Events. This method will be invoked when a client send a message.
+     * Handlers should not block, as this is called by the socket thread.
      *
      * @param message The text message
      */
     @OnMessage
     public void onMessage(String message) {
-        synchronized (messageHandlers) {
-            if (CollectionUtils.isNotEmpty(messageHandlers)) {
-                if (log.isDebugEnabled()) {
-                    log.debug("[%s] Received message: " + message);
-                }
-
-                for (MessageHandler messageHandler : messageHandlers) {
-                    try {
-                        messageHandler.handleMessage(message);
-                    } catch (Exception e) {
-                        log.error(String.format("[%s] Error during message handling: %s", endpointURI, e.getMessage()), e);
-                    }
-                }
+        if (messageHandlers.isEmpty()) {
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("[%s] Received message: %s", endpointURI, message));
+        }
+
+        for (MessageHandler messageHandler : messageHandlers) {
+            try {
+                messageHandler.handleMessage(message);
+            } catch (Exception e) {
+                log.error(String.format("[%s] Error during message handling: %s", endpointURI, e.getMessage()), e);
             }
         }
     }
@@ -123,9 +168,16 @@ public class WebsocketClientEndpoint implements Closeable {
      * @param msgHandler
      */
     public void addMessageHandler(MessageHandler msgHandler) {
-        synchronized (messageHandlers) {
-            this.messageHandlers.add(msgHandler);
-        }
+        this.messageHandlers.add(msgHandler);
+    }
+
+    /**
+     * register connection listener, notified after each reconnection
+     *
+     * @param listener
+     */
+    public void addConnectionListener(ConnectionListener listener) {
+        this.connectionListeners.add(listener);
     }
 
     /**
@@ -138,11 +190,63 @@ public class WebsocketClientEndpoint implements Closeable {
     }
 
     /**
-     * Is closed ?
+     * Is closed ? An endpoint with auto reconnect is closed only after close()
      * @return
      */
     public boolean isClosed() {
-        return (userSession == null);
+        return autoReconnect ? closed : (userSession == null);
+    }
+
+    public boolean isConnected() {
+        return userSession != null;
+    }
+
+    /* -- internal methods -- */
+
+    private void connect() throws DeploymentException, IOException {
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        container.connectToServer(this, endpointURI);
+    }
+
+    private synchronized void scheduleReconnect() {
+        if (closed || (reconnectFuture != null && !reconnectFuture.isDone())) {
+            return;
+        }
+        // Exponential backoff, with jitter
+        long delay = Math.min(RECONNECT_MAX_DELAY, RECONNECT_MIN_DELAY << Math.min(reconnectAttempt, 10));
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        reconnectAttempt++;
+        reconnectFuture = reconnectScheduler.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void reconnect() {
+        if (closed) {
+            return;
+        }
+        try {
+            connect();
+        }
+        catch (Exception e) {
+            log.warn(String.format("[%s] Unable to reconnect WebSocket: %s", endpointURI, e.getMessage()));
+            synchronized (this) {
+                reconnectFuture = null;
+            }
+            scheduleReconnect();
+            return;
+        }
+
+        log.info(String.format("[%s] WebSocket reconnected", endpointURI));
+        synchronized (this) {
+            reconnectAttempt = 0;
+            reconnectFuture = null;
+        }
+        for (ConnectionListener listener : connectionListeners) {
+            try {
+                listener.onReconnect();
+            } catch (Exception e) {
+                log.error(String.format("[%s] Error during reconnection handling: %s", endpointURI, e.getMessage()), e);
+            }
+        }
     }
     /**
      * Message handler.
@@ -153,4 +257,15 @@ public class WebsocketClientEndpoint implements Closeable {
 
         public void handleMessage(String message);
     }
+
+    /**
+     * Connection listener.
+     */
+    public static interface ConnectionListener {
+
+        /**
+         * Called after a reconnection (messages sent while disconnected are lost)
+         */
+        public void onReconnect();
+    }
 }
\ No newline at end of file
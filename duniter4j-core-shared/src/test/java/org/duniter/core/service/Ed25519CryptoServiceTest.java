@@ -26,11 +26,15 @@ package org.duniter.core.service;
 import org.duniter.core.test.TestFixtures;
 import org.duniter.core.util.crypto.Base58;
 import org.duniter.core.util.crypto.SecretBox;
+import org.duniter.core.util.crypto.SignedMessage;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Ignore;
 import org.junit.Test;
 
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Ed25519CryptoServiceTest {
 
@@ -65,6 +69,59 @@ public class Ed25519CryptoServiceTest {
         Assert.assertTrue(validSignature);
 	}
 
+    @Test
+    public void verifyBatch() throws Exception {
+        SecretBox secretBox = createSecretBox();
+        byte[] secretKey = Base58.decode(secretBox.getSecretKey());
+
+        List<SignedMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String itemMessage = message + i;
+            String signature = service.sign(itemMessage, secretKey);
+            // Tamper one message out of 3
+            messages.add(new SignedMessage(i % 3 == 0 ? itemMessage + "!" : itemMessage, signature, secretBox.getPublicKey()));
+        }
+        // Invalid public key
+        messages.add(new SignedMessage(message, service.sign(message, secretKey), "0OIl"));
+
+        boolean[] result = service.verifyBatch(messages);
+
+        Assert.assertEquals(messages.size(), result.length);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i % 3 != 0, result[i]);
+        }
+        Assert.assertFalse(result[100]);
+    }
+
+    @Test
+    @Ignore("benchmark")
+    public void benchmarkVerify() throws Exception {
+        SecretBox secretBox = createSecretBox();
+        String record = "{\"isCompany\":false,\"title\":\"toto\",\"description\":\"toto\",\"pictures\":[],\"time\":1461162142,\"issuer\":\"G2CBgZBPLe6FSFUgpx2Jf1Aqsgta6iib3vmDRA1yLiqU\"}";
+        String signature = service.sign(record, Base58.decode(secretBox.getSecretKey()));
+        int count = 20000;
+
+        List<SignedMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(new SignedMessage(record, signature, secretBox.getPublicKey()));
+        }
+
+        for (int warmup = 0; warmup < 2; warmup++) {
+            long start = System.nanoTime();
+            for (SignedMessage item : messages) {
+                Assert.assertTrue(service.verify(item.getMessage(), item.getSignature(), item.getPublicKey()));
+            }
+            long verifyTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            service.verifyBatch(messages);
+            long batchTime = System.nanoTime() - start;
+
+            System.out.println(String.format("verify: %d ns/op, verifyBatch: %d ns/op",
+                    verifyTime / count, batchTime / count));
+        }
+    }
+
     @Test
     public void hash() throws Exception {
 
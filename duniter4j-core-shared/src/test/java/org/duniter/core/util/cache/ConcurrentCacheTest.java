@@ -0,0 +1,140 @@
+package org.duniter.core.util.cache;
+
+/*
+ * #%L
+ * UCoin Java Client :: Core API
+ * %%
+ * Copyright (C) 2014 - 2015 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentCacheTest {
+
+	@Test
+	public void loadOnlyOnce() throws Exception {
+		final AtomicInteger loadCount = new AtomicInteger();
+		final CountDownLatch loading = new CountDownLatch(1);
+		final ConcurrentCache<String, String> cache = new ConcurrentCache<String, String>() {
+			@Override
+			public String load(String key) {
+				loadCount.incrementAndGet();
+				try {
+					loading.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					// continue
+				}
+				return key.toUpperCase();
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Future<?>[] futures = new Future<?>[4];
+			for (int i = 0; i < futures.length; i++) {
+				futures[i] = executor.submit(() -> cache.get("a"));
+			}
+			Thread.sleep(100);
+			loading.countDown();
+			for (Future<?> future : futures) {
+				Assert.assertEquals("A", future.get());
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+
+		Assert.assertEquals(1, loadCount.get());
+		Assert.assertEquals(1, cache.getStats().getLoadSuccessCount());
+	}
+
+	@Test
+	public void evictLeastRecentlyUsed() {
+		ConcurrentCache<Integer, String> cache = new ConcurrentCache<Integer, String>(ConcurrentCache.ETERNAL_TIME, 2) {
+			@Override
+			public String load(Integer key) {
+				return String.valueOf(key);
+			}
+		};
+
+		cache.get(1);
+		cache.get(2);
+		cache.get(1); // 2 is now the least recently used
+		cache.get(3);
+
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(2, cache.getWeight());
+		Assert.assertNotNull(cache.getIfPresent(1));
+		Assert.assertNull(cache.getIfPresent(2));
+		Assert.assertNotNull(cache.getIfPresent(3));
+		Assert.assertEquals(1, cache.getStats().getEvictionCount());
+	}
+
+	@Test
+	public void expireAfterWrite() throws InterruptedException {
+		final AtomicInteger loadCount = new AtomicInteger();
+		ConcurrentCache<String, Integer> cache = new ConcurrentCache<String, Integer>(50) {
+			@Override
+			public Integer load(String key) {
+				return loadCount.incrementAndGet();
+			}
+		};
+
+		Assert.assertEquals(1, cache.get("a").intValue());
+		Assert.assertEquals(1, cache.get("a").intValue());
+		Assert.assertEquals(1, cache.getIfPresent("a").intValue());
+
+		Thread.sleep(100);
+		Assert.assertNull(cache.getIfPresent("a"));
+		Assert.assertEquals(2, cache.get("a").intValue());
+
+		Assert.assertEquals(2, cache.getStats().getHitCount());
+		Assert.assertEquals(3, cache.getStats().getMissCount());
+	}
+
+	@Test
+	public void refreshInBackground() throws InterruptedException {
+		final AtomicInteger loadCount = new AtomicInteger();
+		ConcurrentCache<String, Integer> cache = new ConcurrentCache<String, Integer>(ConcurrentCache.ETERNAL_TIME,
+				ConcurrentCache.UNLIMITED_WEIGHT, 50) {
+			@Override
+			public Integer load(String key) {
+				return loadCount.incrementAndGet();
+			}
+		};
+
+		Assert.assertEquals(1, cache.get("a").intValue());
+		Thread.sleep(100);
+
+		// Old value still returned, while refreshing
+		Assert.assertEquals(1, cache.get("a").intValue());
+		for (int i = 0; i < 50 && cache.getIfPresent("a") == 1; i++) {
+			Thread.sleep(20);
+		}
+		Assert.assertEquals(2, cache.getIfPresent("a").intValue());
+	}
+}
@@ -26,6 +26,8 @@ import com.google.common.collect.Lists;
 import org.duniter.elasticsearch.action.RestModule;
 import org.duniter.elasticsearch.node.DuniterNode;
 import org.duniter.elasticsearch.security.SecurityModule;
+import org.duniter.elasticsearch.service.BulkWriteService;
+import org.duniter.elasticsearch.service.RefreshService;
 import org.duniter.elasticsearch.service.ServiceModule;
 import org.duniter.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.common.component.LifecycleComponent;
@@ -79,6 +81,8 @@ public class Plugin extends org.elasticsearch.plugins.Plugin {
         }
         components.add(PluginSettings.class);
         components.add(ThreadPool.class);
+        components.add(RefreshService.class);
+        components.add(BulkWriteService.class);
         components.add(DuniterNode.class);
         return components;
     }
@@ -99,6 +99,7 @@ public class PluginSettings extends AbstractLifecycleComponent<PluginSettings> {
         applicationConfig.setDefaultOption(ConfigurationOption.NODE_HOST.getKey(), getNodeBmaHost());
         applicationConfig.setDefaultOption(ConfigurationOption.NODE_PORT.getKey(), String.valueOf(getNodeBmaPort()));
         applicationConfig.setDefaultOption(ConfigurationOption.NODE_PROTOCOL.getKey(), getNodeBmaPort() == 443 ? "https" : "http");
+        applicationConfig.setDefaultOption(ConfigurationOption.BLOCK_CACHE_ENABLE.getKey(), String.valueOf(isBlockchainCacheEnable()));
 
         try {
             applicationConfig.parse(new String[]{});
@@ -161,6 +162,93 @@ public class PluginSettings extends AbstractLifecycleComponent<PluginSettings> {
         return settings.getAsInt("duniter.bulk.size", 1000);
     }
 
+    public int getIndexBulkFetchParallelism() {
+        return settings.getAsInt("duniter.bulk.fetch.parallelism", 4);
+    }
+
+    public int getIndexBulkMaxInFlight() {
+        return settings.getAsInt("duniter.bulk.maxInFlight", 2);
+    }
+
+    public int getIndexBulkFlushInterval() {
+        return settings.getAsInt("duniter.bulk.flushInterval", 1000);
+    }
+
+    public int getIndexBulkMaxSizeInMb() {
+        return settings.getAsInt("duniter.bulk.maxSizeInMb", 5);
+    }
+
+    public int getIndexBulkRetryCount() {
+        return settings.getAsInt("duniter.bulk.retry.count", 8);
+    }
+
+    public int getIndexBulkRetryDelay() {
+        return settings.getAsInt("duniter.bulk.retry.delay", 50);
+    }
+
+    public int getBlockchainIndexShards() {
+        return settings.getAsInt("duniter.blockchain.index.shards", 1);
+    }
+
+    public int getBlockchainIndexReplicas() {
+        return settings.getAsInt("duniter.blockchain.index.replicas", 1);
+    }
+
+    /**
+     * Additional settings, applied to each currency (blockchain) index, when created
+     * (e.g. 'duniter.blockchain.index.settings.codec: best_compression')
+     */
+    public Settings getBlockchainIndexSettings() {
+        return settings.getByPrefix("duniter.blockchain.index.settings.");
+    }
+
+    public int getBlockchainBulkLoadThreshold() {
+        return settings.getAsInt("duniter.blockchain.bulkLoad.threshold", 10000);
+    }
+
+    public int getBlockchainBulkLoadMaxSegments() {
+        return settings.getAsInt("duniter.blockchain.bulkLoad.maxSegments", 1);
+    }
+
+    public int getBlockchainListenerQueueSize() {
+        return settings.getAsInt("duniter.blockchain.listener.queueSize", 1000);
+    }
+
+    /**
+     * Keep immutable blocks on disk (in the cache directory), to avoid downloading them again (e.g. after an index deletion)
+     */
+    public boolean isBlockchainCacheEnable() {
+        return settings.getAsBoolean("duniter.blockchain.cache.enable", true);
+    }
+
+    public int getIndexRefreshInterval() {
+        return settings.getAsInt("duniter.refresh.interval", 1000);
+    }
+
+    public boolean isSyncPeersEnable() {
+        return settings.getAsBoolean("duniter.sync.peers.enable", true);
+    }
+
+    public int getSyncPeersMax() {
+        return settings.getAsInt("duniter.sync.peers.max", 5);
+    }
+
+    public boolean isNetworkCrawlerEnable() {
+        return settings.getAsBoolean("duniter.network.crawler.enable", true);
+    }
+
+    public int getNetworkCrawlerInterval() {
+        return settings.getAsInt("duniter.network.crawler.interval", 300000);
+    }
+
+    public int getNetworkCrawlerMaxParallel() {
+        return settings.getAsInt("duniter.network.crawler.maxParallel", 10);
+    }
+
+    public boolean isNetworkCrawlerIndexEnable() {
+        return settings.getAsBoolean("duniter.network.crawler.index.enable", false);
+    }
+
     public int getNodeForkResyncWindow() {
         return settings.getAsInt("duniter.fork.resync.window", 100);
     }
@@ -23,6 +23,7 @@ package org.duniter.elasticsearch.action;
  */
 
 import org.duniter.elasticsearch.action.currency.RestCurrencyIndexAction;
+import org.duniter.elasticsearch.action.currency.RestCurrencySyncStateAction;
 import org.duniter.elasticsearch.action.history.RestHistoryDeleteIndexAction;
 import org.duniter.elasticsearch.action.market.RestMarketCommentIndexAction;
 import org.duniter.elasticsearch.action.market.RestMarketCommentUpdateAction;
@@ -44,6 +45,7 @@ public class RestModule extends AbstractModule implements Module {
 
         // Currency
         bind(RestCurrencyIndexAction.class).asEagerSingleton();
+        bind(RestCurrencySyncStateAction.class).asEagerSingleton();
 
         // Market
         bind(RestMarketRecordIndexAction.class).asEagerSingleton();
@@ -0,0 +1,59 @@
+package org.duniter.elasticsearch.action.currency;
+
+/*
+ * #%L
+ * duniter4j-elasticsearch-plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.elasticsearch.service.BlockchainService;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.rest.*;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+import static org.elasticsearch.rest.RestStatus.NOT_FOUND;
+import static org.elasticsearch.rest.RestStatus.OK;
+
+/**
+ * Get the sync state of a currency (indexed blocks, last block and gaps)
+ */
+public class RestCurrencySyncStateAction extends BaseRestHandler {
+
+    private BlockchainService blockchainService;
+
+    @Inject
+    public RestCurrencySyncStateAction(Settings settings, RestController controller, Client client, BlockchainService blockchainService) {
+        super(settings, controller, client);
+        this.blockchainService = blockchainService;
+        controller.registerHandler(GET, "/{currency}/_sync", this);
+    }
+
+    @Override
+    protected void handleRequest(final RestRequest request, RestChannel restChannel, Client client) throws Exception {
+        String json = blockchainService.getSyncStateAsJson(request.param("currency"));
+        if (json == null) {
+            restChannel.sendResponse(new BytesRestResponse(NOT_FOUND, BytesRestResponse.TEXT_CONTENT_TYPE, "No sync state"));
+            return;
+        }
+        restChannel.sendResponse(new BytesRestResponse(OK, "application/json; charset=UTF-8", json));
+    }
+
+}
@@ -58,7 +58,7 @@ public class RestSecurityAuthAction extends BaseRestHandler {
     @Override
     protected void handleRequest(final RestRequest request, RestChannel restChannel, Client client) throws Exception {
 
-        AuthData authData = GsonUtils.newBuilder().create().fromJson(request.content().toUtf8(), AuthData.class);
+        AuthData authData = GsonUtils.getGson().fromJson(request.content().toUtf8(), AuthData.class);
 
         // TODO Authorization: Basic   instead ?
 
@@ -0,0 +1,88 @@
+package org.duniter.elasticsearch.model;
+
+/*
+ * #%L
+ * UCoin Java Client :: Core API
+ * %%
+ * Copyright (C) 2014 - 2015 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Synchronization state of a currency: indexed blocks (as ranges), last indexed block and remaining gaps.
+ * Stored in the currency index, and updated at each sync checkpoint.
+ */
+public class SyncState implements Serializable {
+
+    private String currency;
+    private List<String> indexedBlocks;
+    private List<String> gaps;
+    private Integer lastNumber;
+    private String lastHash;
+    private Long time;
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public List<String> getIndexedBlocks() {
+        return indexedBlocks;
+    }
+
+    public void setIndexedBlocks(List<String> indexedBlocks) {
+        this.indexedBlocks = indexedBlocks;
+    }
+
+    public List<String> getGaps() {
+        return gaps;
+    }
+
+    public void setGaps(List<String> gaps) {
+        this.gaps = gaps;
+    }
+
+    public Integer getLastNumber() {
+        return lastNumber;
+    }
+
+    public void setLastNumber(Integer lastNumber) {
+        this.lastNumber = lastNumber;
+    }
+
+    public String getLastHash() {
+        return lastHash;
+    }
+
+    public void setLastHash(String lastHash) {
+        this.lastHash = lastHash;
+    }
+
+    public Long getTime() {
+        return time;
+    }
+
+    public void setTime(Long time) {
+        this.time = time;
+    }
+}
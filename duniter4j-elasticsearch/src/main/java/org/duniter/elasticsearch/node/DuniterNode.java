@@ -76,7 +76,9 @@ public class DuniterNode extends AbstractLifecycleComponent<DuniterNode> {
 
     @Override
     protected void doClose() {
-
+        // Stop crawling the network, and listening new blocks
+        injector.getInstance(NetworkService.class).stopCrawling();
+        injector.getInstance(BlockchainService.class).close();
     }
 
     protected void createIndices() {
@@ -133,6 +135,9 @@ public class DuniterNode extends AbstractLifecycleComponent<DuniterNode> {
             // Index (or refresh) node's currency
             injector.getInstance(RegistryService.class).indexCurrencyFromPeer(peer);
 
+            // Crawl the network (in background), to find peers for the sync
+            injector.getInstance(NetworkService.class).startCrawling(peer);
+
             // Index blocks (and listen if new block appear)
             injector.getInstance(BlockchainService.class)
                     .indexLastBlocks(peer)
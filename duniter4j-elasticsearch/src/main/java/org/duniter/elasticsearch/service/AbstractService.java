@@ -34,29 +34,40 @@ import org.duniter.core.client.service.exception.HttpBadRequestException;
 import org.duniter.core.exception.TechnicalException;
 import org.duniter.core.service.CryptoService;
 import org.duniter.core.util.StringUtils;
+import org.duniter.core.util.crypto.SignedMessage;
 import org.duniter.elasticsearch.PluginSettings;
 import org.duniter.elasticsearch.exception.AccessDeniedException;
 import org.duniter.elasticsearch.exception.InvalidFormatException;
 import org.duniter.elasticsearch.exception.InvalidSignatureException;
 import org.duniter.elasticsearch.exception.NotFoundException;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequestBuilder;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequestBuilder;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.Requests;
 import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.translog.Translog;
 import org.nuiton.i18n.I18n;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.regex.Pattern;
 
 /**
@@ -68,6 +79,9 @@ public abstract class AbstractService implements Bean {
     protected static final String REGEX_WORD_SEPARATOR = "[-\\t@# _]+";
     protected static final String REGEX_SPACE = "[\\t\\n\\r ]+";
 
+    // Index settings, used by the bulk-load mode
+    protected static final String BULK_LOAD_REFRESH_INTERVAL = "-1";
+
     protected final ESLogger logger;
     protected final Client client;
     protected final PluginSettings pluginSettings;
@@ -75,6 +89,8 @@ public abstract class AbstractService implements Bean {
     protected final CryptoService cryptoService;
     protected final int retryCount;
     protected final int retryWaitDuration;
+    protected BulkWriteService bulkWriteService;
+    protected RefreshService refreshService;
 
     public AbstractService(String loggerName, Client client, PluginSettings pluginSettings, CryptoService cryptoService) {
         this.logger = Loggers.getLogger(loggerName);
@@ -98,6 +114,16 @@ public abstract class AbstractService implements Bean {
         this("duniter", client, pluginSettings, cryptoService);
     }
 
+    @Inject
+    public void setBulkWriteService(BulkWriteService bulkWriteService) {
+        this.bulkWriteService = bulkWriteService;
+    }
+
+    @Inject
+    public void setRefreshService(RefreshService refreshService) {
+        this.refreshService = refreshService;
+    }
+
     /* -- protected methods  -- */
 
     protected boolean existsIndex(String indexes) {
@@ -118,6 +144,77 @@ public abstract class AbstractService implements Bean {
         deleteIndexRequestBuilder.execute().actionGet();
     }
 
+    /**
+     * Switch an index into bulk-load mode: no refresh, no replica, and an asynchronous translog.
+     * Use {@link #disableBulkLoadMode(String, Settings, int)} to leave it.
+     * @param indexName the index to load
+     */
+    protected void enableBulkLoadMode(String indexName) {
+        if (logger.isInfoEnabled()) {
+            logger.info(String.format("[%s] Enabling bulk-load mode", indexName));
+        }
+        client.admin().indices().prepareUpdateSettings(indexName)
+                .setSettings(Settings.settingsBuilder()
+                        .put("index.refresh_interval", BULK_LOAD_REFRESH_INTERVAL)
+                        .put("index.number_of_replicas", 0)
+                        .put("index.translog.durability", "async")
+                        .build())
+                .execute().actionGet();
+    }
+
+    /**
+     * Check if an index has been left in bulk-load mode (e.g. if the node stopped during a bulk load)
+     */
+    protected boolean isBulkLoadMode(String indexName) {
+        GetSettingsResponse response = client.admin().indices().prepareGetSettings(indexName).execute().actionGet();
+        Settings currentSettings = response.getIndexToSettings().get(indexName);
+        return currentSettings != null && BULK_LOAD_REFRESH_INTERVAL.equals(currentSettings.get("index.refresh_interval"));
+    }
+
+    /**
+     * Leave the bulk-load mode: restore the refresh and translog settings, force merge segments,
+     * then re-enable replicas (so that replicas are copied from merged segments).
+     * Settings are never read back from the index, as it could have been left in bulk-load mode.
+     * @param indexName the loaded index
+     * @param indexSettings the settings used to create the index (ES defaults are used for missing settings)
+     * @param maxNumSegments max number of segments, after the force merge (or -1 to skip the merge)
+     */
+    protected void disableBulkLoadMode(String indexName, Settings indexSettings, int maxNumSegments) {
+        if (logger.isInfoEnabled()) {
+            logger.info(String.format("[%s] Disabling bulk-load mode", indexName));
+        }
+        String refreshInterval = indexSettings.get(new String[]{"index.refresh_interval", "refresh_interval"},
+                TimeValue.timeValueSeconds(1).toString());
+        String translogDurability = indexSettings.get(new String[]{"index.translog.durability", "translog.durability"},
+                Translog.Durabilty.REQUEST.name());
+        int numberOfReplicas = indexSettings.getAsInt(new String[]{"index.number_of_replicas", "number_of_replicas"}, 1);
+
+        client.admin().indices().prepareUpdateSettings(indexName)
+                .setSettings(Settings.settingsBuilder()
+                        .put("index.refresh_interval", refreshInterval)
+                        .put("index.translog.durability", translogDurability)
+                        .build())
+                .execute().actionGet();
+
+        if (maxNumSegments > 0) {
+            try {
+                client.admin().indices().prepareForceMerge(indexName)
+                        .setMaxNumSegments(maxNumSegments)
+                        .setFlush(true)
+                        .execute().actionGet();
+            }
+            catch (ElasticsearchException e) {
+                logger.warn(String.format("[%s] Error while merging index segments: %s", indexName, e.getMessage()));
+            }
+        }
+
+        client.admin().indices().prepareUpdateSettings(indexName)
+                .setSettings(Settings.settingsBuilder()
+                        .put("index.number_of_replicas", numberOfReplicas)
+                        .build())
+                .execute().actionGet();
+    }
+
     protected XContentBuilder createDefaultAnalyzer() {
         try {
             XContentBuilder analyzer = XContentFactory.jsonBuilder().startObject().startObject("analyzer")
@@ -160,8 +257,7 @@ public abstract class AbstractService implements Bean {
             String issuer = actualObj.get(Record.PROPERTY_ISSUER).asText();
             String signature = actualObj.get(Record.PROPERTY_SIGNATURE).asText();
 
-            String recordNoSign = recordJson.replaceAll(String.format(JSON_STRING_PROPERTY_REGEX, Record.PROPERTY_SIGNATURE), "")
-                    .replaceAll(String.format(JSON_STRING_PROPERTY_REGEX, Record.PROPERTY_HASH), "");
+            String recordNoSign = getRecordNoSign(recordJson);
 
             if (!cryptoService.verify(recordNoSign, signature, issuer)) {
                 throw new InvalidSignatureException("Invalid signature for JSON string: " + recordNoSign);
@@ -174,6 +270,53 @@ public abstract class AbstractService implements Bean {
         }
     }
 
+    /**
+     * Verify the issuer signature of indexed records, in one batch. Invalid records are removed (and logged).
+     * @return the requests to execute
+     */
+    protected List<ActionRequest> filterValidIssuerSignatures(String indexName, List<ActionRequest> requests) {
+        List<SignedMessage> messages = new ArrayList<>(requests.size());
+        List<ActionRequest> signedRequests = new ArrayList<>(requests.size());
+        List<ActionRequest> result = new ArrayList<>(requests.size());
+        for (ActionRequest request: requests) {
+            if (!(request instanceof IndexRequest)) {
+                result.add(request);
+                continue;
+            }
+            String recordJson = ((IndexRequest) request).source().toUtf8();
+            try {
+                JsonNode actualObj = objectMapper.readTree(recordJson);
+                JsonNode issuer = actualObj.get(Record.PROPERTY_ISSUER);
+                JsonNode signature = actualObj.get(Record.PROPERTY_SIGNATURE);
+                if (issuer != null && signature != null) {
+                    messages.add(new SignedMessage(getRecordNoSign(recordJson), signature.asText(), issuer.asText()));
+                    signedRequests.add(request);
+                    continue;
+                }
+            }
+            catch(IOException e) {
+                // Invalid JSON: skip the record
+            }
+            logger.warn(String.format("[%s] Skipping record with invalid format: %s", indexName, recordJson));
+        }
+
+        boolean[] valid = cryptoService.verifyBatch(messages);
+        for (int i = 0; i < valid.length; i++) {
+            if (valid[i]) {
+                result.add(signedRequests.get(i));
+            }
+            else {
+                logger.warn(String.format("[%s] Skipping record with invalid signature: %s", indexName, messages.get(i).getMessage()));
+            }
+        }
+        return result;
+    }
+
+    protected String getRecordNoSign(String recordJson) {
+        return recordJson.replaceAll(String.format(JSON_STRING_PROPERTY_REGEX, Record.PROPERTY_SIGNATURE), "")
+                .replaceAll(String.format(JSON_STRING_PROPERTY_REGEX, Record.PROPERTY_HASH), "");
+    }
+
     protected void checkSameDocumentIssuer(String index, String type, String id, String expectedIssuer) throws ElasticsearchException {
 
         GetResponse response = client.prepareGet(index, type, id)
@@ -227,13 +370,17 @@ public abstract class AbstractService implements Bean {
     }
 
     protected void bulkFromFile(File file, String indexName, String indexType, StringReaderHandler handler) {
+        bulkFromFile(file, indexName, indexType, handler, false);
+    }
+
+    protected void bulkFromFile(File file, String indexName, String indexType, StringReaderHandler handler, boolean verifyIssuerSignature) {
         Preconditions.checkNotNull(file);
         Preconditions.checkArgument(file.exists());
 
         InputStream is = null;
         try {
             is = new BufferedInputStream(new FileInputStream(file));
-            bulkFromStream(is, indexName, indexType, handler);
+            bulkFromStream(is, indexName, indexType, handler, verifyIssuerSignature);
         }
         catch(FileNotFoundException e) {
             throw new TechnicalException(String.format("[%s] Could not find file %s", indexName, file.getPath()), e);
@@ -255,6 +402,10 @@ public abstract class AbstractService implements Bean {
     }
 
     protected void bulkFromStream(InputStream is, String indexName, String indexType, StringReaderHandler handler) {
+        bulkFromStream(is, indexName, indexType, handler, false);
+    }
+
+    protected void bulkFromStream(InputStream is, String indexName, String indexType, StringReaderHandler handler, boolean verifyIssuerSignature) {
         Preconditions.checkNotNull(is);
         BulkRequest bulkRequest = Requests.bulkRequest();
 
@@ -297,7 +448,14 @@ public abstract class AbstractService implements Bean {
         }
 
         try {
-            client.bulk(bulkRequest).actionGet();
+            List<ActionRequest> requests = verifyIssuerSignature
+                    ? filterValidIssuerSignatures(indexName, bulkRequest.requests())
+                    : bulkRequest.requests();
+            BulkWriteService.Scope scope = bulkWriteService.newScope();
+            for (ActionRequest request: requests) {
+                scope.add(request);
+            }
+            scope.flushAndWait();
         } catch(Exception e) {
             throw new TechnicalException(String.format("[%s] Error while inserting rows into %s", indexName, indexType), e);
         }
@@ -377,6 +535,10 @@ public abstract class AbstractService implements Bean {
         }
     }
 
+    /**
+     * Execute a function, and retry on TechnicalException. Wait between retries with an exponential backoff
+     * (starting at the retry wait duration), jittered so that concurrent callers do not retry all together.
+     */
     protected <T> T executeWithRetry(RetryFunction<T> retryFunction) throws TechnicalException{
         int retry = 0;
         while (retry < retryCount) {
@@ -394,7 +556,7 @@ public abstract class AbstractService implements Bean {
                 }
 
                 try {
-                    Thread.sleep(retryWaitDuration); // waiting
+                    Thread.sleep(getRetryBackoff(retry)); // waiting
                 } catch (InterruptedException e2) {
                     throw new TechnicalException(e2);
                 }
@@ -404,6 +566,14 @@ public abstract class AbstractService implements Bean {
         throw new TechnicalException("Error while trying to execute a function with retry");
     }
 
+    /**
+     * @return a random wait duration, between half and full exponential backoff
+     */
+    protected long getRetryBackoff(int retry) {
+        long backoff = (long) retryWaitDuration << Math.min(retry - 1, 5);
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
     public interface RetryFunction<T> {
 
         T execute() throws TechnicalException;
@@ -27,11 +27,12 @@ import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.gson.Gson;
+import org.duniter.core.client.config.Configuration;
 import org.duniter.core.client.model.bma.BlockchainBlock;
 import org.duniter.core.client.model.bma.BlockchainParameters;
 import org.duniter.core.client.model.bma.EndpointProtocol;
 import org.duniter.core.client.model.bma.gson.GsonUtils;
-import org.duniter.core.client.model.bma.gson.JsonAttributeParser;
+import org.duniter.core.client.model.bma.gson.JsonBlockHeaderParser;
 import org.duniter.core.client.model.local.Peer;
 import org.duniter.core.client.service.bma.BlockchainRemoteService;
 import org.duniter.core.client.service.bma.NetworkRemoteService;
@@ -47,21 +48,27 @@ import org.duniter.core.util.ObjectUtils;
 import org.duniter.core.util.StringUtils;
 import org.duniter.elasticsearch.PluginSettings;
 import org.duniter.elasticsearch.exception.DuplicateIndexIdException;
+import org.duniter.elasticsearch.model.SyncState;
+import org.duniter.elasticsearch.service.blockchain.BlockHashIndex;
+import org.duniter.elasticsearch.service.blockchain.BlockIngestionQueue;
+import org.duniter.elasticsearch.service.blockchain.BlockRangeSet;
 import org.duniter.elasticsearch.threadpool.ThreadPool;
-import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
 import org.elasticsearch.action.bulk.BulkItemResponse;
-import org.elasticsearch.action.bulk.BulkRequestBuilder;
-import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.action.index.IndexRequestBuilder;
-import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.health.ClusterHealthStatus;
 import org.elasticsearch.common.inject.Inject;
-import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.query.QueryBuilders;
@@ -69,12 +76,17 @@ import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHitField;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.metrics.max.Max;
+import org.elasticsearch.search.fetch.source.FetchSourceContext;
 import org.elasticsearch.search.highlight.HighlightField;
+import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
 import org.nuiton.i18n.I18n;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by Benoit on 30/03/2015.
@@ -83,19 +95,34 @@ public class BlockchainService extends AbstractService {
 
     public static final String BLOCK_TYPE = "block";
     public static final String CURRENT_BLOCK_ID = "current";
+    public static final String SYNC_STATE_TYPE = "syncState";
+    public static final String SYNC_STATE_ID = "state";
+
+    // Fields read by the block header parser
+    private static final String[] BLOCK_HEADER_FIELDS = new String[]{"number", "currency", "hash", "previousHash"};
 
     private static final int SYNC_MISSING_BLOCK_MAX_RETRY = 5;
 
+    // Max indexed hashes read at once (multi-GET), when walking back to find a fork origin
+    private static final int FORK_CHECK_PREFETCH_COUNT = 20;
+
     private final ProgressionModel nullProgressionModel = new NullProgressionModel();
 
     private BlockchainRemoteService blockchainRemoteService;
     private RegistryService registryService;
+    private NetworkService networkService;
     private ThreadPool threadPool;
 
-    private JsonAttributeParser blockNumberParser = new JsonAttributeParser("number");
-    private JsonAttributeParser blockCurrencyParser = new JsonAttributeParser("currency");
-    private JsonAttributeParser blockHashParser = new JsonAttributeParser("hash");
-    private JsonAttributeParser blockPreviousHashParser = new JsonAttributeParser("previousHash");
+    private JsonBlockHeaderParser blockHeaderParser = new JsonBlockHeaderParser();
+
+    // Indexed block hashes, by currency
+    private final Map<String, BlockHashIndex> blockHashIndices = new ConcurrentHashMap<>();
+
+    // New blocks queues, by listened peer
+    private final Map<String, BlockIngestionQueue> newBlockQueues = new ConcurrentHashMap<>();
+
+    // Pending block writes, by currency (to wait only for this currency's blocks)
+    private final Map<String, BulkWriteService.Scope> blockWriteScopes = new ConcurrentHashMap<>();
 
     private Gson gson;
 
@@ -103,7 +130,7 @@ public class BlockchainService extends AbstractService {
     public BlockchainService(Client client, PluginSettings settings, ThreadPool threadPool,
                              final ServiceLocator serviceLocator){
         super("duniter.blockchain", client, settings);
-        this.gson = GsonUtils.newBuilder().create();
+        this.gson = GsonUtils.getGson();
         this.threadPool = threadPool;
         threadPool.scheduleOnStarted(() -> {
             blockchainRemoteService = serviceLocator.getBlockchainRemoteService();
@@ -115,13 +142,41 @@ public class BlockchainService extends AbstractService {
         this.registryService = registryService;
     }
 
+    @Inject
+    public void setNetworkService(NetworkService networkService) {
+        this.networkService = networkService;
+    }
+
+    /**
+     * Listen new blocks of a peer, and index them. Blocks are queued by the websocket, then indexed
+     * by the indexing executor. Blocks missed (after a reconnection, or when the queue is full) are recovered
+     * using the bulk /blocks endpoint. Does nothing if the peer is already listened.
+     */
     public BlockchainService listenAndIndexNewBlock(Peer peer){
-        blockchainRemoteService.addNewBlockListener(peer, message -> {
-            indexLastBlockFromJson(peer, message);
-        });
+        final AtomicInteger lastNumber = new AtomicInteger(-1);
+        final String peerKey = peer.toString();
+        BlockIngestionQueue queue = new BlockIngestionQueue(peerKey,
+                pluginSettings.getBlockchainListenerQueueSize(),
+                threadPool.executor(ThreadPool.Names.INDEXING),
+                json -> indexNewBlockFromJson(peer, json, lastNumber),
+                () -> indexMissingNewBlocks(peer, lastNumber));
+        if (newBlockQueues.putIfAbsent(peerKey, queue) != null) {
+            return this; // already listened
+        }
+        blockchainRemoteService.addNewBlockListener(peer, queue::offer, queue::signalGap);
         return this;
     }
 
+    /**
+     * Stop indexing new blocks (queued blocks are dropped)
+     */
+    public void close() {
+        for (BlockIngestionQueue queue : newBlockQueues.values()) {
+            queue.close();
+        }
+        newBlockQueues.clear();
+    }
+
     public BlockchainService indexLastBlocks(Peer peer) {
         indexLastBlocks(peer, nullProgressionModel);
         return this;
@@ -155,6 +210,12 @@ public class BlockchainService extends AbstractService {
             // Check if index exists
             createIndexIfNotExists(currencyName, true/*wait cluster health*/);
 
+            // Index left in bulk-load mode (e.g. node stopped during a previous sync): restore its settings
+            if (isBulkLoadMode(currencyName)) {
+                logger.warn(String.format("[%s] Index was left in bulk-load mode: restoring its settings", currencyName));
+                disableBulkLoadMode(currencyName, createIndexSettings(), -1/*no merge*/);
+            }
+
             // Then index all blocks
             BlockchainBlock peerCurrentBlock = blockchainRemoteService.getCurrentBlock(peer);
 
@@ -163,26 +224,38 @@ public class BlockchainService extends AbstractService {
 
                 // Get the last indexed block number
                 int startNumber = 0;
-
-                // Check if a previous sync has been done
-                BlockchainBlock indexedCurrentBlock = getCurrentBlock(currencyName);
-                if (indexedCurrentBlock != null && indexedCurrentBlock.getNumber() != null) {
-                    int indexedCurrentBlockNumber = indexedCurrentBlock.getNumber();
-
-                    // Make sure this block has been indexed by its number (not only with _id='current')
-                    indexedCurrentBlock = getBlockById(currencyName, indexedCurrentBlockNumber);
-
-                    // If current block exists on index, by _id=number AND _id=current
-                    // then keep it and sync only next blocks
-                    if (indexedCurrentBlock != null) {
-                        startNumber = indexedCurrentBlockNumber + 1;
-                    }
+                String indexedStartPreviousHash = null;
+                BlockRangeSet gaps = new BlockRangeSet();
+
+                // Resume from the sync state, if any (no need to scan the index)
+                SyncState syncState = getSyncState(currencyName);
+                if (syncState != null && syncState.getLastNumber() != null) {
+                    startNumber = syncState.getLastNumber() + 1;
+                    indexedStartPreviousHash = syncState.getLastHash();
+                    gaps.addAll(syncState.getGaps());
                 }
+                else {
+                    // Check if a previous sync has been done
+                    JsonBlockHeaderParser.Header indexedCurrentBlock = getBlockHeaderByIdStr(currencyName, CURRENT_BLOCK_ID);
+                    if (indexedCurrentBlock != null && indexedCurrentBlock.getNumber() != -1) {
+                        int indexedCurrentBlockNumber = indexedCurrentBlock.getNumber();
+
+                        // Make sure this block has been indexed by its number (not only with _id='current')
+                        // If current block exists on index, by _id=number AND _id=current
+                        // then keep it and sync only next blocks
+                        if (getBlockHashIndex(currencyName).contains(indexedCurrentBlockNumber)) {
+                            startNumber = indexedCurrentBlockNumber + 1;
+                        }
+                    }
 
-                // When current block not found,
-                // try to use the max(number), because block with _id='current' may not has been indexed
-                if (startNumber <= 1 ){
-                    startNumber = getMaxBlockNumber(currencyName) + 1;
+                    // When current block not found,
+                    // try to use the max(number), because block with _id='current' may not has been indexed
+                    if (startNumber <= 1 ){
+                        startNumber = getBlockHashIndex(currencyName).getMaxNumber() + 1;
+                    }
+                    if (startNumber > 0) {
+                        gaps = getBlockHashIndex(currencyName).toRangeSet().getGaps(0, startNumber - 1);
+                    }
                 }
 
                 // If some block has been already indexed: detect and resolve fork
@@ -196,7 +269,9 @@ public class BlockchainService extends AbstractService {
                         // block not exists: use a fake hash for fork detection (will force to compare previous blocks)
                         peerStartPreviousHash = "--";
                     }
-                    boolean resolved = detectAndResolveFork(peer, currencyName, peerStartPreviousHash, startNumber - 1);
+                    // Same hash as the sync state: no fork
+                    boolean resolved = Objects.equal(peerStartPreviousHash, indexedStartPreviousHash)
+                            || detectAndResolveFork(peer, currencyName, peerStartPreviousHash, startNumber - 1);
                     if (!resolved) {
                         // Bad blockchain ! skipping sync
                         logger.error(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.invalidBlockchain", currencyName, peer));
@@ -204,17 +279,54 @@ public class BlockchainService extends AbstractService {
                     }
                 }
 
-                if (startNumber <= peerCurrentBlockNumber) {
-                    Collection<String> missingBlocks = bulkIndex
-                            ? indexBlocksUsingBulk(peer, currencyName, startNumber, peerCurrentBlockNumber, progressionModel)
-                            : indexBlocksNoBulk(peer, currencyName, startNumber, peerCurrentBlockNumber, progressionModel);
+                if (startNumber <= peerCurrentBlockNumber || !gaps.isEmpty()) {
+                    // Use many peers, if many batches are need
+                    List<Peer> syncPeers = (bulkIndex && (peerCurrentBlockNumber - startNumber) >= pluginSettings.getIndexBulkSize())
+                            ? findSyncPeers(peer, peerCurrentBlock)
+                            : Collections.singletonList(peer);
+
+                    // Large sync: disable refresh and replicas, until the end
+                    boolean bulkLoad = bulkIndex && (peerCurrentBlockNumber - startNumber) >= pluginSettings.getBlockchainBulkLoadThreshold();
+                    if (bulkLoad) enableBulkLoadMode(currencyName);
+
+                    Collection<String> missingBlocks;
+                    try {
+                        BlockRangeSet missingRanges = new BlockRangeSet();
+
+                        // Repair gaps left by a previous sync
+                        for (int[] gap: gaps.getRanges()) {
+                            logger.info(String.format("[%s] [%s] Missing blocks #%s to #%s: indexing them...", currencyName, peer, gap[0], gap[1]));
+                            missingRanges.addAll(bulkIndex
+                                    ? indexBlocksUsingBulk(syncPeers, currencyName, gap[0], gap[1], nullProgressionModel)
+                                    : indexBlocksNoBulk(peer, currencyName, gap[0], gap[1], nullProgressionModel));
+                        }
+
+                        if (startNumber <= peerCurrentBlockNumber) {
+                            missingRanges.addAll(bulkIndex
+                                    ? indexBlocksUsingBulk(syncPeers, currencyName, startNumber, peerCurrentBlockNumber, progressionModel)
+                                    : indexBlocksNoBulk(peer, currencyName, startNumber, peerCurrentBlockNumber, progressionModel));
+                        }
+                        missingBlocks = missingRanges.toStrings();
 
-                    // If some blocks are missing, try to get it using other peers
-                    if (CollectionUtils.isNotEmpty(missingBlocks)) {
-                        progressionModel.setTask(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.otherPeers.task", currencyName));
-                        missingBlocks = indexMissingBlocksFromOtherPeers(peer, peerCurrentBlock, missingBlocks, 1);
+                        // If some blocks are missing, try to get it using other peers
+                        if (CollectionUtils.isNotEmpty(missingBlocks)) {
+                            progressionModel.setTask(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.otherPeers.task", currencyName));
+                            missingBlocks = indexMissingBlocksFromOtherPeers(peer, peerCurrentBlock, missingBlocks, 1);
+                        }
+                    }
+                    finally {
+                        if (bulkLoad) {
+                            getBlockWriteScope(currencyName).flushAndWait();
+                            disableBulkLoadMode(currencyName, createIndexSettings(), pluginSettings.getBlockchainBulkLoadMaxSegments());
+                        }
                     }
 
+                    // Make indexed blocks visible to searches
+                    refreshService.refreshAndWait(currencyName);
+
+                    // Save the sync state (checkpoint)
+                    saveSyncState(currencyName);
+
                     if (CollectionUtils.isEmpty(missingBlocks)) {
                         logger.info(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.succeed", currencyName, peer, (System.currentTimeMillis() - timeStart)));
                         progressionModel.setStatus(ProgressionModel.Status.SUCCESS);
@@ -228,6 +340,9 @@ public class BlockchainService extends AbstractService {
                     if (logger.isDebugEnabled()) {
                         logger.debug(String.format("[%s] [%s] Already up to date at block #%s.", currencyName, peer, peerCurrentBlockNumber));
                     }
+                    if (syncState == null) {
+                        saveSyncState(currencyName);
+                    }
                     progressionModel.setStatus(ProgressionModel.Status.SUCCESS);
                 }
             }
@@ -241,6 +356,8 @@ public class BlockchainService extends AbstractService {
 
     public BlockchainService deleteIndex(String currencyName) {
         deleteIndexIfExists(currencyName);
+        blockHashIndices.remove(currencyName);
+        blockWriteScopes.remove(currencyName);
         return this;
     }
 
@@ -264,23 +381,30 @@ public class BlockchainService extends AbstractService {
         logger.info(String.format("Creating index [%s]", currencyName));
 
         CreateIndexRequestBuilder createIndexRequestBuilder = client.admin().indices().prepareCreate(currencyName);
-        org.elasticsearch.common.settings.Settings indexSettings = org.elasticsearch.common.settings.Settings.settingsBuilder()
-                .put("number_of_shards", 1)
-                .put("number_of_replicas", 1)
-                //.put("analyzer", createDefaultAnalyzer())
-                .build();
-        createIndexRequestBuilder.setSettings(indexSettings);
+        createIndexRequestBuilder.setSettings(createIndexSettings());
         createIndexRequestBuilder.addMapping(BLOCK_TYPE, createBlockType());
+        createIndexRequestBuilder.addMapping(SYNC_STATE_TYPE, createSyncStateType());
         createIndexRequestBuilder.execute().actionGet();
     }
 
+    /**
+     * Settings of a blockchain index (also restored when leaving the bulk-load mode)
+     */
+    protected org.elasticsearch.common.settings.Settings createIndexSettings() {
+        return org.elasticsearch.common.settings.Settings.settingsBuilder()
+                .put("number_of_shards", pluginSettings.getBlockchainIndexShards())
+                .put("number_of_replicas", pluginSettings.getBlockchainIndexReplicas())
+                //.put("analyzer", createDefaultAnalyzer())
+                .put(pluginSettings.getBlockchainIndexSettings())
+                .build();
+    }
+
     public void createBlock(BlockchainBlock block) throws org.duniter.elasticsearch.exception.DuplicateIndexIdException {
         ObjectUtils.checkNotNull(block, "block could not be null") ;
         ObjectUtils.checkNotNull(block.getCurrency(), "block attribute 'blockchain' could not be null");
         ObjectUtils.checkNotNull(block.getNumber(), "block attribute 'number' could not be null");
 
-        BlockchainBlock existingBlock = getBlockById(block.getCurrency(), block.getNumber());
-        if (existingBlock != null) {
+        if (getBlockHashIndex(block.getCurrency()).contains(block.getNumber())) {
             throw new DuplicateIndexIdException(String.format("Block with number [%s] already exists.", block.getNumber()));
         }
 
@@ -300,10 +424,10 @@ public class BlockchainService extends AbstractService {
         ObjectUtils.checkNotNull(block.getNumber(), "block attribute 'number' could not be null");
         ObjectUtils.checkNotNull(block.getHash(), "block attribute 'hash' could not be null");
 
-        BlockchainBlock existingBlock = getBlockById(block.getCurrency(), block.getNumber());
+        String existingHash = getIndexedBlockHash(block.getCurrency(), block.getNumber());
 
         // Currency not exists, or has changed, so create it
-        if (existingBlock == null) {
+        if (existingHash == null) {
             if (logger.isTraceEnabled()) {
                 logger.trace(String.format("Insert new block [%s]", block.getNumber()));
             }
@@ -322,10 +446,10 @@ public class BlockchainService extends AbstractService {
                 }
             }
             else {
-                doUpdate = !StringUtils.equals(existingBlock.getHash(), block.getHash());
+                doUpdate = !StringUtils.equals(existingHash, block.getHash());
                 if (logger.isTraceEnabled()) {
                     if (doUpdate) {
-                        logger.trace(String.format("Update block [%s]: hash has been changed, old=[%s] new=[%s]", block.getNumber(), existingBlock.getHash(), block.getHash()));
+                        logger.trace(String.format("Update block [%s]: hash has been changed, old=[%s] new=[%s]", block.getNumber(), existingHash, block.getHash()));
                     }
                     else {
                         logger.trace(String.format("Skipping update block [%s]: hash is up to date.", block.getNumber()));
@@ -356,13 +480,15 @@ public class BlockchainService extends AbstractService {
                 .setSource(json);
 
         // Execute indexBlocksFromNode
-        ActionFuture<IndexResponse> futureResponse = indexRequest
-                .setRefresh(true)
-                .execute();
-
+        indexRequest.setRefresh(true);
         if (wait) {
-            futureResponse.actionGet();
+            getBlockWriteScope(block.getCurrency()).execute(indexRequest.request());
         }
+        else {
+            getBlockWriteScope(block.getCurrency()).add(indexRequest.request());
+        }
+
+        getBlockHashIndex(block.getCurrency()).put(block.getNumber(), block.getHash());
     }
 
     /**
@@ -383,12 +509,14 @@ public class BlockchainService extends AbstractService {
 
         // Execute indexBlocksFromNode
         if (!wait) {
-            indexRequest.execute();
+            getBlockWriteScope(currencyName).add(indexRequest.request());
         }
         else {
-            indexRequest.execute().actionGet();
+            getBlockWriteScope(currencyName).execute(indexRequest.request());
         }
 
+        getBlockHashIndex(currencyName).put(number, blockHeaderParser.parse(json).getHash());
+
         return this;
     }
 
@@ -416,9 +544,11 @@ public class BlockchainService extends AbstractService {
         ObjectUtils.checkNotNull(json);
         ObjectUtils.checkArgument(json.length() > 0);
 
-        String currencyName = blockCurrencyParser.getValueAsString(json);
-        int number = blockNumberParser.getValueAsInt(json);
-        String hash = blockHashParser.getValueAsString(json);
+        byte[] jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+        JsonBlockHeaderParser.Header header = blockHeaderParser.parse(jsonBytes);
+        String currencyName = header.getCurrency();
+        int number = header.getNumber();
+        String hash = header.getHash();
 
         logger.info(I18n.t("duniter4j.blockIndexerService.indexBlock", currencyName, peer, number, hash));
         if (logger.isTraceEnabled()) {
@@ -427,7 +557,7 @@ public class BlockchainService extends AbstractService {
 
         // Detecting fork and rollback is necessary
         if (detectFork) {
-            String previousHash = blockPreviousHashParser.getValueAsString(json);
+            String previousHash = header.getPreviousHash();
             boolean resolved = detectAndResolveFork(peer, currencyName, previousHash, number - 1);
             if (!resolved) {
                 // Bad blockchain ! Skipping block indexation
@@ -440,19 +570,20 @@ public class BlockchainService extends AbstractService {
         IndexRequestBuilder indexRequest = client.prepareIndex(currencyName, BLOCK_TYPE)
                 .setId(String.valueOf(number))
                 .setRefresh(refresh)
-                .setSource(json);
+                .setSource(jsonBytes);
 
         // Execute indexBlocksFromNode
         if (!wait) {
-            indexRequest.execute();
+            getBlockWriteScope(currencyName).add(indexRequest.request());
         }
         else {
-            indexRequest.execute().actionGet();
+            getBlockWriteScope(currencyName).execute(indexRequest.request());
         }
+        getBlockHashIndex(currencyName).put(number, hash);
 
         // Update current
         if (isCurrent) {
-            indexCurrentBlockFromJson(currencyName, json, true /*wait*/);
+            indexCurrentBlockFromJson(currencyName, jsonBytes, true /*wait*/);
         }
 
         return this;
@@ -483,7 +614,18 @@ public class BlockchainService extends AbstractService {
     */
     public void indexCurrentBlockFromJson(String currencyName, String json, boolean wait) {
         ObjectUtils.checkNotNull(json);
-        ObjectUtils.checkArgument(json.length() > 0);
+        indexCurrentBlockFromJson(currencyName, json.getBytes(StandardCharsets.UTF_8), wait);
+    }
+
+   /**
+    *
+    * @param currencyName
+    * @param json block as JSON (UTF-8 bytes)
+    * @pram wait need to wait until block processed ?
+    */
+    public void indexCurrentBlockFromJson(String currencyName, byte[] json, boolean wait) {
+        ObjectUtils.checkNotNull(json);
+        ObjectUtils.checkArgument(json.length > 0);
         ObjectUtils.checkArgument(StringUtils.isNotBlank(currencyName));
 
         // Preparing indexBlocksFromNode
@@ -492,26 +634,11 @@ public class BlockchainService extends AbstractService {
                 .setRefresh(true)
                 .setSource(json);
 
-        // Execute in a pool
+        // Execute (rejections are retried by the bulk write pipeline)
         if (!wait) {
-            boolean acceptedInPool = false;
-            while(!acceptedInPool)
-                try {
-                    indexRequest.execute();
-                    acceptedInPool = true;
-                }
-                catch(EsRejectedExecutionException e) {
-                    // not accepted, so wait
-                    try {
-                        Thread.sleep(1000); // 1s
-                    }
-                    catch(InterruptedException e2) {
-                        // silent
-                    }
-                }
-
+            getBlockWriteScope(currencyName).add(indexRequest.request());
         } else {
-            indexRequest.execute().actionGet();
+            getBlockWriteScope(currencyName).execute(indexRequest.request());
         }
     }
 
@@ -575,6 +702,76 @@ public class BlockchainService extends AbstractService {
                 : (int)result.getValue();
     }
 
+    /**
+     * Get the sync state, saved at the last sync checkpoint
+     * @return the sync state, or null if no sync has been done
+     */
+    public SyncState getSyncState(String currencyName) {
+        String json = getSyncStateAsJson(currencyName);
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, SyncState.class);
+        }
+        catch(IOException e) {
+            logger.warn(String.format("[%s] Unable to read the sync state: %s", currencyName, e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Get the sync state, as JSON
+     * @return the sync state, or null if no sync has been done
+     */
+    public String getSyncStateAsJson(String currencyName) {
+        if (!existsIndex(currencyName)) {
+            return null;
+        }
+        GetResponse response = client.prepareGet(currencyName, SYNC_STATE_TYPE, SYNC_STATE_ID)
+                .setFetchSource(true)
+                .execute().actionGet();
+        return response.isExists() ? response.getSourceAsString() : null;
+    }
+
+    /**
+     * Save the sync state, from indexed blocks. Pending blocks are flushed first,
+     * so the saved state never refer to a block not yet written.
+     */
+    public SyncState saveSyncState(String currencyName) {
+        try {
+            getBlockWriteScope(currencyName).flushAndWait();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        BlockHashIndex blockHashIndex = getBlockHashIndex(currencyName);
+        BlockRangeSet indexedBlocks = blockHashIndex.toRangeSet();
+        int lastNumber = indexedBlocks.getMaxNumber();
+
+        SyncState syncState = new SyncState();
+        syncState.setCurrency(currencyName);
+        syncState.setIndexedBlocks(indexedBlocks.toStrings());
+        syncState.setGaps(indexedBlocks.getGaps(0, lastNumber).toStrings());
+        if (lastNumber >= 0) {
+            syncState.setLastNumber(lastNumber);
+            syncState.setLastHash(getIndexedBlockHash(currencyName, lastNumber));
+        }
+        syncState.setTime(System.currentTimeMillis());
+
+        try {
+            getBlockWriteScope(currencyName).execute(client.prepareIndex(currencyName, SYNC_STATE_TYPE, SYNC_STATE_ID)
+                    .setSource(objectMapper.writeValueAsBytes(syncState))
+                    .request());
+        }
+        catch(IOException e) {
+            throw new TechnicalException(String.format("[%s] Unable to save the sync state: %s", currencyName, e.getMessage()), e);
+        }
+        return syncState;
+    }
+
     public BlockchainBlock getBlockById(String currencyName, int number) {
         return getBlockByIdStr(currencyName, String.valueOf(number));
     }
@@ -637,32 +834,160 @@ public class BlockchainService extends AbstractService {
         }
     }
 
+    public XContentBuilder createSyncStateType() {
+        try {
+            XContentBuilder mapping = XContentFactory.jsonBuilder()
+                    .startObject()
+                    .startObject(SYNC_STATE_TYPE)
+                    .startObject("properties")
+
+                    // currency
+                    .startObject("currency")
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // indexedBlocks
+                    .startObject("indexedBlocks")
+                    .field("type", "string")
+                    .field("index", "no")
+                    .endObject()
+
+                    // gaps
+                    .startObject("gaps")
+                    .field("type", "string")
+                    .field("index", "no")
+                    .endObject()
+
+                    // lastNumber
+                    .startObject("lastNumber")
+                    .field("type", "integer")
+                    .endObject()
+
+                    // lastHash
+                    .startObject("lastHash")
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // time
+                    .startObject("time")
+                    .field("type", "long")
+                    .endObject()
+
+                    .endObject()
+                    .endObject().endObject();
+
+            return mapping;
+        }
+        catch(IOException ioe) {
+            throw new TechnicalException("Error while getting mapping for sync state index: " + ioe.getMessage(), ioe);
+        }
+    }
+
     public BlockchainBlock getBlockByIdStr(String currencyName, String blockId) {
 
-        // Prepare request
-        SearchRequestBuilder searchRequest = client
-                .prepareSearch(currencyName)
-                .setTypes(BLOCK_TYPE)
-                .setSearchType(SearchType.DFS_QUERY_THEN_FETCH);
+        // Realtime GET (no search, no need to wait a refresh)
+        GetResponse response = client.prepareGet(currencyName, BLOCK_TYPE, blockId)
+                .setRealtime(true)
+                .execute().actionGet();
+        if (!response.isExists() || response.isSourceEmpty()) {
+            return null;
+        }
 
-        // If more than a word, search on terms match
-        searchRequest.setQuery(QueryBuilders.matchQuery("_id", blockId));
+        return toBlock(currencyName, blockId, response.getSourceAsBytes());
+    }
 
-        // Execute query
-        try {
-            SearchResponse searchResponse = searchRequest.execute().actionGet();
-            List<BlockchainBlock> blocks = toBlocks(searchResponse, false);
-            if (CollectionUtils.isEmpty(blocks)) {
-                return null;
+    /**
+     * Get the header of a block (number, currency, hash, previousHash), without reading the block content
+     * @return the block header, or null if not found
+     */
+    public JsonBlockHeaderParser.Header getBlockHeaderByIdStr(String currencyName, String blockId) {
+        GetResponse response = client.prepareGet(currencyName, BLOCK_TYPE, blockId)
+                .setRealtime(true)
+                .setFetchSource(BLOCK_HEADER_FIELDS, null)
+                .execute().actionGet();
+        if (!response.isExists() || response.isSourceEmpty()) {
+            return null;
+        }
+
+        return blockHeaderParser.parse(response.getSourceAsBytes());
+    }
+
+    /**
+     * Get some fields of a block (e.g. 'hash' or 'medianTime')
+     * @param fields the fields to fetch (wildcards are allowed)
+     * @return the fields values, or null if block not found
+     */
+    public Map<String, Object> getBlockFieldsByIdStr(String currencyName, String blockId, String... fields) {
+        ObjectUtils.checkArgument(fields != null && fields.length > 0);
+
+        GetResponse response = client.prepareGet(currencyName, BLOCK_TYPE, blockId)
+                .setRealtime(true)
+                .setFetchSource(fields, null)
+                .execute().actionGet();
+        if (!response.isExists()) {
+            return null;
+        }
+
+        return response.isSourceEmpty() ? Collections.emptyMap() : response.getSourceAsMap();
+    }
+
+    /**
+     * Get many blocks, in one request (multi-GET)
+     * @return found blocks, in the same order than the given numbers
+     */
+    public List<BlockchainBlock> getBlocksByIds(String currencyName, Collection<Integer> numbers) {
+        List<BlockchainBlock> result = Lists.newArrayListWithCapacity(numbers.size());
+        if (CollectionUtils.isEmpty(numbers)) {
+            return result;
+        }
+
+        MultiGetResponse response = prepareMultiGetBlocks(currencyName, numbers, null).execute().actionGet();
+        for (MultiGetItemResponse item : response.getResponses()) {
+            if (!item.isFailed() && item.getResponse().isExists() && !item.getResponse().isSourceEmpty()) {
+                result.add(toBlock(currencyName, item.getId(), item.getResponse().getSourceAsBytes()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get many block headers (number, currency, hash, previousHash), in one request (multi-GET)
+     * @return found headers, in the same order than the given numbers
+     */
+    public List<JsonBlockHeaderParser.Header> getBlockHeadersByIds(String currencyName, Collection<Integer> numbers) {
+        List<JsonBlockHeaderParser.Header> result = Lists.newArrayListWithCapacity(numbers.size());
+        if (CollectionUtils.isEmpty(numbers)) {
+            return result;
+        }
+
+        MultiGetResponse response = prepareMultiGetBlocks(currencyName, numbers, BLOCK_HEADER_FIELDS).execute().actionGet();
+        for (MultiGetItemResponse item : response.getResponses()) {
+            if (!item.isFailed() && item.getResponse().isExists() && !item.getResponse().isSourceEmpty()) {
+                result.add(blockHeaderParser.parse(item.getResponse().getSourceAsBytes()));
             }
+        }
+        return result;
+    }
 
-            // Return the unique result
-            return CollectionUtils.extractSingleton(blocks);
+    protected MultiGetRequestBuilder prepareMultiGetBlocks(String currencyName, Collection<Integer> numbers, String[] includes) {
+        MultiGetRequestBuilder request = client.prepareMultiGet().setRealtime(true);
+        FetchSourceContext fetchSource = includes != null ? new FetchSourceContext(includes, null) : null;
+        for (Integer number : numbers) {
+            request.add(new MultiGetRequest.Item(currencyName, BLOCK_TYPE, String.valueOf(number))
+                    .fetchSourceContext(fetchSource));
         }
-        catch(JsonSyntaxException e) {
+        return request;
+    }
+
+    protected BlockchainBlock toBlock(String currencyName, String blockId, byte[] json) {
+        try {
+            return gson.fromJson(new String(json, StandardCharsets.UTF_8), BlockchainBlock.class);
+        }
+        catch(com.google.gson.JsonSyntaxException e) {
             throw new TechnicalException(String.format("Error while getting indexed block #%s for blockchain [%s]", blockId, currencyName), e);
         }
-
     }
 
     protected List<BlockchainBlock> toBlocks(SearchResponse response, boolean withHighlight) {
@@ -674,7 +999,7 @@ public class BlockchainService extends AbstractService {
             if (searchHit.source() != null) {
                 String jsonString = new String(searchHit.source());
                 try {
-                    block = GsonUtils.newBuilder().create().fromJson(jsonString, BlockchainBlock.class);
+                    block = gson.fromJson(jsonString, BlockchainBlock.class);
                 } catch(Exception e) {
                     if (logger.isDebugEnabled()) {
                         logger.debug("Error while parsing block from JSON:\n" + jsonString);
@@ -742,7 +1067,23 @@ public class BlockchainService extends AbstractService {
     }
 
     public Collection<String> indexBlocksUsingBulk(Peer peer, String currencyName, int firstNumber, int lastNumber, ProgressionModel progressionModel) {
-        Set<String> missingBlockNumbers = new LinkedHashSet<>();
+        return indexBlocksUsingBulk(Collections.singletonList(peer), currencyName, firstNumber, lastNumber, progressionModel);
+    }
+
+    public Collection<String> indexBlocksUsingBulk(List<Peer> peers, String currencyName, int firstNumber, int lastNumber, ProgressionModel progressionModel) {
+        ObjectUtils.checkArgument(CollectionUtils.isNotEmpty(peers));
+        int parallelism = pluginSettings.getIndexBulkFetchParallelism();
+
+        // Use the pipeline only if more than one batch is need
+        if ((parallelism > 1 || peers.size() > 1) && (lastNumber - firstNumber) >= pluginSettings.getIndexBulkSize()) {
+            return indexBlocksUsingPipeline(peers, currencyName, firstNumber, lastNumber, progressionModel, Math.max(parallelism, peers.size()));
+        }
+
+        return indexBlocksUsingSequentialBulk(peers.get(0), currencyName, firstNumber, lastNumber, progressionModel);
+    }
+
+    protected Collection<String> indexBlocksUsingSequentialBulk(Peer peer, String currencyName, int firstNumber, int lastNumber, ProgressionModel progressionModel) {
+        Set<String> missingBlockNumbers = Collections.synchronizedSet(new LinkedHashSet<>());
 
         boolean debug = logger.isDebugEnabled();
 
@@ -783,9 +1124,12 @@ public class BlockchainService extends AbstractService {
             else {
 
                 List<Integer> processedBlockNumbers = Lists.newArrayList();
-                BulkRequestBuilder bulkRequest = client.prepareBulk();
+                BlockHashIndex blockHashIndex = getBlockHashIndex(currencyName);
+                JsonBlockHeaderParser.Header header = new JsonBlockHeaderParser.Header();
                 for (String blockAsJson : blocksAsJson) {
-                    int itemNumber = blockNumberParser.getValueAsInt(blockAsJson);
+                    byte[] blockBytes = blockAsJson.getBytes(StandardCharsets.UTF_8);
+                    blockHeaderParser.parse(blockBytes, header);
+                    int itemNumber = header.getNumber();
 
                     // update curNumber with max number;
                     if (itemNumber > batchFirstNumber) {
@@ -793,12 +1137,15 @@ public class BlockchainService extends AbstractService {
                     }
 
                     if (!processedBlockNumbers.contains(itemNumber)) {
+                        processedBlockNumbers.add(itemNumber);
+                        blockHashIndex.put(itemNumber, header.getHash());
+
                         // Add to bulk
-                        bulkRequest.add(client.prepareIndex(currencyName, BLOCK_TYPE, String.valueOf(itemNumber))
+                        getBlockWriteScope(currencyName).add(client.prepareIndex(currencyName, BLOCK_TYPE, String.valueOf(itemNumber))
                                 .setRefresh(false)
-                                .setSource(blockAsJson)
-                        );
-                        processedBlockNumbers.add(itemNumber);
+                                .setSource(blockBytes)
+                                .request(),
+                                newBlockIndexListener(itemNumber, missingBlockNumbers, blockHashIndex));
                     }
 
                     // If last block : also update the current block
@@ -806,41 +1153,218 @@ public class BlockchainService extends AbstractService {
                         currentBlockJson = blockAsJson;
                     }
                 }
+            }
+
+            // Report progress
+            reportIndexBlocksProgress(progressionModel, currencyName, peer, firstNumber, lastNumber, batchFirstNumber);
+            batchFirstNumber++; // increment for next loop
+        }
 
-                if (bulkRequest.numberOfActions() > 0) {
+        // Wait all blocks to be indexed
+        try {
+            getBlockWriteScope(currencyName).flushAndWait();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
 
-                    // Flush the bulk if not empty
-                    BulkResponse bulkResponse = bulkRequest.get();
+        if (StringUtils.isNotBlank(currentBlockJson)) {
+            indexCurrentBlockFromJson(currencyName, currentBlockJson, false);
+        }
+
+        synchronized (missingBlockNumbers) {
+            return new ArrayList<>(missingBlockNumbers);
+        }
+    }
 
-                    // If failures, continue but save missing blocks
-                    if (bulkResponse.hasFailures()) {
-                        // process failures by iterating through each bulk response item
-                        for (BulkItemResponse itemResponse : bulkResponse) {
-                            boolean skip = !itemResponse.isFailed()
-                                    || Objects.equal(CURRENT_BLOCK_ID, itemResponse.getId())
-                                    || missingBlockNumbers.contains(Integer.parseInt(itemResponse.getId()));
-                            if (!skip) {
-                                int itemNumber = Integer.parseInt(itemResponse.getId());
+    /**
+     * Index blocks using a pipeline: many fetchers get blocks batches concurrently (from the peer),
+     * and put them into a bounded queue. Meanwhile, the caller thread consume the queue,
+     * and send blocks to the bulk write pipeline (with a limited number of bulk in flight).
+     * Network latency and indexation are then overlapping.
+     * @return missing blocks, as a list sorted by block number (e.g. "10" or a range "1000-1999")
+     */
+    protected Collection<String> indexBlocksUsingPipeline(final Peer peer, final String currencyName,
+                                                          final int firstNumber, final int lastNumber,
+                                                          final ProgressionModel progressionModel,
+                                                          final int parallelism) {
+        return indexBlocksUsingPipeline(Collections.singletonList(peer), currencyName, firstNumber, lastNumber, progressionModel, parallelism);
+    }
+
+    /**
+     * Same as indexBlocksUsingPipeline(Peer, ...), but blocks range is split into stripes,
+     * downloaded from many peers (that should share the same blockchain - see findSyncPeers()).<br/>
+     * Each stripe is fetched from the peer with the best throughput (and the fewest outstanding requests),
+     * so a slow peer will received less stripes. When a peer fails (or stalls until the network timeout),
+     * the stripe is given to another peer, and the peer is disabled after too many consecutive failures.
+     * @return missing blocks, as a list sorted by block number (e.g. "10" or a range "1000-1999")
+     */
+    protected Collection<String> indexBlocksUsingPipeline(final List<Peer> peers, final String currencyName,
+                                                          final int firstNumber, final int lastNumber,
+                                                          final ProgressionModel progressionModel,
+                                                          final int parallelism) {
+        ObjectUtils.checkArgument(CollectionUtils.isNotEmpty(peers));
+        final Peer peer = peers.get(0);
+        final Set<String> missingBlockNumbers = Collections.synchronizedSet(new LinkedHashSet<>());
+        final boolean debug = logger.isDebugEnabled();
+
+        final int batchSize = pluginSettings.getIndexBulkSize();
+        final int batchCount = (lastNumber - firstNumber) / batchSize + 1;
+        final boolean multiPeers = peers.size() > 1;
+
+        final List<SyncPeer> syncPeers = Lists.newArrayListWithCapacity(peers.size());
+        for (Peer syncPeer: peers) {
+            syncPeers.add(new SyncPeer(syncPeer));
+        }
+        final BlockingDeque<Stripe> stripes = new LinkedBlockingDeque<>();
+        for (int i = 0; i < batchCount; i++) {
+            int from = firstNumber + i * batchSize;
+            stripes.add(new Stripe(from, Math.min(batchSize, lastNumber - from + 1)));
+        }
+        final AtomicInteger pendingStripeCount = new AtomicInteger(batchCount);
+        final BlockingQueue<BlocksBatch> queue = new ArrayBlockingQueue<>(parallelism * 2);
+
+        if (debug) {
+            logger.debug(String.format("[%s] [%s] Starting pipelined sync of blocks [%s-%s] (batch count: %s, peers: %s, fetchers: %s)",
+                    currencyName, peer, firstNumber, lastNumber, batchCount, peers.size(), parallelism));
+        }
+
+        // Start fetchers (in the sync executor)
+        ExecutorService syncExecutor = threadPool.executor(ThreadPool.Names.SYNC);
+        List<Future<?>> fetchers = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            fetchers.add(syncExecutor.submit(() -> {
+                try {
+                    while (pendingStripeCount.get() > 0 && !Thread.currentThread().isInterrupted()) {
+                        Stripe stripe = stripes.pollFirst(100, TimeUnit.MILLISECONDS);
+                        // No stripe available, but some are still running (and could be rescheduled): loop
+                        if (stripe == null) continue;
+
+                        List<byte[]> blocksAsJson = null;
+                        SyncPeer syncPeer = selectSyncPeer(syncPeers, stripe);
+                        if (syncPeer != null) {
+                            syncPeer.outstandingCount.incrementAndGet();
+                            long startTime = System.currentTimeMillis();
+                            try {
+                                // If only one peer: retry on the same peer. Otherwise, the retry will be done using another peer.
+                                blocksAsJson = multiPeers
+                                        ? fetchBlocksAsJson(syncPeer.peer, stripe.count, stripe.from)
+                                        : executeWithRetry(() -> fetchBlocksAsJson(syncPeer.peer, stripe.count, stripe.from));
+                            } catch (Exception e) {
+                                // Always catch, to make sure the batch will be put into the queue
                                 if (debug) {
-                                    logger.debug(String.format("Error while getting block #%s: %s. Skipping this block.", itemNumber, itemResponse.getFailureMessage()));
+                                    logger.debug(String.format("[%s] [%s] Error while getting blocks from #%s (count=%s): %s. Skipping blocks.", currencyName, syncPeer.peer, stripe.from, stripe.count, e.getMessage()));
                                 }
-                                missingBlockNumbers.add(itemResponse.getId());
                             }
+                            finally {
+                                syncPeer.outstandingCount.decrementAndGet();
+                            }
+
+                            if (CollectionUtils.isNotEmpty(blocksAsJson)) {
+                                syncPeer.onSuccess(blocksAsJson.size(), System.currentTimeMillis() - startTime);
+                            }
+                            else {
+                                syncPeer.onFailure();
+                                if (syncPeer.disabled && logger.isInfoEnabled()) {
+                                    logger.info(String.format("[%s] [%s] Too many errors: peer excluded from the sync.", currencyName, syncPeer.peer));
+                                }
+
+                                // Fail over: reschedule the stripe (will be fetched from another peer)
+                                stripe.failedPeers.add(syncPeer);
+                                if (stripe.failedPeers.size() < syncPeers.size()) {
+                                    stripes.addFirst(stripe);
+                                    continue;
+                                }
+                            }
+                        }
+
+                        pendingStripeCount.decrementAndGet();
+                        queue.put(new BlocksBatch(stripe.from, stripe.count, blocksAsJson));
+                    }
+                } catch (InterruptedException e) {
+                    // stop here (pipeline has been cancelled)
+                }
+            }));
+        }
+
+        byte[] currentBlockJson = null;
+        int indexedBlockCount = 0;
+        try {
+            for (int i = 0; i < batchCount; i++) {
+                // Check if stop (e.g. ask by user)
+                if (progressionModel.isCancel()) {
+                    progressionModel.setStatus(ProgressionModel.Status.STOPPED);
+                    if (logger.isInfoEnabled()) {
+                        logger.info(I18n.t("duniter4j.blockIndexerService.indexLastBlocks.stopped", currencyName, peer.getUrl()));
+                    }
+                    break;
+                }
+
+                BlocksBatch batch = queue.take();
+                final String batchRange = batch.from + "-" + (batch.from + batch.count - 1);
+
+                // Peer send no blocks: add range to missing blocks
+                if (CollectionUtils.isEmpty(batch.blocksAsJson)) {
+                    missingBlockNumbers.add(batchRange);
+                }
+
+                // Process received blocks
+                else {
+                    Set<Integer> processedBlockNumbers = new HashSet<>(batch.blocksAsJson.size());
+                    BlockHashIndex blockHashIndex = getBlockHashIndex(currencyName);
+                    JsonBlockHeaderParser.Header header = new JsonBlockHeaderParser.Header();
+                    for (byte[] blockAsJson : batch.blocksAsJson) {
+                        blockHeaderParser.parse(blockAsJson, header);
+                        int itemNumber = header.getNumber();
+                        if (processedBlockNumbers.add(itemNumber)) {
+                            blockHashIndex.put(itemNumber, header.getHash());
+
+                            // Add to bulk (could wait, if too many bulks are in flight)
+                            getBlockWriteScope(currencyName).add(client.prepareIndex(currencyName, BLOCK_TYPE, String.valueOf(itemNumber))
+                                    .setRefresh(false)
+                                    .setSource(blockAsJson)
+                                    .request(),
+                                    newBlockIndexListener(itemNumber, missingBlockNumbers, blockHashIndex));
+                        }
+
+                        // If last block : also update the current block
+                        if (itemNumber == lastNumber) {
+                            currentBlockJson = blockAsJson;
                         }
                     }
+
+                    // Peer send less blocks than expected: add holes to missing blocks
+                    indexedBlockCount += addMissingBlockNumbers(missingBlockNumbers, batch.from, batch.count, processedBlockNumbers);
                 }
+
+                // Report progress
+                reportIndexBlocksProgress(progressionModel, currencyName, peer, firstNumber, lastNumber, firstNumber + indexedBlockCount - 1);
             }
 
-            // Report progress
-            reportIndexBlocksProgress(progressionModel, currencyName, peer, firstNumber, lastNumber, batchFirstNumber);
-            batchFirstNumber++; // increment for next loop
+            // Wait all bulk responses
+            getBlockWriteScope(currencyName).flushAndWait();
+        }
+        catch (InterruptedException e) {
+            logger.warn(String.format("[%s] [%s] Blocks pipelined sync has been interrupted.", currencyName, peer));
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            for (Future<?> fetcher : fetchers) {
+                fetcher.cancel(true);
+            }
         }
 
-        if (StringUtils.isNotBlank(currentBlockJson)) {
+        if (currentBlockJson != null) {
             indexCurrentBlockFromJson(currencyName, currentBlockJson, false);
         }
 
-        return missingBlockNumbers;
+        // Sort missing blocks (required by indexMissingBlocksFromOtherPeers())
+        List<String> result;
+        synchronized (missingBlockNumbers) {
+            result = new ArrayList<>(missingBlockNumbers);
+        }
+        result.sort(Comparator.comparingInt(item -> Integer.parseInt(item.split("-")[0])));
+        return result;
     }
 
     /**
@@ -873,11 +1397,15 @@ public class BlockchainService extends AbstractService {
 
         // Select other peers, in filtering on the same blockchain version
 
-        // TODO : a activer quand les peers seront bien mis à jour (UP/DOWN, block, hash...)
-        //List<Peer> otherPeers = networkRemoteService.findPeers(peer, "UP", EndpointProtocol.BASIC_MERKLED_API,
-        //        currentBlock.getNumber(), currentBlock.getHash());
-        List<Peer> otherPeers = networkRemoteService.findPeers(peer, null, EndpointProtocol.BASIC_MERKLED_API,
-                null, null);
+        // Use crawled peers (fastest first) if any, that have reached the current block
+        List<Peer> otherPeers = networkService.getPeersFromBlock(currencyName, currentBlock.getNumber());
+        if (CollectionUtils.isEmpty(otherPeers)) {
+            // TODO : a activer quand les peers seront bien mis à jour (UP/DOWN, block, hash...)
+            //otherPeers = networkRemoteService.findPeers(peer, "UP", EndpointProtocol.BASIC_MERKLED_API,
+            //        currentBlock.getNumber(), currentBlock.getHash());
+            otherPeers = networkRemoteService.findPeers(peer, null, EndpointProtocol.BASIC_MERKLED_API,
+                    null, null);
+        }
 
         for(Peer childPeer: otherPeers) {
             if (logger.isInfoEnabled()) {
@@ -918,7 +1446,7 @@ public class BlockchainService extends AbstractService {
                             indexBlockFromJson(currencyName, blockNumber, blockAsJson.getBytes(), false, true/*wait*/);
 
                             // Remove this block number from the final missing list
-                            newMissingBlocks.remove(blockNumber);
+                            newMissingBlocks.remove(blockNumberStr);
                         }
                     }
                 }
@@ -979,19 +1507,138 @@ public class BlockchainService extends AbstractService {
     }
 
     protected boolean isBlockIndexed(String currencyName, int number, String hash) {
-        // Check if previous block exists
-        BlockchainBlock block = getBlockByIdStr(currencyName, String.valueOf(number));
-        boolean blockExists = block != null;
-        if (!blockExists) {
-            return blockExists;
+        // Check if previous block exists, with the same hash
+        return hash != null && hash.equals(getIndexedBlockHash(currencyName, number));
+    }
+
+    /**
+     * Get the hash of an indexed block. If unknown by the hash index (e.g. restored from the sync state), read it from ES
+     * @return the hash, or null if the block is not indexed
+     */
+    protected String getIndexedBlockHash(String currencyName, int number) {
+        BlockHashIndex blockHashIndex = getBlockHashIndex(currencyName);
+        String hash = blockHashIndex.get(number);
+        if (hash == null && blockHashIndex.contains(number)) {
+            JsonBlockHeaderParser.Header header = getBlockHeaderByIdStr(currencyName, String.valueOf(number));
+            if (header == null || header.getHash() == null) {
+                // Not really indexed
+                blockHashIndex.remove(number);
+                return null;
+            }
+            hash = header.getHash();
+            blockHashIndex.put(number, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Read, in one multi-GET, the indexed hashes still unknown by the hash index, for the given block numbers
+     * (from fromNumber, going back by step)
+     */
+    protected void loadIndexedBlockHashes(String currencyName, int fromNumber, int step, int count) {
+        BlockHashIndex blockHashIndex = getBlockHashIndex(currencyName);
+        List<Integer> numbers = new ArrayList<>(count);
+        for (int number = fromNumber; number >= 0 && numbers.size() < count; number -= Math.max(1, step)) {
+            if (blockHashIndex.contains(number) && !blockHashIndex.hasHash(number)) {
+                numbers.add(number);
+            }
+        }
+        if (numbers.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> notFound = new HashSet<>(numbers);
+        for (JsonBlockHeaderParser.Header header : getBlockHeadersByIds(currencyName, numbers)) {
+            if (header.getHash() != null && notFound.remove(header.getNumber())) {
+                blockHashIndex.put(header.getNumber(), header.getHash());
+            }
+        }
+        // Not really indexed
+        for (Integer number : notFound) {
+            blockHashIndex.remove(number);
+        }
+    }
+
+    /**
+     * Get the write scope of a currency: used for all block writes, so that waiting on it never depends on other services writes
+     */
+    protected BulkWriteService.Scope getBlockWriteScope(String currencyName) {
+        return blockWriteScopes.computeIfAbsent(currencyName, c -> bulkWriteService.newScope());
+    }
+
+    /**
+     * Get the in-memory index of block hashes. Restored from the sync state (or loaded from ES, if no sync state)
+     * at the first call, then updated on each indexed block.
+     */
+    protected BlockHashIndex getBlockHashIndex(String currencyName) {
+        return blockHashIndices.computeIfAbsent(currencyName, this::loadBlockHashIndex);
+    }
+
+    protected BlockHashIndex loadBlockHashIndex(String currencyName) {
+        BlockHashIndex result = new BlockHashIndex();
+        if (!existsIndex(currencyName)) {
+            return result;
+        }
+
+        // Restore indexed numbers from the sync state: hashes will be read only when need (e.g. by a fork check)
+        SyncState syncState = getSyncState(currencyName);
+        if (syncState != null && syncState.getIndexedBlocks() != null) {
+            result.putAll(BlockRangeSet.parse(syncState.getIndexedBlocks()));
+            if (syncState.getLastNumber() != null && syncState.getLastHash() != null) {
+                result.put(syncState.getLastNumber(), syncState.getLastHash());
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("[%s] Block hash index restored from the sync state: %s blocks", currencyName, result.size()));
+            }
+            return result;
+        }
+
+        long timeStart = System.currentTimeMillis();
+        TimeValue scrollTimeout = TimeValue.timeValueMinutes(1);
+
+        // Scroll over all blocks, reading only number and hash
+        SearchResponse response = client.prepareSearch(currencyName)
+                .setTypes(BLOCK_TYPE)
+                .setQuery(QueryBuilders.matchAllQuery())
+                .setFetchSource(new String[]{"number", "hash"}, null)
+                .addSort(SortBuilders.fieldSort("_doc"))
+                .setSize(pluginSettings.getIndexBulkSize())
+                .setScroll(scrollTimeout)
+                .execute().actionGet();
+        try {
+            while (response.getHits().getHits().length > 0) {
+                for (SearchHit hit : response.getHits().getHits()) {
+                    if (CURRENT_BLOCK_ID.equals(hit.getId())) continue;
+                    Map<String, Object> source = hit.getSource();
+                    Object number = source.get("number");
+                    Object hash = source.get("hash");
+                    if (number instanceof Number && hash instanceof String) {
+                        result.put(((Number) number).intValue(), (String) hash);
+                    }
+                }
+                response = client.prepareSearchScroll(response.getScrollId())
+                        .setScroll(scrollTimeout)
+                        .execute().actionGet();
+            }
+        }
+        finally {
+            client.prepareClearScroll().addScrollId(response.getScrollId()).execute();
         }
-        return block.getHash() != null && block.getHash().equals(hash);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("[%s] Block hash index loaded: %s blocks in %s ms", currencyName, result.size(), System.currentTimeMillis() - timeStart));
+        }
+        return result;
     }
 
     protected boolean detectAndResolveFork(Peer peer, final String currencyName, final String hash, final int number){
         int forkResyncWindow = pluginSettings.getNodeForkResyncWindow();
         String forkOriginHash = hash;
         int forkOriginNumber = number;
+        BlockHashIndex blockHashIndex = getBlockHashIndex(currencyName);
+
+        // Read the indexed hashes of the blocks to check (instead of one GET per block)
+        loadIndexedBlockHashes(currencyName, forkOriginNumber, forkResyncWindow, FORK_CHECK_PREFETCH_COUNT);
         boolean sameBlockIndexed = isBlockIndexed(currencyName, forkOriginNumber, forkOriginHash);
         while (!sameBlockIndexed && forkOriginNumber > 0) {
 
@@ -1002,13 +1649,16 @@ public class BlockchainService extends AbstractService {
             if (forkOriginNumber < 0) {
                 forkOriginNumber = 0;
             }
+            if (blockHashIndex.contains(forkOriginNumber) && !blockHashIndex.hasHash(forkOriginNumber)) {
+                loadIndexedBlockHashes(currencyName, forkOriginNumber, forkResyncWindow, FORK_CHECK_PREFETCH_COUNT);
+            }
 
             // Get remote block (with auto-retry)
             try {
                 final int currentNumberFinal = forkOriginNumber;
                 String testBlock = executeWithRetry(() ->
                     blockchainRemoteService.getBlockAsJson(peer, currentNumberFinal));
-                forkOriginHash = blockHashParser.getValueAsString(testBlock);
+                forkOriginHash = blockHeaderParser.parse(testBlock.getBytes(StandardCharsets.UTF_8)).getHash();
 
                 // Check is exists on ES index
                 sameBlockIndexed = isBlockIndexed(currencyName, forkOriginNumber, forkOriginHash);
@@ -1041,40 +1691,312 @@ public class BlockchainService extends AbstractService {
      */
     protected void deleteBlocksFromNumber(String currencyName, int fromNumber, int toNumber) {
 
-        int bulkSize = pluginSettings.getIndexBulkSize();
+        getBlockHashIndex(currencyName).remove(fromNumber, toNumber);
 
-        BulkRequestBuilder bulkRequest = client.prepareBulk();
         for (int i=fromNumber; i<=toNumber; i++) {
+            final int itemNumber = i;
+            getBlockWriteScope(currencyName).add(client.prepareDelete(currencyName, BLOCK_TYPE, String.valueOf(i)).request(),
+                    new ActionListener<BulkItemResponse>() {
+                        @Override
+                        public void onResponse(BulkItemResponse response) {
+                        }
 
-            bulkRequest.add(
-                client.prepareDelete(currencyName, BLOCK_TYPE, String.valueOf(i))
-            );
+                        @Override
+                        public void onFailure(Throwable e) {
+                            logger.debug(String.format("Error while deleting block #%s: %s. Skipping this deletion.", itemNumber, e.getMessage()));
+                        }
+                    });
+        }
+
+        // Wait all deletions
+        try {
+            getBlockWriteScope(currencyName).flushAndWait();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Create a listener, that will save a block as missing, if indexation failed
+     */
+    protected ActionListener<BulkItemResponse> newBlockIndexListener(final int itemNumber,
+                                                                     final Collection<String> missingBlockNumbers,
+                                                                     final BlockHashIndex blockHashIndex) {
+        return new ActionListener<BulkItemResponse>() {
+            @Override
+            public void onResponse(BulkItemResponse response) {
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug(String.format("Error while indexing block #%s: %s. Skipping this block.", itemNumber, e.getMessage()));
+                }
+                missingBlockNumbers.add(String.valueOf(itemNumber));
+                blockHashIndex.remove(itemNumber);
+            }
+        };
+    }
 
-            // Flush the bulk if not empty
-            if ((fromNumber - i % bulkSize) == 0) {
-                flushDeleteBulk(bulkRequest);
-                bulkRequest = client.prepareBulk();
+    /**
+     * Add to missing blocks the numbers of [from, from + count) that have not been processed (as ranges 'first-last',
+     * or a single number)
+     * @return the count of processed numbers, in the range
+     */
+    protected int addMissingBlockNumbers(Collection<String> missingBlockNumbers, int from, int count, Set<Integer> processedBlockNumbers) {
+        int processedCount = 0;
+        int missingFrom = -1;
+        for (int number = from; number <= from + count; number++) {
+            boolean missing = number < from + count && !processedBlockNumbers.contains(number);
+            if (missing) {
+                if (missingFrom == -1) missingFrom = number;
+                continue;
+            }
+            if (number < from + count) processedCount++;
+            if (missingFrom != -1) {
+                missingBlockNumbers.add(missingFrom == number - 1 ? String.valueOf(missingFrom) : missingFrom + "-" + (number - 1));
+                missingFrom = -1;
             }
         }
+        return processedCount;
+    }
 
-        // last flush
-        flushDeleteBulk(bulkRequest);
+    /**
+     * Get blocks from a peer, as JSON bytes (streamed, without intermediate string)
+     */
+    protected List<byte[]> fetchBlocksAsJson(Peer peer, int count, int from) {
+        List<byte[]> result = new ArrayList<>(count);
+        blockchainRemoteService.streamBlocksAsJson(peer, count, from, result::add);
+        return result;
     }
 
-    protected void flushDeleteBulk(BulkRequestBuilder bulkRequest) {
-        if (bulkRequest.numberOfActions() > 0) {
-            BulkResponse bulkResponse = bulkRequest.get();
-            // If failures, continue but save missing blocks
-            if (bulkResponse.hasFailures()) {
-                // process failures by iterating through each bulk response item
-                for (BulkItemResponse itemResponse : bulkResponse) {
-                    boolean skip = !itemResponse.isFailed();
-                    if (!skip) {
-                        int itemNumber = Integer.parseInt(itemResponse.getId());
-                        logger.debug(String.format("Error while deleting block #%s: %s. Skipping this deletion.", itemNumber, itemResponse.getFailureMessage()));
-                    }
+    /**
+     * Select the best peer to fetch the given stripe: the one with the lowest expected duration
+     * (average time per block, multiply by the outstanding requests count).
+     * Peers that already failed on the stripe are skipped.
+     * @return the best peer, or null if no more peer is available for this stripe
+     */
+    protected SyncPeer selectSyncPeer(List<SyncPeer> syncPeers, Stripe stripe) {
+        SyncPeer result = null;
+        double resultCost = 0;
+        for (SyncPeer syncPeer: syncPeers) {
+            if (syncPeer.disabled || stripe.failedPeers.contains(syncPeer)) continue;
+            double cost = (syncPeer.avgMillisPerBlock + 1) * (syncPeer.outstandingCount.get() + 1);
+            if (result == null || cost < resultCost) {
+                result = syncPeer;
+                resultCost = cost;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Index a block received from the websocket, after recovering blocks missed since the last one
+     */
+    protected void indexNewBlockFromJson(Peer peer, String json, AtomicInteger lastNumber) {
+        JsonBlockHeaderParser.Header header = blockHeaderParser.parse(json.getBytes(StandardCharsets.UTF_8));
+        String currencyName = header.getCurrency();
+        int number = header.getNumber();
+
+        int last = getLastNewBlockNumber(currencyName, lastNumber);
+        if (last >= 0 && number > last + 1
+                && !indexMissingNewBlocks(peer, currencyName, last, number - 1)) {
+            return;
+        }
+
+        indexLastBlockFromJson(peer, json);
+        lastNumber.set(number);
+        saveSyncState(currencyName);
+    }
+
+    /**
+     * Index blocks missed since the last received block (e.g. after a websocket reconnection)
+     */
+    protected void indexMissingNewBlocks(Peer peer, AtomicInteger lastNumber) {
+        BlockchainBlock currentBlock = blockchainRemoteService.getCurrentBlock(peer);
+        String currencyName = currentBlock.getCurrency();
+        int number = currentBlock.getNumber();
+
+        int last = getLastNewBlockNumber(currencyName, lastNumber);
+        if (last >= number) {
+            return;
+        }
+        if (!indexMissingNewBlocks(peer, currencyName, last, number)) {
+            return;
+        }
+        indexCurrentBlock(currentBlock, true/*wait*/);
+        lastNumber.set(number);
+        saveSyncState(currencyName);
+    }
+
+    /**
+     * Get the last indexed block number: the last received one, or else the max number of the hash index
+     * (restored from the sync state, and updated when a block is added, even if still in a bulk)
+     */
+    protected int getLastNewBlockNumber(String currencyName, AtomicInteger lastNumber) {
+        return lastNumber.get() >= 0 ? lastNumber.get() : getBlockHashIndex(currencyName).getMaxNumber();
+    }
+
+    /**
+     * Index the blocks missed after the last indexed block. The peer blockchain is first checked (and the fork
+     * resolved, if any) from the last indexed block, as the fork could have happened while disconnected.
+     * @return false if the peer blockchain has no common block with the indexed blockchain
+     */
+    protected boolean indexMissingNewBlocks(Peer peer, String currencyName, int last, int toNumber) {
+        if (last >= 0) {
+            String nextBlock = executeWithRetry(() -> blockchainRemoteService.getBlockAsJson(peer, last + 1));
+            JsonBlockHeaderParser.Header nextHeader = blockHeaderParser.parse(nextBlock.getBytes(StandardCharsets.UTF_8));
+            if (!detectAndResolveFork(peer, currencyName, nextHeader.getPreviousHash(), last)) {
+                // Bad blockchain ! Skipping blocks indexation
+                logger.error(I18n.t("duniter4j.blockIndexerService.detectFork.invalidBlockchain", currencyName, peer, last + 1, nextHeader.getHash()));
+                return false;
+            }
+        }
+
+        logger.info(String.format("[%s] [%s] Missing blocks #%s to #%s: indexing them...", currencyName, peer, last + 1, toNumber));
+        indexBlocksUsingBulk(peer, currencyName, last + 1, toNumber, nullProgressionModel);
+        return true;
+    }
+
+    /**
+     * Find peers usable to sync blocks, that share the same blockchain as the given peer
+     * (same block hash at the current block number).
+     * @return the given peer (always first), then other compatible peers
+     */
+    protected List<Peer> findSyncPeers(final Peer peer, final BlockchainBlock currentBlock) {
+        List<Peer> result = Lists.newArrayList(peer);
+        int maxPeers = pluginSettings.getSyncPeersMax();
+        if (!pluginSettings.isSyncPeersEnable() || maxPeers <= 1) {
+            return result;
+        }
+
+        final String currencyName = currentBlock.getCurrency();
+
+        // Use crawled peers (fastest first) if any, or ask the peer
+        List<Peer> candidates = networkService.getPeersFromBlock(currencyName, currentBlock.getNumber());
+        if (CollectionUtils.isEmpty(candidates)) {
+            try {
+                candidates = ServiceLocator.instance().getNetworkRemoteService()
+                        .findPeers(peer, null, EndpointProtocol.BASIC_MERKLED_API, null, null);
+            }
+            catch (TechnicalException e) {
+                logger.warn(String.format("[%s] [%s] Unable to get network peers: %s. Sync will use only this peer.", currencyName, peer, e.getMessage()));
+                return result;
+            }
+        }
+        if (CollectionUtils.isEmpty(candidates)) {
+            return result;
+        }
+
+        // Remove duplicated peers (and the main peer)
+        Map<String, Peer> candidatesByUrl = new LinkedHashMap<>();
+        for (Peer candidate: candidates) {
+            if (!Objects.equal(peer.getUrl(), candidate.getUrl())) {
+                candidatesByUrl.put(candidate.getUrl(), candidate);
+            }
+        }
+        if (candidatesByUrl.isEmpty()) {
+            return result;
+        }
+
+        // Check fork (in parallel, to avoid waiting each unreachable peer)
+        final int number = currentBlock.getNumber();
+        final String hash = currentBlock.getHash();
+        Map<Peer, CompletableFuture<BlockchainBlock>> checks = new LinkedHashMap<>();
+        for (final Peer candidate: candidatesByUrl.values()) {
+            checks.put(candidate, blockchainRemoteService.getBlockAsync(candidate, number));
+        }
+        try {
+            CompletableFuture.allOf(checks.values().toArray(new CompletableFuture[checks.size()]))
+                    .get(Configuration.instance().getNetworkTimeout(), TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException | TimeoutException e) {
+            // Some peers failed: continue with others
+        }
+        for (Map.Entry<Peer, CompletableFuture<BlockchainBlock>> check: checks.entrySet()) {
+            if (result.size() >= maxPeers) break;
+            CompletableFuture<BlockchainBlock> future = check.getValue();
+            // Skip unreachable peer, or peer on another fork
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                BlockchainBlock candidateBlock = future.getNow(null);
+                if (candidateBlock != null && Objects.equal(hash, candidateBlock.getHash())) {
+                    result.add(check.getKey());
                 }
             }
+            else {
+                future.cancel(false);
+            }
+        }
+
+        if (logger.isInfoEnabled()) {
+            logger.info(String.format("[%s] [%s] Will sync blocks using %s peers: %s", currencyName, peer, result.size(), result));
+        }
+        return result;
+    }
+
+    /**
+     * A peer used by the sync, with its statistics
+     */
+    protected static class SyncPeer {
+        private static final int MAX_CONSECUTIVE_FAILURES = 3;
+        private static final double EWMA_WEIGHT = 0.3;
+
+        final Peer peer;
+        final AtomicInteger outstandingCount = new AtomicInteger(0);
+        volatile double avgMillisPerBlock = 0;
+        volatile boolean disabled = false;
+        private int consecutiveFailures = 0;
+
+        SyncPeer(Peer peer) {
+            this.peer = peer;
+        }
+
+        synchronized void onSuccess(int blockCount, long durationMillis) {
+            double millisPerBlock = (double)durationMillis / blockCount;
+            avgMillisPerBlock = (avgMillisPerBlock == 0)
+                    ? millisPerBlock
+                    : EWMA_WEIGHT * millisPerBlock + (1 - EWMA_WEIGHT) * avgMillisPerBlock;
+            consecutiveFailures = 0;
+        }
+
+        synchronized void onFailure() {
+            consecutiveFailures++;
+            if (consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+                disabled = true;
+            }
+        }
+    }
+
+    /**
+     * A blocks range to fetch
+     */
+    protected static class Stripe {
+        final int from;
+        final int count;
+        final Set<SyncPeer> failedPeers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+        Stripe(int from, int count) {
+            this.from = from;
+            this.count = count;
+        }
+    }
+
+    /**
+     * A blocks batch, as fetched from a peer (blocks could be null if fetch failed)
+     */
+    private static class BlocksBatch {
+        final int from;
+        final int count;
+        final List<byte[]> blocksAsJson;
+
+        BlocksBatch(int from, int count, List<byte[]> blocksAsJson) {
+            this.from = from;
+            this.count = count;
+            this.blocksAsJson = blocksAsJson;
         }
     }
 }
@@ -0,0 +1,470 @@
+package org.duniter.elasticsearch.service;
+
+/*
+ * #%L
+ * duniter4j-elasticsearch-plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.elasticsearch.PluginSettings;
+import org.duniter.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared write pipeline, used by all services to index, update or delete documents.
+ * Requests are grouped into bulks (flushed by count, size or time), with a bounded number of bulks in flight:
+ * when the index cannot follow, callers are slowed down. Requests rejected by the index are retried,
+ * with an exponential backoff, and each caller is notified of its own item result.
+ * The refresh flag of a request is not applied per document: the index is only marked as dirty (see {@link RefreshService}).
+ * To wait for its own writes, a caller adds its requests through a {@link Scope}.
+ * Interactive writes (e.g. from REST) use {@link #execute(ActionRequest)}: they are sent directly, so they never
+ * wait behind a running sync.
+ */
+public class BulkWriteService extends AbstractLifecycleComponent<BulkWriteService> {
+
+    private final ESLogger logger = Loggers.getLogger("duniter.bulk");
+
+    private final Client client;
+    private final ThreadPool threadPool;
+    private final RefreshService refreshService;
+    private final BulkProcessor bulkProcessor;
+    private final int maxRetryCount;
+    private final long retryDelayMillis;
+
+    // Pending requests (by identity), with their listener
+    private final Map<ActionRequest<?>, PendingItem> pendingItems = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    @Inject
+    public BulkWriteService(Settings settings, Client client, PluginSettings pluginSettings, ThreadPool threadPool,
+                            RefreshService refreshService) {
+        super(settings);
+        this.client = client;
+        this.threadPool = threadPool;
+        this.refreshService = refreshService;
+        this.maxRetryCount = pluginSettings.getIndexBulkRetryCount();
+        this.retryDelayMillis = pluginSettings.getIndexBulkRetryDelay();
+
+        this.bulkProcessor = BulkProcessor.builder(client, new BulkProcessor.Listener() {
+                    @Override
+                    public void beforeBulk(long executionId, BulkRequest request) {
+                    }
+
+                    @Override
+                    public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+                        onBulkResponse(request, response);
+                    }
+
+                    @Override
+                    public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+                        onBulkFailure(request, failure);
+                    }
+                })
+                .setName("duniter4j-bulk")
+                .setBulkActions(pluginSettings.getIndexBulkSize())
+                .setBulkSize(new ByteSizeValue(pluginSettings.getIndexBulkMaxSizeInMb(), ByteSizeUnit.MB))
+                .setFlushInterval(TimeValue.timeValueMillis(pluginSettings.getIndexBulkFlushInterval()))
+                .setConcurrentRequests(Math.max(1, pluginSettings.getIndexBulkMaxInFlight()))
+                // Retries are done by item (see retry())
+                .setBackoffPolicy(BackoffPolicy.noBackoff())
+                .build();
+    }
+
+    @Override
+    protected void doStart() {
+    }
+
+    @Override
+    protected void doStop() {
+        bulkProcessor.flush();
+    }
+
+    @Override
+    protected void doClose() {
+        try {
+            bulkProcessor.awaitClose(30, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Add a request (index, update or delete) to the pipeline. This may block, when too many bulks are in flight.
+     * @param request the request
+     * @param listener notified with the item response, or the item failure
+     */
+    public void add(ActionRequest<?> request, ActionListener<BulkItemResponse> listener) {
+        add(request, listener, null);
+    }
+
+    /**
+     * Add a request (index, update or delete) to the pipeline, without listener (failures are only logged)
+     */
+    public void add(ActionRequest<?> request) {
+        add(request, null);
+    }
+
+    /**
+     * Execute a request (index, update or delete) directly, outside the bulks, and wait its result.
+     * Requests rejected by the index are retried, with the same backoff as bulk items.
+     * @param request the request
+     * @return the item response
+     * @throws org.elasticsearch.ElasticsearchException if the request failed
+     */
+    public BulkItemResponse execute(ActionRequest<?> request) {
+        ActionRequestValidationException validationException = request.validate();
+        if (validationException != null) {
+            throw validationException;
+        }
+
+        // Refresh is coalesced (see RefreshService)
+        boolean refresh = isRefresh(request);
+        if (refresh) {
+            setRefresh(request, false);
+        }
+
+        int attempt = 0;
+        while (true) {
+            try {
+                BulkItemResponse response = executeDirect(request);
+                if (refresh) {
+                    refreshService.markDirty(response.getIndex());
+                }
+                return response;
+            }
+            catch (RuntimeException e) {
+                boolean rejected = ExceptionsHelper.unwrapCause(e) instanceof EsRejectedExecutionException;
+                if (!rejected || attempt >= maxRetryCount || lifecycle.stoppedOrClosed()) {
+                    failureCount.incrementAndGet();
+                    throw e;
+                }
+            }
+            long delay = retryDelayMillis << attempt;
+            attempt++;
+            retryCount.incrementAndGet();
+            try {
+                Thread.sleep(delay);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EsRejectedExecutionException("Interrupted while retrying a rejected request");
+            }
+        }
+    }
+
+    /**
+     * Create a new scope, to add requests and then wait only for them
+     */
+    public Scope newScope() {
+        return new Scope();
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /* -- protected methods -- */
+
+    protected void add(ActionRequest<?> request, ActionListener<BulkItemResponse> listener, Scope scope) {
+        // Validate now: an invalid request would make the whole bulk fail
+        ActionRequestValidationException validationException = request.validate();
+        if (validationException != null) {
+            throw validationException;
+        }
+
+        pendingCount.incrementAndGet();
+        // Register before adding, as the bulk could be executed immediately
+        PendingItem item = new PendingItem(listener, scope);
+        if (scope != null) scope.register(item);
+        pendingItems.put(request, item);
+        try {
+            bulkProcessor.add(request);
+        }
+        catch (RuntimeException e) {
+            pendingItems.remove(request);
+            onItemDone(item);
+            throw e;
+        }
+    }
+
+    protected void onBulkResponse(BulkRequest request, BulkResponse response) {
+        List<ActionRequest> requests = request.requests();
+        for (BulkItemResponse item : response.getItems()) {
+            ActionRequest<?> itemRequest = requests.get(item.getItemId());
+            if (item.isFailed() && item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+                retry(itemRequest, item.getFailure().getCause());
+            }
+            else if (item.isFailed()) {
+                onItemFailure(itemRequest, item.getFailure().getCause());
+            }
+            else {
+                onItemResponse(itemRequest, item);
+            }
+        }
+    }
+
+    protected void onBulkFailure(BulkRequest request, Throwable failure) {
+        boolean rejected = ExceptionsHelper.unwrapCause(failure) instanceof EsRejectedExecutionException;
+        for (ActionRequest<?> itemRequest : request.requests()) {
+            if (rejected) {
+                retry(itemRequest, failure);
+            }
+            else {
+                onItemFailure(itemRequest, failure);
+            }
+        }
+    }
+
+    /**
+     * Add again the request, after a delay (exponential backoff)
+     */
+    protected void retry(ActionRequest<?> request, Throwable cause) {
+        PendingItem item = pendingItems.get(request);
+        if (item == null) return;
+        if (item.attempt >= maxRetryCount || lifecycle.stoppedOrClosed()) {
+            onItemFailure(request, cause);
+            return;
+        }
+        long delay = retryDelayMillis << item.attempt;
+        item.attempt++;
+        retryCount.incrementAndGet();
+        if (logger.isTraceEnabled()) {
+            logger.trace(String.format("Request rejected by the index: retrying in %s ms (attempt %s/%s)", delay, item.attempt, maxRetryCount));
+        }
+        try {
+            threadPool.schedule(() -> {
+                try {
+                    bulkProcessor.add(request);
+                }
+                catch (RuntimeException e) {
+                    onItemFailure(request, e);
+                }
+            }, TimeValue.timeValueMillis(delay));
+        }
+        catch (EsRejectedExecutionException e) {
+            onItemFailure(request, cause);
+        }
+    }
+
+    protected void onItemResponse(ActionRequest<?> request, BulkItemResponse response) {
+        // Refresh is ignored inside a bulk: only mark the index as dirty (refreshes are coalesced)
+        if (isRefresh(request)) {
+            refreshService.markDirty(response.getIndex());
+        }
+        notifyItemResponse(request, response);
+    }
+
+    protected void notifyItemResponse(ActionRequest<?> request, BulkItemResponse response) {
+        PendingItem item = pendingItems.remove(request);
+        try {
+            if (item != null && item.listener != null) {
+                item.listener.onResponse(response);
+            }
+        }
+        catch (Exception e) {
+            logger.error("Error in bulk listener: " + e.getMessage(), e);
+        }
+        finally {
+            onItemDone(item);
+        }
+    }
+
+    protected void onItemFailure(ActionRequest<?> request, Throwable failure) {
+        PendingItem item = pendingItems.remove(request);
+        failureCount.incrementAndGet();
+        try {
+            if (item != null && item.listener != null) {
+                item.listener.onFailure(failure);
+            }
+            else {
+                logger.warn(String.format("Error while writing document [%s]: %s", getDocumentPath(request), failure.getMessage()));
+            }
+        }
+        catch (Exception e) {
+            logger.error("Error in bulk listener: " + e.getMessage(), e);
+        }
+        finally {
+            onItemDone(item);
+        }
+    }
+
+    protected void onItemDone(PendingItem item) {
+        pendingCount.decrementAndGet();
+        if (item != null) {
+            if (item.scope != null) item.scope.unregister(item);
+            item.done.countDown();
+        }
+    }
+
+    protected boolean isRefresh(ActionRequest<?> request) {
+        return (request instanceof IndexRequest && ((IndexRequest) request).refresh())
+                || (request instanceof UpdateRequest && ((UpdateRequest) request).refresh())
+                || (request instanceof DeleteRequest && ((DeleteRequest) request).refresh());
+    }
+
+    protected void setRefresh(ActionRequest<?> request, boolean refresh) {
+        if (request instanceof IndexRequest) ((IndexRequest) request).refresh(refresh);
+        else if (request instanceof UpdateRequest) ((UpdateRequest) request).refresh(refresh);
+        else if (request instanceof DeleteRequest) ((DeleteRequest) request).refresh(refresh);
+    }
+
+    protected BulkItemResponse executeDirect(ActionRequest<?> request) {
+        if (request instanceof IndexRequest) {
+            return new BulkItemResponse(0, "index", client.index((IndexRequest) request).actionGet());
+        }
+        if (request instanceof UpdateRequest) {
+            return new BulkItemResponse(0, "update", client.update((UpdateRequest) request).actionGet());
+        }
+        if (request instanceof DeleteRequest) {
+            return new BulkItemResponse(0, "delete", client.delete((DeleteRequest) request).actionGet());
+        }
+        throw new IllegalArgumentException("Unsupported request: " + request.getClass().getName());
+    }
+
+    protected String getDocumentPath(ActionRequest<?> request) {
+        if (request instanceof IndexRequest) {
+            IndexRequest indexRequest = (IndexRequest) request;
+            return indexRequest.index() + "/" + indexRequest.type() + "/" + indexRequest.id();
+        }
+        if (request instanceof UpdateRequest) {
+            UpdateRequest updateRequest = (UpdateRequest) request;
+            return updateRequest.index() + "/" + updateRequest.type() + "/" + updateRequest.id();
+        }
+        if (request instanceof DeleteRequest) {
+            DeleteRequest deleteRequest = (DeleteRequest) request;
+            return deleteRequest.index() + "/" + deleteRequest.type() + "/" + deleteRequest.id();
+        }
+        return request.toString();
+    }
+
+    /* -- internal classes -- */
+
+    /**
+     * Requests added by a same caller. Waiting on a scope only waits for its own requests
+     * (added before the wait), so writes from other callers never block it.
+     */
+    public class Scope {
+        private final Set<PendingItem> items = ConcurrentHashMap.newKeySet();
+
+        private Scope() {
+        }
+
+        public void add(ActionRequest<?> request, ActionListener<BulkItemResponse> listener) {
+            BulkWriteService.this.add(request, listener, this);
+        }
+
+        public void add(ActionRequest<?> request) {
+            add(request, null);
+        }
+
+        public BulkItemResponse execute(ActionRequest<?> request) {
+            PlainActionFuture<BulkItemResponse> future = PlainActionFuture.newFuture();
+            add(request, future);
+            bulkProcessor.flush();
+            return future.actionGet();
+        }
+
+        /**
+         * Send pending requests, and wait until all requests added before this call are processed
+         */
+        public void flushAndWait() throws InterruptedException {
+            List<PendingItem> snapshot = new ArrayList<>(items);
+            if (snapshot.isEmpty()) return;
+
+            // Never call the processor while waiting on an item: its flush() blocks until in-flight bulks are done
+            bulkProcessor.flush();
+            for (PendingItem item : snapshot) {
+                while (!item.done.await(1, TimeUnit.SECONDS)) {
+                    // Retried items could be waiting in the processor
+                    bulkProcessor.flush();
+                }
+            }
+        }
+
+        public int getPendingCount() {
+            return items.size();
+        }
+
+        private void register(PendingItem item) {
+            items.add(item);
+        }
+
+        private void unregister(PendingItem item) {
+            items.remove(item);
+        }
+    }
+
+    private static class PendingItem {
+        final ActionListener<BulkItemResponse> listener;
+        final Scope scope;
+        int attempt = 0;
+        final CountDownLatch done = new CountDownLatch(1);
+
+        PendingItem(ActionListener<BulkItemResponse> listener, Scope scope) {
+            this.listener = listener;
+            this.scope = scope;
+        }
+    }
+}
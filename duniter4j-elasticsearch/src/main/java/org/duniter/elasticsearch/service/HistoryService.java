@@ -31,7 +31,7 @@ import org.duniter.core.service.CryptoService;
 import org.duniter.elasticsearch.PluginSettings;
 import org.duniter.elasticsearch.exception.NotFoundException;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
-import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
@@ -124,13 +124,13 @@ public class HistoryService extends AbstractService {
         }
 
         // Add deletion to history
-        IndexResponse response = client.prepareIndex(INDEX, DELETE_TYPE)
+        BulkItemResponse response = bulkWriteService.execute(client.prepareIndex(INDEX, DELETE_TYPE)
                 .setSource(recordJson)
                 .setRefresh(false)
-                .execute().actionGet();
+                .request());
 
         // Delete the document
-        client.prepareDelete(index, type, id).execute().actionGet();
+        bulkWriteService.execute(client.prepareDelete(index, type, id).request());
 
         return response.getId();
     }
@@ -30,8 +30,8 @@ import org.duniter.core.exception.TechnicalException;
 import org.duniter.core.service.CryptoService;
 import org.duniter.elasticsearch.PluginSettings;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.index.IndexRequestBuilder;
-import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
@@ -130,9 +130,9 @@ public class MarketService extends AbstractService {
                 .setSource(jsonCategory);
 
         // Execute indexBlocksFromNode
-        IndexResponse response = indexRequest
+        BulkItemResponse response = bulkWriteService.execute(indexRequest
                 .setRefresh(false)
-                .execute().actionGet();
+                .request());
 
         return response.getId();
     }
@@ -146,10 +146,10 @@ public class MarketService extends AbstractService {
             logger.debug(String.format("Indexing market record from issuer [%s]", issuer.substring(0, 8)));
         }
 
-        IndexResponse response = client.prepareIndex(INDEX, RECORD_TYPE)
+        BulkItemResponse response = bulkWriteService.execute(client.prepareIndex(INDEX, RECORD_TYPE)
                 .setSource(recordJson)
                 .setRefresh(false)
-                .execute().actionGet();
+                .request());
 
         return response.getId();
     }
@@ -166,9 +166,9 @@ public class MarketService extends AbstractService {
             logger.debug(String.format("Updating market record [%s] from issuer [%s]", id, issuer.substring(0, 8)));
         }
 
-        client.prepareUpdate(INDEX, RECORD_TYPE, id)
+        bulkWriteService.execute(client.prepareUpdate(INDEX, RECORD_TYPE, id)
                 .setDoc(recordJson)
-                .execute().actionGet();
+                .request());
     }
 
     public String indexCommentFromJson(String commentJson) {
@@ -180,10 +180,10 @@ public class MarketService extends AbstractService {
             logger.debug(String.format("Indexing a comment from issuer [%s]", issuer.substring(0, 8)));
         }
 
-        IndexResponse response = client.prepareIndex(INDEX, RECORD_COMMENT_TYPE)
+        BulkItemResponse response = bulkWriteService.execute(client.prepareIndex(INDEX, RECORD_COMMENT_TYPE)
                 .setSource(commentJson)
                 .setRefresh(false)
-                .execute().actionGet();
+                .request());
         return response.getId();
     }
 
@@ -200,8 +200,8 @@ public class MarketService extends AbstractService {
         }
 
         // Execute indexBlocksFromNode
-        client.prepareUpdate(INDEX, RECORD_COMMENT_TYPE, id)
-                .execute().actionGet();
+        bulkWriteService.execute(client.prepareUpdate(INDEX, RECORD_COMMENT_TYPE, id)
+                .request());
     }
 
     public MarketService fillRecordCategories() {
@@ -35,8 +35,8 @@ import org.duniter.elasticsearch.PluginSettings;
 import org.duniter.elasticsearch.exception.InvalidFormatException;
 import org.duniter.elasticsearch.exception.InvalidSignatureException;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.index.IndexRequestBuilder;
-import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
@@ -121,10 +121,10 @@ public class MessageService extends AbstractService {
             logger.debug(String.format("Indexing a record from issuer [%s]", issuer.substring(0, 8)));
         }
 
-        IndexResponse response = client.prepareIndex(INDEX, RECORD_TYPE)
+        BulkItemResponse response = bulkWriteService.execute(client.prepareIndex(INDEX, RECORD_TYPE)
                 .setSource(recordJson)
                 .setRefresh(false)
-                .execute().actionGet();
+                .request());
 
         return response.getId();
     }
@@ -0,0 +1,275 @@
+package org.duniter.elasticsearch.service;
+
+/*
+ * #%L
+ * duniter4j-elasticsearch-plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.core.client.model.bma.EndpointProtocol;
+import org.duniter.core.client.model.local.NetworkPeerInfo;
+import org.duniter.core.client.model.local.Peer;
+import org.duniter.core.client.service.HttpService;
+import org.duniter.core.client.service.bma.NetworkRemoteService;
+import org.duniter.core.exception.TechnicalException;
+import org.duniter.core.util.CollectionUtils;
+import org.duniter.core.util.ObjectUtils;
+import org.duniter.elasticsearch.PluginSettings;
+import org.duniter.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Keep an up-to-date map of the network peers, by crawling the network periodically
+ * (see NetworkRemoteService.crawlPeers()). Peers can also be indexed, in the currency index.
+ */
+public class NetworkService extends AbstractService {
+
+    public static final String PEER_TYPE = "peer";
+
+    private final ThreadPool threadPool;
+    private NetworkRemoteService networkRemoteService;
+    private HttpService httpService;
+
+    private final Map<String, List<NetworkPeerInfo>> peersByCurrency = new ConcurrentHashMap<>();
+    private final Set<String> mappedCurrencies = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean crawling = new AtomicBoolean(false);
+    private ScheduledFuture<?> crawlSchedule;
+
+    @Inject
+    public NetworkService(Client client, PluginSettings settings, ThreadPool threadPool,
+                          final ServiceLocator serviceLocator){
+        super("duniter.network", client, settings);
+        this.threadPool = threadPool;
+        threadPool.scheduleOnStarted(() -> {
+            networkRemoteService = serviceLocator.getNetworkRemoteService();
+            httpService = serviceLocator.getHttpService();
+        });
+    }
+
+    /**
+     * Crawl the network now (asynchronously), then periodically. Does nothing if already started.
+     * @param peer the first peer to ask
+     */
+    public synchronized NetworkService startCrawling(Peer peer) {
+        if (!pluginSettings.isNetworkCrawlerEnable() || crawlSchedule != null) {
+            return this;
+        }
+        Runnable crawlJob = () -> threadPool.executor(ThreadPool.Names.IO).execute(() -> {
+            // Skip if the previous crawl is still running
+            if (!crawling.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                crawl(peer);
+            }
+            catch (TechnicalException e) {
+                logger.warn(String.format("[%s] Unable to crawl the network: %s", peer, e.getMessage()));
+            }
+            finally {
+                crawling.set(false);
+            }
+        });
+        crawlJob.run();
+        crawlSchedule = threadPool.scheduleWithFixedDelay(crawlJob, TimeValue.timeValueMillis(pluginSettings.getNetworkCrawlerInterval()));
+        return this;
+    }
+
+    /**
+     * Stop the periodic crawl (a running crawl is not interrupted)
+     */
+    public synchronized NetworkService stopCrawling() {
+        if (crawlSchedule != null) {
+            crawlSchedule.cancel(false);
+            crawlSchedule = null;
+        }
+        return this;
+    }
+
+    /**
+     * Crawl the network, from the given peer, then update the peer map (and index, if enable)
+     * @return reachable peers
+     */
+    public List<NetworkPeerInfo> crawl(Peer peer) {
+        ObjectUtils.checkNotNull(peer);
+        long startTime = System.currentTimeMillis();
+
+        List<NetworkPeerInfo> peers = networkRemoteService.crawlPeers(peer, EndpointProtocol.BASIC_MERKLED_API,
+                pluginSettings.getNetworkCrawlerMaxParallel());
+        if (CollectionUtils.isEmpty(peers)) {
+            return peers;
+        }
+
+        // Group by currency (should be only one)
+        Map<String, List<NetworkPeerInfo>> peersByCurrencyName = peers.stream()
+                .filter(info -> info.getCurrency() != null)
+                .collect(Collectors.groupingBy(NetworkPeerInfo::getCurrency, LinkedHashMap::new, Collectors.toList()));
+
+        for (Map.Entry<String, List<NetworkPeerInfo>> entry: peersByCurrencyName.entrySet()) {
+            String currencyName = entry.getKey();
+            List<NetworkPeerInfo> currencyPeers = Collections.unmodifiableList(entry.getValue());
+            List<NetworkPeerInfo> previousPeers = peersByCurrency.put(currencyName, currencyPeers);
+
+            if (pluginSettings.isNetworkCrawlerIndexEnable()) {
+                indexPeers(currencyName, currencyPeers, previousPeers);
+            }
+        }
+
+        if (logger.isInfoEnabled()) {
+            logger.info(String.format("[%s] Network crawled: %s reachable peers, in %s ms", peer, peers.size(), System.currentTimeMillis() - startTime));
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("[%s] Concurrency limits by peer: %s", peer, httpService.getConcurrencyLimits()));
+            logger.debug(String.format("[%s] Coalesced GET requests: %s (reused results: %s)", peer,
+                    httpService.getCoalescedRequestCount(), httpService.getCoalesceCacheHitCount()));
+        }
+        return peers;
+    }
+
+    /**
+     * @return the last crawled peers of a currency, sorted by head block (desc) then latency. Empty if not crawled yet.
+     */
+    public List<NetworkPeerInfo> getPeers(String currencyName) {
+        List<NetworkPeerInfo> result = peersByCurrency.get(currencyName);
+        return result != null ? result : Collections.emptyList();
+    }
+
+    /**
+     * @return peers whose head block is at least the given block number, sorted by latency
+     */
+    public List<Peer> getPeersFromBlock(String currencyName, int blockNumber) {
+        return getPeers(currencyName).stream()
+                .filter(info -> info.getBlockNumber() != null && info.getBlockNumber() >= blockNumber)
+                .sorted(Comparator.comparingLong(NetworkPeerInfo::getLatency))
+                .map(NetworkPeerInfo::getPeer)
+                .collect(Collectors.toList());
+    }
+
+    public XContentBuilder createPeerType() {
+        try {
+            XContentBuilder mapping = XContentFactory.jsonBuilder()
+                    .startObject()
+                    .startObject(PEER_TYPE)
+                    .startObject("properties")
+
+                    // pubkey
+                    .startObject("pubkey")
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // host
+                    .startObject("host")
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // port
+                    .startObject("port")
+                    .field("type", "integer")
+                    .endObject()
+
+                    // head block number
+                    .startObject("blockNumber")
+                    .field("type", "integer")
+                    .endObject()
+
+                    // head block hash
+                    .startObject("blockHash")
+                    .field("type", "string")
+                    .field("index", "not_analyzed")
+                    .endObject()
+
+                    // latency (ms)
+                    .startObject("latency")
+                    .field("type", "long")
+                    .endObject()
+
+                    // crawl time (ms)
+                    .startObject("time")
+                    .field("type", "long")
+                    .endObject()
+
+                    .endObject()
+                    .endObject().endObject();
+
+            return mapping;
+        }
+        catch(IOException ioe) {
+            throw new TechnicalException("Error while getting mapping for peer index: " + ioe.getMessage(), ioe);
+        }
+    }
+
+    /* -- Internal methods -- */
+
+    protected void indexPeers(String currencyName, List<NetworkPeerInfo> peers, List<NetworkPeerInfo> previousPeers) {
+        // Index is created by the blockchain sync
+        if (!existsIndex(currencyName)) {
+            return;
+        }
+        if (mappedCurrencies.add(currencyName)) {
+            client.admin().indices().preparePutMapping(currencyName)
+                    .setType(PEER_TYPE)
+                    .setSource(createPeerType())
+                    .execute().actionGet();
+        }
+
+        Set<String> pubkeys = new HashSet<>();
+        try {
+            for (NetworkPeerInfo info: peers) {
+                pubkeys.add(info.getPubkey());
+                XContentBuilder source = XContentFactory.jsonBuilder()
+                        .startObject()
+                        .field("pubkey", info.getPubkey())
+                        .field("host", info.getPeer().getHost())
+                        .field("port", info.getPeer().getPort())
+                        .field("blockNumber", info.getBlockNumber())
+                        .field("blockHash", info.getBlockHash())
+                        .field("latency", info.getLatency())
+                        .field("time", info.getTime())
+                        .endObject();
+                bulkWriteService.add(client.prepareIndex(currencyName, PEER_TYPE, info.getPubkey())
+                        .setSource(source)
+                        .request());
+            }
+        }
+        catch(IOException e) {
+            throw new TechnicalException(String.format("[%s] Unable to index peers: %s", currencyName, e.getMessage()), e);
+        }
+
+        // Remove peers not reachable anymore
+        if (previousPeers != null) {
+            for (NetworkPeerInfo previousInfo: previousPeers) {
+                if (!pubkeys.contains(previousInfo.getPubkey())) {
+                    bulkWriteService.add(client.prepareDelete(currencyName, PEER_TYPE, previousInfo.getPubkey()).request());
+                }
+            }
+        }
+    }
+}
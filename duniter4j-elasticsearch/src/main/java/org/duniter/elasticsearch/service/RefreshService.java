@@ -0,0 +1,254 @@
+package org.duniter.elasticsearch.service;
+
+/*
+ * #%L
+ * duniter4j-elasticsearch-plugin
+ * %%
+ * Copyright (C) 2014 - 2016 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.duniter.elasticsearch.PluginSettings;
+import org.duniter.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesce index refreshes: writes only mark an index as dirty, and each dirty index
+ * is refreshed at most once every 'duniter.refresh.interval' ms.
+ * Callers that need to read their own writes (e.g. using a search) can wait on a refresh future.
+ */
+public class RefreshService extends AbstractLifecycleComponent<RefreshService> {
+
+    private final ESLogger logger = Loggers.getLogger("duniter.refresh");
+
+    private final Client client;
+    private final ThreadPool threadPool;
+    private final long intervalMillis;
+
+    private final Map<String, IndexState> indexStates = new ConcurrentHashMap<>();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+
+    @Inject
+    public RefreshService(Settings settings, Client client, PluginSettings pluginSettings, ThreadPool threadPool) {
+        super(settings);
+        this.client = client;
+        this.threadPool = threadPool;
+        this.intervalMillis = Math.max(0, pluginSettings.getIndexRefreshInterval());
+    }
+
+    @Override
+    protected void doStart() {
+    }
+
+    @Override
+    protected void doStop() {
+    }
+
+    @Override
+    protected void doClose() {
+        // Release waiting callers
+        for (Map.Entry<String, IndexState> entry: indexStates.entrySet()) {
+            List<ActionListener<Void>> listeners;
+            synchronized (entry.getValue()) {
+                listeners = entry.getValue().drainListeners();
+            }
+            notifyListeners(listeners, new EsRejectedExecutionException(String.format("Refresh of index [%s] aborted: service closed", entry.getKey())));
+        }
+        indexStates.clear();
+    }
+
+    /**
+     * Mark the index as dirty: it will be refreshed, at most after 'duniter.refresh.interval' ms
+     * @param index the index name
+     */
+    public void markDirty(String index) {
+        requestRefresh(index, null);
+    }
+
+    /**
+     * Ask a refresh of the given index. The listener is notified when a refresh, started after this call, is done
+     * @param index the index name
+     * @param listener the listener to notify
+     */
+    public void refresh(String index, ActionListener<Void> listener) {
+        requestRefresh(index, listener);
+    }
+
+    /**
+     * Ask a refresh of the given index
+     * @param index the index name
+     * @return a future, done when a refresh (started after this call) is done
+     */
+    public ActionFuture<Void> refresh(String index) {
+        PlainActionFuture<Void> future = PlainActionFuture.newFuture();
+        requestRefresh(index, future);
+        return future;
+    }
+
+    /**
+     * Ask a refresh of the given index, and wait until done (read-your-writes)
+     * @param index the index name
+     */
+    public void refreshAndWait(String index) {
+        refresh(index).actionGet();
+    }
+
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /* -- protected methods -- */
+
+    protected void requestRefresh(String index, ActionListener<Void> listener) {
+        requestCount.incrementAndGet();
+        IndexState state = indexStates.computeIfAbsent(index, k -> new IndexState());
+        long delay;
+        synchronized (state) {
+            if (listener != null) {
+                state.listeners.add(listener);
+            }
+            state.dirty = true;
+
+            // Already scheduled, or will be rescheduled at the end of the running refresh
+            if (state.scheduled || state.running) return;
+            state.scheduled = true;
+            delay = state.getNextRefreshDelay(intervalMillis);
+        }
+        scheduleRefresh(index, state, delay);
+    }
+
+    protected void scheduleRefresh(final String index, final IndexState state, long delay) {
+        try {
+            threadPool.schedule(() -> doRefresh(index, state), TimeValue.timeValueMillis(delay));
+        }
+        catch (EsRejectedExecutionException e) {
+            List<ActionListener<Void>> listeners;
+            synchronized (state) {
+                state.scheduled = false;
+                listeners = state.drainListeners();
+            }
+            notifyListeners(listeners, e);
+        }
+    }
+
+    protected void doRefresh(final String index, final IndexState state) {
+        final List<ActionListener<Void>> listeners;
+        synchronized (state) {
+            state.scheduled = false;
+            state.running = true;
+            state.dirty = false;
+            state.lastRefreshTime = System.currentTimeMillis();
+            listeners = state.drainListeners();
+        }
+
+        refreshCount.incrementAndGet();
+        if (logger.isTraceEnabled()) {
+            logger.trace(String.format("Refreshing index [%s] (%s waiting callers)", index, listeners.size()));
+        }
+
+        try {
+            client.admin().indices().prepareRefresh(index).execute(new ActionListener<RefreshResponse>() {
+                @Override
+                public void onResponse(RefreshResponse response) {
+                    onRefreshDone(index, state, listeners, null);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    logger.warn(String.format("Error while refreshing index [%s]: %s", index, e.getMessage()));
+                    onRefreshDone(index, state, listeners, e);
+                }
+            });
+        }
+        catch (RuntimeException e) {
+            logger.warn(String.format("Error while refreshing index [%s]: %s", index, e.getMessage()));
+            onRefreshDone(index, state, listeners, e);
+        }
+    }
+
+    protected void onRefreshDone(String index, IndexState state, List<ActionListener<Void>> listeners, Throwable failure) {
+        notifyListeners(listeners, failure);
+
+        // Writes have been done during the refresh: schedule the next one
+        long delay;
+        synchronized (state) {
+            state.running = false;
+            if (!state.dirty || state.scheduled) return;
+            state.scheduled = true;
+            delay = state.getNextRefreshDelay(intervalMillis);
+        }
+        scheduleRefresh(index, state, delay);
+    }
+
+    protected void notifyListeners(List<ActionListener<Void>> listeners, Throwable failure) {
+        for (ActionListener<Void> listener: listeners) {
+            try {
+                if (failure == null) {
+                    listener.onResponse(null);
+                }
+                else {
+                    listener.onFailure(failure);
+                }
+            }
+            catch (Exception e) {
+                logger.error("Error in refresh listener: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /* -- internal classes -- */
+
+    private static class IndexState {
+        boolean dirty;
+        boolean scheduled;
+        boolean running;
+        long lastRefreshTime;
+        List<ActionListener<Void>> listeners = new ArrayList<>();
+
+        long getNextRefreshDelay(long intervalMillis) {
+            return Math.max(0, lastRefreshTime + intervalMillis - System.currentTimeMillis());
+        }
+
+        List<ActionListener<Void>> drainListeners() {
+            List<ActionListener<Void>> result = listeners;
+            listeners = new ArrayList<>();
+            return result;
+        }
+    }
+}
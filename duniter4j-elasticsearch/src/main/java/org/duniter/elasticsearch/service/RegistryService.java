@@ -46,8 +46,8 @@ import org.duniter.elasticsearch.exception.AccessDeniedException;
 import org.duniter.elasticsearch.exception.DuplicateIndexIdException;
 import org.duniter.elasticsearch.exception.InvalidSignatureException;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.index.IndexRequestBuilder;
-import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.SearchPhaseExecutionException;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
@@ -88,7 +88,7 @@ public class RegistryService extends AbstractService {
                            CryptoService cryptoService,
                            BlockchainRemoteService blockchainRemoteService) {
         super("gchange." + INDEX, client, settings, cryptoService);
-        gson = GsonUtils.newBuilder().create();
+        gson = GsonUtils.getGson();
         this.blockchainRemoteService = blockchainRemoteService;
     }
 
@@ -173,10 +173,10 @@ public class RegistryService extends AbstractService {
             logger.debug(String.format("Indexing a registry record from issuer [%s]", issuer.substring(0, 8)));
         }
 
-        IndexResponse response = client.prepareIndex(INDEX, RECORD_TYPE)
+        BulkItemResponse response = bulkWriteService.execute(client.prepareIndex(INDEX, RECORD_TYPE)
                 .setSource(recordJson)
                 .setRefresh(false)
-                .execute().actionGet();
+                .request());
         return response.getId();
     }
 
@@ -192,9 +192,9 @@ public class RegistryService extends AbstractService {
             logger.debug(String.format("Updating market record [%s] from issuer [%s]", id, issuer.substring(0, 8)));
         }
 
-        client.prepareUpdate(INDEX, RECORD_TYPE, id)
+        bulkWriteService.execute(client.prepareUpdate(INDEX, RECORD_TYPE, id)
                 .setDoc(recordJson)
-                .execute().actionGet();
+                .request());
     }
 
     public void insertRecordFromBulkFile(File bulkFile) {
@@ -203,8 +203,8 @@ public class RegistryService extends AbstractService {
             logger.debug("Inserting records from file");
         }
 
-        // Insert cities
-        bulkFromFile(bulkFile, INDEX, RECORD_TYPE);
+        // Insert records (signatures are verified in one batch)
+        bulkFromFile(bulkFile, INDEX, RECORD_TYPE, null, true);
     }
 
     /**
@@ -264,9 +264,9 @@ public class RegistryService extends AbstractService {
                     .setSource(json);
 
             // Execute indexBlocksFromNode
-            indexRequest
+            bulkWriteService.execute(indexRequest
                     .setRefresh(true)
-                    .execute().actionGet();
+                    .request());
 
         } catch(JsonProcessingException e) {
             throw new TechnicalException(e);
@@ -597,9 +597,9 @@ public class RegistryService extends AbstractService {
                 .setSource(jsonCategory);
 
         // Execute indexBlocksFromNode
-        IndexResponse response = indexRequest
+        BulkItemResponse response = bulkWriteService.execute(indexRequest
                 .setRefresh(false)
-                .execute().actionGet();
+                .request());
 
         return response.getId();
     }
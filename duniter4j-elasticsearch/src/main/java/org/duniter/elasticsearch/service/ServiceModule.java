@@ -45,11 +45,14 @@ public class ServiceModule extends AbstractModule implements Module {
 
         // ES service
         bind(PluginSettings.class).asEagerSingleton();
+        bind(RefreshService.class).asEagerSingleton();
+        bind(BulkWriteService.class).asEagerSingleton();
         bind(RegistryService.class);
         bind(MarketService.class);
-        bind(BlockchainService.class);
+        bind(BlockchainService.class).asEagerSingleton();
         bind(MessageService.class);
         bind(HistoryService.class);
+        bind(NetworkService.class).asEagerSingleton();
 
         // Duniter Client API beans
         bindWithLocator(BlockchainRemoteService.class);
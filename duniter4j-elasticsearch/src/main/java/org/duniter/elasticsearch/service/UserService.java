@@ -32,8 +32,7 @@ import org.duniter.core.service.CryptoService;
 import org.duniter.elasticsearch.PluginSettings;
 import org.duniter.elasticsearch.exception.AccessDeniedException;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
-import org.elasticsearch.action.index.IndexResponse;
-import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.xcontent.XContentBuilder;
@@ -117,11 +116,11 @@ public class UserService extends AbstractService {
             logger.debug(String.format("Indexing a user profile from issuer [%s]", issuer.substring(0, 8)));
         }
 
-        IndexResponse response = client.prepareIndex(INDEX, PROFILE_TYPE)
+        BulkItemResponse response = bulkWriteService.execute(client.prepareIndex(INDEX, PROFILE_TYPE)
                 .setSource(profileJson)
                 .setId(issuer) // always use the issuer pubkey as id
                 .setRefresh(false)
-                .execute().actionGet();
+                .request());
         return response.getId();
     }
 
@@ -141,9 +140,9 @@ public class UserService extends AbstractService {
             logger.debug(String.format("Indexing a user profile from issuer [%s]", issuer.substring(0, 8)));
         }
 
-        UpdateResponse response = client.prepareUpdate(INDEX, PROFILE_TYPE, issuer)
+        bulkWriteService.execute(client.prepareUpdate(INDEX, PROFILE_TYPE, issuer)
                 .setDoc(profileJson)
-                .execute().actionGet();
+                .request());
     }
 
 
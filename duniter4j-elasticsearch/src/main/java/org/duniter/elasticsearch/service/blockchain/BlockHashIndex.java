@@ -0,0 +1,298 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * UCoin Java Client :: Core API
+ * %%
+ * Copyright (C) 2014 - 2015 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of block hashes (number to hash), for one currency.
+ * Hashes (64 hex chars) are stored as 32 bytes, in chunks allocated on demand.
+ * Used to check if a block is already indexed (e.g. for fork detection), without requesting ES.
+ * Blocks can also be marked as indexed without their hash (e.g. restored from the sync state): hashes are then loaded on demand.
+ */
+public class BlockHashIndex {
+
+    private static final int HASH_BYTES = 32;
+    private static final int CHUNK_BITS = 12; // 4096 blocks by chunk
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private byte[][] chunks = new byte[16][];
+    private final BitSet numbers = new BitSet();
+    // Numbers with a known hash
+    private final BitSet hashes = new BitSet();
+    // Hashes that could not be stored as 32 bytes (should never occur with Duniter hashes)
+    private final Map<Integer, String> otherHashes = new HashMap<>();
+
+    public void put(int number, String hash) {
+        if (number < 0 || hash == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (isHexHash(hash)) {
+                byte[] chunk = getOrCreateChunk(number >>> CHUNK_BITS);
+                int offset = (number & CHUNK_MASK) * HASH_BYTES;
+                for (int i = 0; i < HASH_BYTES; i++) {
+                    chunk[offset + i] = (byte) ((hexValue(hash.charAt(i * 2)) << 4) | hexValue(hash.charAt(i * 2 + 1)));
+                }
+                otherHashes.remove(number);
+            }
+            else {
+                otherHashes.put(number, hash);
+            }
+            numbers.set(number);
+            hashes.set(number);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Mark blocks as indexed, without knowing their hash
+     */
+    public void putAll(BlockRangeSet ranges) {
+        lock.writeLock().lock();
+        try {
+            for (int[] range : ranges.getRanges()) {
+                numbers.set(range[0], range[1] + 1);
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a range of blocks (e.g. after a fork)
+     * @param fromNumber first number (inclusive)
+     * @param toNumber last number (inclusive)
+     */
+    public void remove(int fromNumber, int toNumber) {
+        if (toNumber < fromNumber || toNumber < 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            numbers.clear(Math.max(0, fromNumber), toNumber + 1);
+            hashes.clear(Math.max(0, fromNumber), toNumber + 1);
+            if (!otherHashes.isEmpty()) {
+                otherHashes.keySet().removeIf(number -> number >= fromNumber && number <= toNumber);
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int number) {
+        remove(number, number);
+    }
+
+    public boolean contains(int number) {
+        if (number < 0) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return numbers.get(number);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Check if the hash of an indexed block is known
+     */
+    public boolean hasHash(int number) {
+        if (number < 0) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return hashes.get(number);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Check if a block is indexed with the given hash (false if the hash is unknown, see {@link #hasHash(int)})
+     */
+    public boolean contains(int number, String hash) {
+        if (number < 0 || hash == null) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            if (!hashes.get(number)) {
+                return false;
+            }
+            if (!otherHashes.isEmpty() && otherHashes.containsKey(number)) {
+                return hash.equals(otherHashes.get(number));
+            }
+            if (!isHexHash(hash)) {
+                return false;
+            }
+            byte[] chunk = chunks[number >>> CHUNK_BITS];
+            int offset = (number & CHUNK_MASK) * HASH_BYTES;
+            for (int i = 0; i < HASH_BYTES; i++) {
+                int b = chunk[offset + i] & 0xFF;
+                if (hexValue(hash.charAt(i * 2)) != (b >>> 4) || hexValue(hash.charAt(i * 2 + 1)) != (b & 0x0F)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the block hash, or null if not indexed or unknown
+     */
+    public String get(int number) {
+        if (number < 0) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            if (!hashes.get(number)) {
+                return null;
+            }
+            String otherHash = otherHashes.get(number);
+            if (otherHash != null) {
+                return otherHash;
+            }
+            byte[] chunk = chunks[number >>> CHUNK_BITS];
+            int offset = (number & CHUNK_MASK) * HASH_BYTES;
+            char[] result = new char[HASH_BYTES * 2];
+            for (int i = 0; i < HASH_BYTES; i++) {
+                int b = chunk[offset + i] & 0xFF;
+                result[i * 2] = HEX_CHARS[b >>> 4];
+                result[i * 2 + 1] = HEX_CHARS[b & 0x0F];
+            }
+            return new String(result);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the max indexed block number, or -1 if empty
+     */
+    public int getMaxNumber() {
+        lock.readLock().lock();
+        try {
+            return numbers.length() - 1;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return indexed block numbers, as ranges
+     */
+    public BlockRangeSet toRangeSet() {
+        lock.readLock().lock();
+        try {
+            return BlockRangeSet.fromBitSet(numbers);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return numbers.cardinality();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            chunks = new byte[16][];
+            numbers.clear();
+            hashes.clear();
+            otherHashes.clear();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* -- internal methods -- */
+
+    private static final char[] HEX_CHARS = "0123456789ABCDEF".toCharArray();
+
+    private byte[] getOrCreateChunk(int chunkIndex) {
+        if (chunkIndex >= chunks.length) {
+            byte[][] newChunks = new byte[Math.max(chunks.length * 2, chunkIndex + 1)][];
+            System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+            chunks = newChunks;
+        }
+        byte[] chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            chunk = new byte[CHUNK_SIZE * HASH_BYTES];
+            chunks[chunkIndex] = chunk;
+        }
+        return chunk;
+    }
+
+    /**
+     * Only upper case hex hashes are stored as bytes (to be able to restore the exact same string)
+     */
+    private static boolean isHexHash(String hash) {
+        if (hash.length() != HASH_BYTES * 2) {
+            return false;
+        }
+        for (int i = 0; i < hash.length(); i++) {
+            if (hexValue(hash.charAt(i)) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
+}
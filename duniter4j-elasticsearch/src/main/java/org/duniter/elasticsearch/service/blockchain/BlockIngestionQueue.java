@@ -0,0 +1,159 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * UCoin Java Client :: Core API
+ * %%
+ * Copyright (C) 2014 - 2015 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue of new blocks (as JSON) received from a websocket, drained by a task of the given executor,
+ * so that the socket thread never blocks. At most one drain task runs at a time, to index blocks in order,
+ * and no thread is used while the queue is empty.
+ * <p>When the queue is full, the block is dropped and a gap is signaled: the gap handler is then called
+ * by the drain task (before the next block), to recover missing blocks. A gap can also be signaled after a reconnection.
+ * If the gap handler fails, it is called again with the next block.</p>
+ */
+public class BlockIngestionQueue implements Closeable {
+
+    private static final ESLogger logger = Loggers.getLogger("duniter.blockchain");
+
+    private final String name;
+    private final BlockingQueue<String> queue;
+    private final Executor executor;
+    private final Consumer<String> blockHandler;
+    private final Runnable gapHandler;
+    private final AtomicBoolean gap = new AtomicBoolean(false);
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    public BlockIngestionQueue(String name, int capacity, Executor executor, Consumer<String> blockHandler, Runnable gapHandler) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.executor = executor;
+        this.blockHandler = blockHandler;
+        this.gapHandler = gapHandler;
+    }
+
+    /**
+     * Add a block to the queue, without blocking
+     */
+    public void offer(String json) {
+        if (closed) {
+            return;
+        }
+        if (!queue.offer(json)) {
+            logger.warn(String.format("[%s] Too many new blocks to index (%s waiting). Block dropped, will be recovered later.", name, queue.size()));
+            gap.set(true);
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * Signal that some blocks may have been missed
+     */
+    public void signalGap() {
+        gap.set(true);
+        scheduleDrain();
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    /* -- internal methods -- */
+
+    private void scheduleDrain() {
+        if (closed || !scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        }
+        catch (RuntimeException e) {
+            // Executor rejected (or closed): blocks will be recovered with the next one
+            scheduled.set(false);
+            gap.set(true);
+            logger.warn(String.format("[%s] Unable to index new blocks: %s", name, e.getMessage()));
+        }
+    }
+
+    private void drain() {
+        boolean gapFailed = false;
+        try {
+            while (!closed) {
+                // After a failure, the gap is retried by the next run only
+                if (!gapFailed && gap.getAndSet(false)) {
+                    gapFailed = !fillGap();
+                }
+                String json = queue.poll();
+                if (json == null) {
+                    break;
+                }
+                try {
+                    blockHandler.accept(json);
+                }
+                catch (Exception e) {
+                    logger.error(String.format("[%s] Error while indexing new block: %s", name, e.getMessage()), e);
+                }
+            }
+        }
+        finally {
+            scheduled.set(false);
+        }
+
+        // A block (or a gap) could have been added after the last poll
+        if (!closed && (!queue.isEmpty() || (!gapFailed && gap.get()))) {
+            scheduleDrain();
+        }
+    }
+
+    private boolean fillGap() {
+        try {
+            gapHandler.run();
+            return true;
+        }
+        catch (Exception e) {
+            // Retry later
+            gap.set(true);
+            logger.warn(String.format("[%s] Unable to recover missing blocks: %s. Will retry later.", name, e.getMessage()));
+            return false;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * UCoin Java Client :: Core API
+ * %%
+ * Copyright (C) 2014 - 2015 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.*;
+
+/**
+ * Compact set of block numbers, stored as sorted ranges (e.g. "0-1199", "1300-1500").
+ * Used to persist which blocks are indexed, and to compute gaps in O(ranges).
+ * Not thread-safe.
+ */
+public class BlockRangeSet {
+
+    // Range start -> range end (both inclusive)
+    private final TreeMap<Integer, Integer> ranges = new TreeMap<>();
+
+    public BlockRangeSet() {
+    }
+
+    /**
+     * Create from ranges as strings (e.g. "10" or "1000-1999")
+     */
+    public static BlockRangeSet parse(Collection<String> ranges) {
+        BlockRangeSet result = new BlockRangeSet();
+        result.addAll(ranges);
+        return result;
+    }
+
+    public static BlockRangeSet fromBitSet(BitSet numbers) {
+        BlockRangeSet result = new BlockRangeSet();
+        for (int start = numbers.nextSetBit(0); start >= 0; ) {
+            int end = numbers.nextClearBit(start) - 1;
+            result.ranges.put(start, end);
+            if (end == Integer.MAX_VALUE - 1) break;
+            start = numbers.nextSetBit(end + 1);
+        }
+        return result;
+    }
+
+    public void add(int number) {
+        add(number, number);
+    }
+
+    /**
+     * Add a range of blocks
+     * @param fromNumber first number (inclusive)
+     * @param toNumber last number (inclusive)
+     */
+    public void add(int fromNumber, int toNumber) {
+        if (toNumber < fromNumber || toNumber < 0) {
+            return;
+        }
+        int start = Math.max(0, fromNumber);
+        int end = toNumber;
+
+        // Merge with a previous range, if overlapping or adjacent
+        Map.Entry<Integer, Integer> floor = ranges.floorEntry(start);
+        if (floor != null && floor.getValue() >= start - 1) {
+            start = floor.getKey();
+            end = Math.max(end, floor.getValue());
+        }
+
+        // Merge with next ranges
+        Map.Entry<Integer, Integer> next = ranges.higherEntry(start);
+        while (next != null && next.getKey() <= end + 1) {
+            end = Math.max(end, next.getValue());
+            ranges.remove(next.getKey());
+            next = ranges.higherEntry(start);
+        }
+        ranges.put(start, end);
+    }
+
+    /**
+     * Add ranges as strings (e.g. "10" or "1000-1999"). Invalid items are ignored.
+     */
+    public void addAll(Collection<String> ranges) {
+        if (ranges == null) {
+            return;
+        }
+        for (String range: ranges) {
+            if (range == null) continue;
+            try {
+                int separatorIndex = range.indexOf('-');
+                if (separatorIndex == -1) {
+                    add(Integer.parseInt(range.trim()));
+                }
+                else {
+                    add(Integer.parseInt(range.substring(0, separatorIndex).trim()),
+                        Integer.parseInt(range.substring(separatorIndex + 1).trim()));
+                }
+            }
+            catch (NumberFormatException e) {
+                // skip
+            }
+        }
+    }
+
+    public void addAll(BlockRangeSet other) {
+        for (Map.Entry<Integer, Integer> range: other.ranges.entrySet()) {
+            add(range.getKey(), range.getValue());
+        }
+    }
+
+    /**
+     * Remove a range of blocks
+     * @param fromNumber first number (inclusive)
+     * @param toNumber last number (inclusive)
+     */
+    public void remove(int fromNumber, int toNumber) {
+        if (toNumber < fromNumber || toNumber < 0) {
+            return;
+        }
+
+        // Split the range that contains the first number
+        Map.Entry<Integer, Integer> floor = ranges.lowerEntry(fromNumber);
+        if (floor != null && floor.getValue() >= fromNumber) {
+            ranges.put(floor.getKey(), fromNumber - 1);
+            if (floor.getValue() > toNumber) {
+                ranges.put(toNumber + 1, floor.getValue());
+                return;
+            }
+        }
+
+        // Remove (or truncate) ranges starting inside the removed range
+        Map.Entry<Integer, Integer> next = ranges.ceilingEntry(fromNumber);
+        while (next != null && next.getKey() <= toNumber) {
+            ranges.remove(next.getKey());
+            if (next.getValue() > toNumber) {
+                ranges.put(toNumber + 1, next.getValue());
+                break;
+            }
+            next = ranges.ceilingEntry(fromNumber);
+        }
+    }
+
+    public boolean contains(int number) {
+        Map.Entry<Integer, Integer> floor = ranges.floorEntry(number);
+        return floor != null && floor.getValue() >= number;
+    }
+
+    /**
+     * @return the max number, or -1 if empty
+     */
+    public int getMaxNumber() {
+        return ranges.isEmpty() ? -1 : ranges.lastEntry().getValue();
+    }
+
+    /**
+     * Get numbers not in this set, between the given bounds
+     * @param fromNumber first number (inclusive)
+     * @param toNumber last number (inclusive)
+     */
+    public BlockRangeSet getGaps(int fromNumber, int toNumber) {
+        BlockRangeSet result = new BlockRangeSet();
+        int cursor = Math.max(0, fromNumber);
+        Map.Entry<Integer, Integer> floor = ranges.floorEntry(cursor);
+        if (floor != null && floor.getValue() >= cursor) {
+            cursor = floor.getValue() + 1;
+        }
+        for (Map.Entry<Integer, Integer> range: ranges.tailMap(cursor, true).entrySet()) {
+            if (cursor > toNumber || range.getKey() > toNumber) break;
+            if (range.getKey() > cursor) {
+                result.ranges.put(cursor, range.getKey() - 1);
+            }
+            cursor = range.getValue() + 1;
+        }
+        if (cursor <= toNumber) {
+            result.ranges.put(cursor, toNumber);
+        }
+        return result;
+    }
+
+    /**
+     * @return the ranges, as [first, last] pairs (both inclusive), sorted by number
+     */
+    public List<int[]> getRanges() {
+        List<int[]> result = new ArrayList<>(ranges.size());
+        for (Map.Entry<Integer, Integer> range: ranges.entrySet()) {
+            result.add(new int[]{range.getKey(), range.getValue()});
+        }
+        return result;
+    }
+
+    public int getRangeCount() {
+        return ranges.size();
+    }
+
+    /**
+     * @return the count of block numbers
+     */
+    public long size() {
+        long result = 0;
+        for (Map.Entry<Integer, Integer> range: ranges.entrySet()) {
+            result += range.getValue() - range.getKey() + 1;
+        }
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return ranges.isEmpty();
+    }
+
+    /**
+     * @return ranges as strings, sorted by number (e.g. "10" or "1000-1999")
+     */
+    public List<String> toStrings() {
+        List<String> result = new ArrayList<>(ranges.size());
+        for (Map.Entry<Integer, Integer> range: ranges.entrySet()) {
+            result.add(range.getKey().equals(range.getValue())
+                    ? String.valueOf(range.getKey())
+                    : range.getKey() + "-" + range.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return toStrings().toString();
+    }
+}
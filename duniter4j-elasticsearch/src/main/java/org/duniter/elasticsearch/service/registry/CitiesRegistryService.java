@@ -65,7 +65,7 @@ public class CitiesRegistryService extends AbstractService {
     @Inject
     public CitiesRegistryService(Client client, PluginSettings settings) {
         super(client, settings);
-        gson = GsonUtils.newBuilder().create();
+        gson = GsonUtils.getGson();
     }
 
     /**
@@ -178,7 +178,7 @@ public class CitiesRegistryService extends AbstractService {
             boolean firstLine = true;
             java.lang.reflect.Type typeOfHashMap = new TypeToken<Map<String, String[]>>() { }.getType();
 
-            Gson gson = GsonUtils.newBuilder().create();
+            Gson gson = GsonUtils.getGson();
 
             StringBuilder builder = new StringBuilder();
             bf = new BufferedReader(
@@ -279,7 +279,7 @@ public class CitiesRegistryService extends AbstractService {
             boolean firstLine = true;
             java.lang.reflect.Type typeOfHashMap = new TypeToken<Map<String, String[]>>() { }.getType();
 
-            Gson gson = GsonUtils.newBuilder().create();
+            Gson gson = GsonUtils.getGson();
 
             StringBuilder builder = new StringBuilder();
             bf = new BufferedReader(
@@ -23,14 +23,16 @@ package org.duniter.elasticsearch.threadpool;
  */
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
-import org.elasticsearch.action.admin.cluster.stats.ClusterStatsRequestBuilder;
-import org.elasticsearch.action.admin.cluster.stats.ClusterStatsResponse;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.health.ClusterHealthStatus;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.component.Lifecycle;
 import org.elasticsearch.common.component.LifecycleComponent;
+import org.elasticsearch.common.component.LifecycleListener;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Injector;
 import org.elasticsearch.common.logging.ESLogger;
@@ -39,19 +41,37 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.EsAbortPolicy;
 import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.XRejectedExecutionHandler;
+import org.elasticsearch.threadpool.ThreadPoolStats;
 import org.elasticsearch.transport.TransportService;
 import org.nuiton.i18n.I18n;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Manage thread pool, to execute tasks asynchronously.
+ * Tasks are dispatched into named executors (see {@link Names}), so that a long task (e.g. a blockchain sync)
+ * never starves the others. Each executor can be sized using settings <code>duniter.threadpool.&lt;name&gt;.size</code>
+ * and <code>duniter.threadpool.&lt;name&gt;.queue_size</code>.
  * Created by eis on 17/06/16.
  */
 public class ThreadPool extends AbstractLifecycleComponent<ThreadPool> {
 
+    public static class Names {
+        public static final String SCHEDULER = "scheduler";
+        public static final String SYNC = "sync";
+        public static final String INDEXING = "indexing";
+        public static final String IO = "io";
+    }
+
+    // Max duration of a cluster health request (waiting the expected status), before retrying
+    private static final TimeValue CLUSTER_HEALTH_WAIT_TIMEOUT = TimeValue.timeValueSeconds(30);
+
     private ScheduledThreadPoolExecutor scheduler = null;
+    private final Map<String, ThreadPoolExecutor> executors;
     private Injector injector;
     private ESLogger logger = Loggers.getLogger("threadpool");
 
@@ -65,10 +85,30 @@ public class ThreadPool extends AbstractLifecycleComponent<ThreadPool> {
         this.injector = injector;
         this.afterStartedCommands = Lists.newArrayList();
 
-        this.scheduler = new ScheduledThreadPoolExecutor(1, EsExecutors.daemonThreadFactory(settings, "duniter4j-scheduler"), new EsAbortPolicy());
+        int processors = EsExecutors.boundedNumberOfProcessors(settings);
+
+        int schedulerSize = getPoolSize(settings, Names.SCHEDULER, Math.max(2, processors / 2));
+        this.scheduler = new ScheduledThreadPoolExecutor(schedulerSize, EsExecutors.daemonThreadFactory(settings, "duniter4j-scheduler"), new EsAbortPolicy());
         this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
         this.scheduler.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
         this.scheduler.setRemoveOnCancelPolicy(true);
+
+        this.executors = ImmutableMap.<String, ThreadPoolExecutor>builder()
+                .put(Names.SCHEDULER, scheduler)
+                // Blocks fetchers (see BlockchainService): unbounded queue, as fetchers are never rejected
+                .put(Names.SYNC, EsExecutors.newFixed(Names.SYNC,
+                        getPoolSize(settings, Names.SYNC, 4),
+                        getQueueSize(settings, Names.SYNC, -1),
+                        EsExecutors.daemonThreadFactory(settings, "duniter4j-" + Names.SYNC)))
+                .put(Names.INDEXING, EsExecutors.newFixed(Names.INDEXING,
+                        getPoolSize(settings, Names.INDEXING, processors),
+                        getQueueSize(settings, Names.INDEXING, 1000),
+                        EsExecutors.daemonThreadFactory(settings, "duniter4j-" + Names.INDEXING)))
+                .put(Names.IO, EsExecutors.newScaling(Names.IO,
+                        1, getPoolSize(settings, Names.IO, Math.max(10, processors * 2)),
+                        5, TimeUnit.MINUTES,
+                        EsExecutors.daemonThreadFactory(settings, "duniter4j-" + Names.IO)))
+                .build();
     }
 
     public void doStart(){
@@ -87,25 +127,70 @@ public class ThreadPool extends AbstractLifecycleComponent<ThreadPool> {
     }
 
     public void doStop(){
-        scheduler.shutdown();
-        // TODO : cancel all aiting jobs
+        for (ThreadPoolExecutor executor: executors.values()) {
+            executor.shutdown();
+        }
     }
 
-    public void doClose() {}
+    public void doClose() {
+        for (ThreadPoolExecutor executor: executors.values()) {
+            executor.shutdownNow();
+        }
+    }
 
     public ScheduledExecutorService scheduler() {
         return this.scheduler;
     }
 
+    /**
+     * Get an executor, by name
+     * @param name the executor name (see {@link Names})
+     * @return the executor
+     */
+    public ExecutorService executor(String name) {
+        ExecutorService executor = executors.get(name);
+        Preconditions.checkArgument(executor != null, "Unknown executor name: " + name);
+        return executor;
+    }
+
+    /**
+     * Get statistics (threads, queue depth, active threads...) of all executors
+     */
+    public List<ThreadPoolStats.Stats> stats() {
+        List<ThreadPoolStats.Stats> result = Lists.newArrayListWithCapacity(executors.size());
+        for (String name: executors.keySet()) {
+            result.add(stats(name));
+        }
+        return result;
+    }
+
+    /**
+     * Get statistics (threads, queue depth, active threads...) of an executor
+     * @param name the executor name (see {@link Names})
+     */
+    public ThreadPoolStats.Stats stats(String name) {
+        ThreadPoolExecutor executor = executors.get(name);
+        Preconditions.checkArgument(executor != null, "Unknown executor name: " + name);
+
+        long rejected = executor.getRejectedExecutionHandler() instanceof XRejectedExecutionHandler ?
+                ((XRejectedExecutionHandler) executor.getRejectedExecutionHandler()).rejected() : 0;
+        return new ThreadPoolStats.Stats(name,
+                executor.getPoolSize(),
+                executor.getQueue().size(),
+                executor.getActiveCount(),
+                rejected,
+                executor.getLargestPoolSize(),
+                executor.getCompletedTaskCount());
+    }
+
     /**
      * Schedules an action when node is started (all services and modules ready)
      *
      * @param job the action to execute when node started
-     * @return a ScheduledFuture who's get will return when the task is complete and throw an exception if it is canceled
      */
     public void scheduleOnStarted(Runnable job) {
         Preconditions.checkNotNull(job);
-        scheduleAfterServiceState(TransportService.class, Lifecycle.State.STARTED, job);
+        scheduleAfterServiceState(TransportService.class, Lifecycle.State.STARTED, Names.IO, job);
     }
 
     /**
@@ -113,17 +198,25 @@ public class ThreadPool extends AbstractLifecycleComponent<ThreadPool> {
      *
      * @param job the action to execute
      * @param expectedStatus expected health status, to run the job
-     * @return a ScheduledFuture who's get will return when the task is complete and throw an exception if it is canceled
      */
     public void scheduleOnClusterHealthStatus(Runnable job, ClusterHealthStatus... expectedStatus) {
+        scheduleOnClusterHealthStatus(Names.IO, job, expectedStatus);
+    }
+
+    /**
+     * Schedules an action when cluster is ready
+     *
+     * @param executorName the executor that will run the job (see {@link Names})
+     * @param job the action to execute
+     * @param expectedStatus expected health status, to run the job
+     */
+    public void scheduleOnClusterHealthStatus(String executorName, Runnable job, ClusterHealthStatus... expectedStatus) {
         Preconditions.checkNotNull(job);
+        Preconditions.checkNotNull(expectedStatus);
+        Preconditions.checkArgument(expectedStatus.length > 0);
+        final ExecutorService executor = executor(executorName);
 
-        scheduleOnStarted(() -> {
-            if (waitClusterHealthStatus(expectedStatus)) {
-                // continue
-                job.run();
-            }
-        });
+        scheduleOnStarted(() -> onClusterHealthStatus(getWaitForStatus(expectedStatus), true, () -> executor.execute(new LoggingRunnable(job))));
     }
 
     /**
@@ -148,66 +241,144 @@ public class ThreadPool extends AbstractLifecycleComponent<ThreadPool> {
         return scheduler.scheduleWithFixedDelay(new LoggingRunnable(command), interval.millis(), interval.millis(), TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Wait (blocking) until the cluster health has one of the expected status.
+     * The wait is done by the master node (no polling), using a cluster health request.
+     *
+     * @param expectedStatus expected health status
+     * @return true if the status has been reached, false if interrupted
+     */
+    public boolean waitClusterHealthStatus(ClusterHealthStatus... expectedStatus) {
+        Preconditions.checkNotNull(expectedStatus);
+        Preconditions.checkArgument(expectedStatus.length > 0);
+
+        Client client = injector.getInstance(Client.class);
+        ClusterHealthStatus waitForStatus = getWaitForStatus(expectedStatus);
+        boolean firstTry = true;
+        while (true) {
+            try {
+                ClusterHealthResponse response = client.admin().cluster().prepareHealth()
+                        .setWaitForStatus(waitForStatus)
+                        .setTimeout(CLUSTER_HEALTH_WAIT_TIMEOUT)
+                        .execute().get();
+                if (!response.isTimedOut()) {
+                    if (!firstTry && logger.isDebugEnabled()) {
+                        logger.debug(I18n.t("duniter4j.threadPool.clusterHealthStatus.changed", response.getStatus().name()));
+                    }
+                    return true;
+                }
+                firstTry = false;
+            } catch (ExecutionException e) {
+                // Continue (e.g. no master yet), after a short delay
+                firstTry = false;
+                try {
+                    Thread.sleep(1000);
+                }
+                catch (InterruptedException e2) {
+                    return false; // stop
+                }
+            } catch (InterruptedException e) {
+                return false; // stop
+            }
+        }
+    }
 
     /* -- protected methods  -- */
 
-    protected <T extends LifecycleComponent<T>> ScheduledFuture<?> scheduleAfterServiceState(Class<T> waitingServiceClass,
-                                                                                             final Lifecycle.State waitingState,
-                                                                                             final Runnable job) {
+    protected <T extends LifecycleComponent<T>> void scheduleAfterServiceState(Class<T> waitingServiceClass,
+                                                                               final Lifecycle.State waitingState,
+                                                                               final String executorName,
+                                                                               final Runnable job) {
         Preconditions.checkNotNull(waitingServiceClass);
         Preconditions.checkNotNull(waitingState);
         Preconditions.checkNotNull(job);
 
+        final ExecutorService executor = executor(executorName);
         final T service = injector.getInstance(waitingServiceClass);
-        return schedule(() -> {
-            while(service.lifecycleState() != waitingState) {
-                try {
-                    Thread.sleep(100); // wait 100 ms
-                }
-                catch(InterruptedException e) {
-                }
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final Runnable runOnce = () -> {
+            if (done.compareAndSet(false, true)) {
+                executor.execute(new LoggingRunnable(job));
             }
+        };
 
-            // continue
-            job.run();
-        }, TimeValue.timeValueSeconds(10));
-    }
+        // Listen state changes
+        service.addLifecycleListener(new LifecycleListener() {
+            @Override
+            public void afterStart() {
+                if (waitingState == Lifecycle.State.STARTED) runOnce.run();
+            }
+            @Override
+            public void afterStop() {
+                if (waitingState == Lifecycle.State.STOPPED) runOnce.run();
+            }
+            @Override
+            public void afterClose() {
+                if (waitingState == Lifecycle.State.CLOSED) runOnce.run();
+            }
+        });
 
-    public boolean waitClusterHealthStatus(ClusterHealthStatus... expectedStatus) {
-        Preconditions.checkNotNull(expectedStatus);
-        Preconditions.checkArgument(expectedStatus.length > 0);
+        // Already in the expected state
+        if (service.lifecycleState() == waitingState) {
+            runOnce.run();
+        }
+    }
 
+    /**
+     * Run the callback when the cluster reach the given status. No thread is blocked while waiting.
+     */
+    protected void onClusterHealthStatus(final ClusterHealthStatus waitForStatus, final boolean firstTry, final Runnable callback) {
         Client client = injector.getInstance(Client.class);
-        ClusterStatsRequestBuilder statsRequest = client.admin().cluster().prepareClusterStats();
-        ClusterStatsResponse stats = null;
-        boolean canContinue = false;
-        boolean firstTry = true;
-        while (!canContinue) {
-            try {
-                if (stats != null) Thread.sleep(100); // wait 100 ms
-                stats = statsRequest.execute().get();
-                for (ClusterHealthStatus status: expectedStatus) {
-                    if (stats.getStatus() == status) {
+        client.admin().cluster().prepareHealth()
+                .setWaitForStatus(waitForStatus)
+                .setTimeout(CLUSTER_HEALTH_WAIT_TIMEOUT)
+                .execute(new ActionListener<ClusterHealthResponse>() {
+                    @Override
+                    public void onResponse(ClusterHealthResponse response) {
+                        if (response.isTimedOut()) {
+                            onClusterHealthStatus(waitForStatus, false, callback);
+                            return;
+                        }
                         if (!firstTry && logger.isDebugEnabled()) {
-                            logger.debug(I18n.t("duniter4j.threadPool.clusterHealthStatus.changed", status.name()));
+                            logger.debug(I18n.t("duniter4j.threadPool.clusterHealthStatus.changed", response.getStatus().name()));
                         }
-                        canContinue = true;
-                        break;
+                        callback.run();
                     }
-                }
-                firstTry = false;
-            } catch (ExecutionException e) {
-                // Continue
-            } catch (InterruptedException e) {
-                return false; // stop
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        // Retry later (e.g. no master yet)
+                        if (lifecycleState() != Lifecycle.State.STOPPED && lifecycleState() != Lifecycle.State.CLOSED) {
+                            schedule(() -> onClusterHealthStatus(waitForStatus, false, callback), TimeValue.timeValueSeconds(1));
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Get the worst status that is accepted (e.g. YELLOW when GREEN or YELLOW are expected):
+     * waiting for a status means waiting for this status or better.
+     */
+    protected ClusterHealthStatus getWaitForStatus(ClusterHealthStatus... expectedStatus) {
+        ClusterHealthStatus result = expectedStatus[0];
+        for (ClusterHealthStatus status: expectedStatus) {
+            if (status.value() > result.value()) {
+                result = status;
             }
         }
-
-        return canContinue;
+        return result;
     }
 
     /* -- internal methods -- */
 
+    private static int getPoolSize(Settings settings, String name, int defaultSize) {
+        return settings.getAsInt("duniter.threadpool." + name + ".size", defaultSize);
+    }
+
+    private static int getQueueSize(Settings settings, String name, int defaultSize) {
+        return settings.getAsInt("duniter.threadpool." + name + ".queue_size", defaultSize);
+    }
+
     class LoggingRunnable implements Runnable {
 
         private final Runnable runnable;
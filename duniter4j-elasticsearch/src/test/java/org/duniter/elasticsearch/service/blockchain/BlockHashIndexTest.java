@@ -0,0 +1,96 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * UCoin Java Client :: Core API
+ * %%
+ * Copyright (C) 2014 - 2015 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockHashIndexTest {
+
+    private static final String HASH_1 = "000007722B243094269E548F600BD34D73449F7578C05BD370A6D301D20B5F10";
+    private static final String HASH_2 = "00000A6F2B243094269E548F600BD34D73449F7578C05BD370A6D301D20B5F10";
+
+    @Test
+    public void putAndGet() {
+        BlockHashIndex index = new BlockHashIndex();
+        Assert.assertEquals(-1, index.getMaxNumber());
+
+        index.put(0, HASH_1);
+        index.put(10000, HASH_2);
+        index.put(5, "not-an-hex-hash");
+
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(10000, index.getMaxNumber());
+        Assert.assertEquals(HASH_1, index.get(0));
+        Assert.assertEquals(HASH_2, index.get(10000));
+        Assert.assertEquals("not-an-hex-hash", index.get(5));
+        Assert.assertNull(index.get(1));
+
+        Assert.assertTrue(index.contains(0, HASH_1));
+        Assert.assertFalse(index.contains(0, HASH_2));
+        Assert.assertFalse(index.contains(0, HASH_1.toLowerCase()));
+        Assert.assertTrue(index.contains(5, "not-an-hex-hash"));
+        Assert.assertFalse(index.contains(1, HASH_1));
+
+        // Overwrite (e.g. after a fork)
+        index.put(0, HASH_2);
+        Assert.assertTrue(index.contains(0, HASH_2));
+    }
+
+    @Test
+    public void remove() {
+        BlockHashIndex index = new BlockHashIndex();
+        for (int i = 0; i < 100; i++) {
+            index.put(i, HASH_1);
+        }
+        index.put(50, "other");
+
+        index.remove(40, 200);
+        Assert.assertEquals(40, index.size());
+        Assert.assertEquals(39, index.getMaxNumber());
+        Assert.assertFalse(index.contains(50));
+        Assert.assertNull(index.get(50));
+        Assert.assertTrue(index.contains(39, HASH_1));
+    }
+
+    @Test
+    public void putAllWithoutHash() {
+        BlockHashIndex index = new BlockHashIndex();
+        index.putAll(BlockRangeSet.parse(java.util.Arrays.asList("0-99", "200-299")));
+        index.put(299, HASH_1);
+
+        Assert.assertEquals(200, index.size());
+        Assert.assertEquals(299, index.getMaxNumber());
+        Assert.assertTrue(index.contains(50));
+        Assert.assertFalse(index.hasHash(50));
+        Assert.assertNull(index.get(50));
+        Assert.assertFalse(index.contains(50, HASH_1));
+        Assert.assertTrue(index.hasHash(299));
+        Assert.assertTrue(index.contains(299, HASH_1));
+
+        // Hash loaded on demand
+        index.put(50, HASH_2);
+        Assert.assertTrue(index.contains(50, HASH_2));
+        Assert.assertEquals(200, index.size());
+    }
+}
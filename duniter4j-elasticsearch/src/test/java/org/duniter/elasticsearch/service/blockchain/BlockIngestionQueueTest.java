@@ -0,0 +1,105 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * UCoin Java Client :: Core API
+ * %%
+ * Copyright (C) 2014 - 2015 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BlockIngestionQueueTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void drainInOrder() throws Exception {
+        List<String> blocks = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        try (BlockIngestionQueue queue = new BlockIngestionQueue("test", 10, executor,
+                json -> { blocks.add(json); latch.countDown(); },
+                () -> Assert.fail("No gap expected"))) {
+            queue.offer("1");
+            queue.offer("2");
+            queue.offer("3");
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        }
+        Assert.assertArrayEquals(new String[]{"1", "2", "3"}, blocks.toArray());
+    }
+
+    @Test
+    public void gapWhenFull() throws Exception {
+        CountDownLatch blockingHandler = new CountDownLatch(1);
+        CountDownLatch gapFilled = new CountDownLatch(1);
+        AtomicInteger handledCount = new AtomicInteger();
+        try (BlockIngestionQueue queue = new BlockIngestionQueue("test", 1, executor,
+                json -> {
+                    handledCount.incrementAndGet();
+                    try {
+                        blockingHandler.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                },
+                gapFilled::countDown)) {
+            queue.offer("1");
+            // Wait the worker to take the first block
+            long timeout = System.currentTimeMillis() + 5000;
+            while (handledCount.get() == 0 && System.currentTimeMillis() < timeout) {
+                Thread.sleep(10);
+            }
+
+            // Never block, even when full
+            queue.offer("2");
+            queue.offer("3"); // dropped
+            Assert.assertEquals(1, queue.size());
+
+            blockingHandler.countDown();
+            Assert.assertTrue(gapFilled.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void ignoreAfterClose() throws Exception {
+        AtomicInteger handledCount = new AtomicInteger();
+        BlockIngestionQueue queue = new BlockIngestionQueue("test", 10, executor,
+                json -> handledCount.incrementAndGet(),
+                () -> {});
+        queue.close();
+        queue.offer("1");
+        Assert.assertEquals(0, queue.size());
+        Thread.sleep(50);
+        Assert.assertEquals(0, handledCount.get());
+    }
+}
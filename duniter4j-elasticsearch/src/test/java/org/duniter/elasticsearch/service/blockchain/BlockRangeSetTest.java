@@ -0,0 +1,90 @@
+package org.duniter.elasticsearch.service.blockchain;
+
+/*
+ * #%L
+ * UCoin Java Client :: Core API
+ * %%
+ * Copyright (C) 2014 - 2015 EIS
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+public class BlockRangeSetTest {
+
+    @Test
+    public void addAndMerge() {
+        BlockRangeSet set = new BlockRangeSet();
+        Assert.assertEquals(-1, set.getMaxNumber());
+
+        set.add(0, 99);
+        set.add(200, 299);
+        set.add(100, 150); // adjacent: merged with the first range
+        set.add(5);
+        Assert.assertEquals(ImmutableList.of("0-150", "200-299"), set.toStrings());
+
+        set.add(140, 210); // overlap both ranges
+        Assert.assertEquals(ImmutableList.of("0-299"), set.toStrings());
+        Assert.assertEquals(300, set.size());
+        Assert.assertEquals(299, set.getMaxNumber());
+        Assert.assertTrue(set.contains(0));
+        Assert.assertTrue(set.contains(299));
+        Assert.assertFalse(set.contains(300));
+    }
+
+    @Test
+    public void remove() {
+        BlockRangeSet set = new BlockRangeSet();
+        set.add(0, 99);
+        set.add(200, 299);
+
+        set.remove(50, 59);
+        Assert.assertEquals(ImmutableList.of("0-49", "60-99", "200-299"), set.toStrings());
+
+        set.remove(90, 250);
+        Assert.assertEquals(ImmutableList.of("0-49", "60-89", "251-299"), set.toStrings());
+
+        set.remove(0, 1000);
+        Assert.assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void gaps() {
+        BlockRangeSet set = BlockRangeSet.parse(ImmutableList.of("0-1199", "1300-1500", "1600", "bad"));
+        Assert.assertEquals(3, set.getRangeCount());
+
+        Assert.assertEquals(ImmutableList.of("1200-1299", "1501-1599"), set.getGaps(0, set.getMaxNumber()).toStrings());
+        Assert.assertEquals(ImmutableList.of("1250-1299", "1501-1599", "1601-1700"), set.getGaps(1250, 1700).toStrings());
+        Assert.assertTrue(set.getGaps(10, 1000).isEmpty());
+    }
+
+    @Test
+    public void fromBitSet() {
+        BitSet numbers = new BitSet();
+        numbers.set(0, 10);
+        numbers.set(20);
+        numbers.set(30, 40);
+
+        BlockRangeSet set = BlockRangeSet.fromBitSet(numbers);
+        Assert.assertEquals(ImmutableList.of("0-9", "20", "30-39"), set.toStrings());
+        Assert.assertEquals(21, set.size());
+    }
+}